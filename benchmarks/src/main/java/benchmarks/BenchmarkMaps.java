@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import Tile.BinaryMap;
+import Tile.FlatTileMap;
+import main.GameWorld;
+
+/**
+ * Generates the maps the benchmarks run on.
+ */
+final class BenchmarkMaps {
+    /** Tile numbers of walkable tiles in the built-in tile set */
+    private static final int[] OPEN_TILES = {0, 1, 2, 3, 4, 5, 8};
+    /** Tile numbers of solid ground tiles in the built-in tile set */
+    private static final int[] SOLID_TILES = {6, 7};
+    /** Share of tiles that are solid */
+    private static final double SOLID_SHARE = 0.1;
+
+    private BenchmarkMaps() {
+    }
+
+    /**
+     * Writes a random square map to a temporary file and opens it.
+     * The same size and seed always produce the same map.
+     *
+     * @param size Number of tile columns and rows
+     * @param seed Seed of the tile layout
+     * @return The generated map
+     */
+    static BinaryMap random(int size, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[][][] tiles = new int[1][size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int[] choices = random.nextDouble() < SOLID_SHARE ? SOLID_TILES : OPEN_TILES;
+                tiles[0][row][col] = choices[random.nextInt(choices.length)];
+            }
+        }
+        try {
+            Path file = Files.createTempFile("benchmark-" + size + "-", ".map");
+            file.toFile().deleteOnExit();
+            BinaryMap.write(file, tiles);
+            return BinaryMap.open(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write benchmark map", e);
+        }
+    }
+
+    /**
+     * Creates a world whose map is replaced by a random square map, and waits for its images.
+     *
+     * @param size Number of tile columns and rows
+     * @param seed Seed of the tile layout
+     * @return The new world
+     */
+    static GameWorld world(int size, long seed) {
+        GameWorld world = new GameWorld();
+        world.awaitLoaded();
+        world.tileM.setMap(new FlatTileMap(size, size, world.tileM.properties.size()));
+        world.tileM.loadMap(random(size, seed));
+        return world;
+    }
+}
@@ -0,0 +1,104 @@
+package benchmarks;
+
+import java.awt.Rectangle;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import entity.Entity;
+import main.GameWorld;
+import main.SweepResult;
+
+/**
+ * Tile collision queries at random positions on maps of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CollisionBenchmark {
+    /** Number of precomputed probes; a power of two so the index wraps with a mask */
+    private static final int PROBES = 4096;
+    /** Directions an entity can face */
+    private static final String[] DIRECTIONS = {"up", "down", "left", "right"};
+
+    /** Number of tile columns and rows of the map */
+    @Param({"50", "256", "1024", "4096"})
+    public int mapSize;
+
+    /** The world providing the collision grid */
+    private GameWorld world;
+    /** The probing entity, moved to each probe position in turn */
+    private final Entity entity = new Entity();
+    /** Reused result of the sweep benchmark */
+    private final SweepResult sweep = new SweepResult();
+    /** X coordinate of each probe */
+    private final int[] probeX = new int[PROBES];
+    /** Y coordinate of each probe */
+    private final int[] probeY = new int[PROBES];
+    /** Direction of each probe */
+    private final String[] probeDirection = new String[PROBES];
+    /** Index of the next probe */
+    private int next;
+
+    /**
+     * Builds the world and scatters the probes across the whole map.
+     */
+    @Setup
+    public void setUp() {
+        world = BenchmarkMaps.world(mapSize, 42);
+        entity.solidArea = new Rectangle(8, 16, 32, 32);
+        entity.speed = 4;
+
+        SplittableRandom random = new SplittableRandom(7);
+        int worldPixels = mapSize * world.tileSize;
+        for (int i = 0; i < PROBES; i++) {
+            probeX[i] = random.nextInt(worldPixels - world.tileSize);
+            probeY[i] = random.nextInt(worldPixels - world.tileSize);
+            probeDirection[i] = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+        }
+    }
+
+    /**
+     * Checks one step of an entity against the tiles.
+     *
+     * @return Whether the step was blocked
+     */
+    @Benchmark
+    public boolean checkTile() {
+        int i = next++ & (PROBES - 1);
+        entity.worldX = probeX[i];
+        entity.worldY = probeY[i];
+        entity.direction = probeDirection[i];
+        entity.collisionOn = false;
+        world.cChecker.checkTile(entity);
+        return entity.collisionOn;
+    }
+
+    /**
+     * Sweeps one diagonal step of an entity against the tiles, as the player's movement does.
+     *
+     * @return The allowed horizontal displacement
+     */
+    @Benchmark
+    public int sweep() {
+        int i = next++ & (PROBES - 1);
+        entity.worldX = probeX[i];
+        entity.worldY = probeY[i];
+        world.cChecker.sweep(entity, (i & 1) == 0 ? 3 : -3, (i & 2) == 0 ? 3 : -3, sweep);
+        return sweep.dx;
+    }
+}
@@ -0,0 +1,150 @@
+package benchmarks;
+
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Tile.CollisionGrid;
+import ai.ClusterGraph;
+import ai.FlowField;
+import ai.Path;
+import ai.PathFinder;
+import ai.PathService;
+import main.GameWorld;
+
+/**
+ * Path searches between random tiles a short walk apart, hierarchical searches across the
+ * map, incremental updates of the hierarchical graph and flow fields towards random targets,
+ * on maps of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PathfindingBenchmark {
+    /** Number of precomputed queries; a power of two so the index wraps with a mask */
+    private static final int QUERIES = 1024;
+    /** Largest distance between start and goal in each direction, in tiles */
+    private static final int MAX_DISTANCE = 40;
+
+    /** Number of tile columns and rows of the map */
+    @Param({"50", "256", "1024", "4096"})
+    public int mapSize;
+
+    /** The world providing the collision grid */
+    private GameWorld world;
+    /** The collision grid searched */
+    private CollisionGrid grid;
+    /** The finder, reused across searches like the service's worker does */
+    private final PathFinder finder = new PathFinder(PathFinder.DEFAULT_MARGIN);
+    /** Start column of each query */
+    private final int[] startCol = new int[QUERIES];
+    /** Start row of each query */
+    private final int[] startRow = new int[QUERIES];
+    /** Goal column of each query */
+    private final int[] goalCol = new int[QUERIES];
+    /** Goal row of each query */
+    private final int[] goalRow = new int[QUERIES];
+    /** Hierarchical graph of {@link #grid} */
+    private ClusterGraph hierarchy;
+    /** Reused set of changed clusters */
+    private final BitSet changed = new BitSet();
+    /** Index of the next query */
+    private int next;
+
+    /**
+     * Builds the world and picks the queries.
+     */
+    @Setup
+    public void setUp() {
+        world = BenchmarkMaps.world(mapSize, 42);
+        grid = world.tileM.collisionGrid;
+
+        hierarchy = new ClusterGraph(grid, ClusterGraph.DEFAULT_CLUSTER_SIZE);
+        hierarchy.update(changed);
+
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < QUERIES; i++) {
+            startCol[i] = random.nextInt(mapSize);
+            startRow[i] = random.nextInt(mapSize);
+            goalCol[i] = Math.floorMod(startCol[i] + random.nextInt(-MAX_DISTANCE, MAX_DISTANCE + 1), mapSize);
+            goalRow[i] = Math.floorMod(startRow[i] + random.nextInt(-MAX_DISTANCE, MAX_DISTANCE + 1), mapSize);
+        }
+    }
+
+    /**
+     * Stops the world's pathfinding worker.
+     */
+    @TearDown
+    public void tearDown() {
+        world.close();
+    }
+
+    /**
+     * Searches one path with A*.
+     *
+     * @return The path, or null if there is none
+     */
+    @Benchmark
+    public Path findPath() {
+        int i = next++ & (QUERIES - 1);
+        return finder.find(grid, startCol[i], startRow[i], goalCol[i], goalRow[i]);
+    }
+
+    /**
+     * Searches one path from a random tile to the mirrored tile on the other side of the map,
+     * over the hierarchical graph.
+     *
+     * @return The path, or null if there is none
+     */
+    @Benchmark
+    public Path findLongPath() {
+        int i = next++ & (QUERIES - 1);
+        return hierarchy.find(startCol[i], startRow[i], mapSize - 1 - startCol[i], mapSize - 1 - startRow[i]);
+    }
+
+    /**
+     * Flips one tile between walkable and solid and brings the hierarchical graph up to date.
+     *
+     * @return Number of nodes in the graph
+     */
+    @Benchmark
+    public int updateHierarchy() {
+        int i = next++ & (QUERIES - 1);
+        grid.set(startCol[i], startRow[i], !grid.isSolid(startCol[i], startRow[i]));
+        changed.clear();
+        hierarchy.addClusters(startCol[i], startRow[i], 1, 1, changed);
+        hierarchy.update(changed);
+        return hierarchy.getNodeCount();
+    }
+
+    /**
+     * Builds one flow field through the service, the way a tick requests and receives it.
+     *
+     * @return The field
+     */
+    @Benchmark
+    public FlowField buildFlowField() {
+        int i = next++ & (QUERIES - 1);
+        PathService paths = world.paths;
+        paths.flowField(goalCol[i], goalRow[i]);
+        paths.dispatch(grid);
+        paths.collect();
+        return paths.flowField(goalCol[i], goalRow[i]);
+    }
+}
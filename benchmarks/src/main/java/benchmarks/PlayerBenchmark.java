@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import entity.Player;
+import main.GameWorld;
+import main.InputScript;
+
+/**
+ * Player updates driven by a looping input script on maps of different sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PlayerBenchmark {
+    /** Input replayed in a loop: straight walks, diagonals and standing still */
+    private static final String SCRIPT = """
+            0 press D
+            90 release D
+            90 press S
+            180 press A
+            270 release S
+            270 press W
+            360 release A
+            360 release W
+            400 press RIGHT
+            400 press UP
+            490 release RIGHT
+            490 release UP
+            520 press F2
+            520 release F2
+            """;
+
+    /** Number of tile columns and rows of the map */
+    @Param({"50", "256", "1024", "4096"})
+    public int mapSize;
+
+    /** The world the player walks in */
+    private GameWorld world;
+    /** The input fed to the player */
+    private InputScript script;
+    /** Player position at the start of each pass of the script */
+    private int startX, startY;
+    /** Tick within the current pass of the script */
+    private long tick;
+
+    /**
+     * Builds the world and parses the input script.
+     *
+     * @throws IOException never, the script is read from a string
+     */
+    @Setup
+    public void setUp() throws IOException {
+        world = BenchmarkMaps.world(mapSize, 42);
+        script = InputScript.parse(new StringReader(SCRIPT));
+        startX = world.player.worldX;
+        startY = world.player.worldY;
+    }
+
+    /**
+     * Feeds one tick of input and updates the player.
+     * The player returns to its start whenever the script loops, so it keeps walking the
+     * same part of the map.
+     *
+     * @return The player
+     */
+    @Benchmark
+    public Player update() {
+        if (tick > script.lastTick()) {
+            tick = 0;
+            script.rewind();
+            world.player.worldX = startX;
+            world.player.worldY = startY;
+        }
+        script.apply(tick++, world.keyH);
+        world.keyH.drain();
+        world.player.update();
+        return world.player;
+    }
+}
@@ -0,0 +1,114 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import Tile.BinaryMap;
+import Tile.TileManager;
+import main.Camera;
+import main.GameWorld;
+
+/**
+ * Loading and drawing the tile layer at different map sizes.
+ * Drawing should cost the same on every map size, since only the visible part is drawn.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TileManagerBenchmark {
+    /** Pixels the camera moves per frame while panning */
+    private static final int PAN_STEP = 4;
+
+    /** Number of tile columns and rows of the map */
+    @Param({"50", "256", "1024", "4096"})
+    public int mapSize;
+
+    /** The world whose tiles are loaded and drawn */
+    private GameWorld world;
+    /** The map loaded by {@link #loadMap()} */
+    private BinaryMap source;
+    /** Camera of the drawn view */
+    private Camera camera;
+    /** Offscreen frame drawn into */
+    private BufferedImage frame;
+    /** Graphics of {@link #frame} */
+    private Graphics2D g2;
+    /** Largest camera X coordinate that keeps the view inside the map */
+    private int maxCameraX;
+
+    /**
+     * Builds the world, the map to load and the offscreen frame, with the camera centered.
+     */
+    @Setup
+    public void setUp() {
+        world = BenchmarkMaps.world(mapSize, 42);
+        source = BenchmarkMaps.random(mapSize, 42);
+        camera = new Camera(world.tileSize, world.screenWidth, world.screenHeight, mapSize, mapSize);
+        frame = new BufferedImage(world.screenWidth, world.screenHeight, BufferedImage.TYPE_INT_RGB);
+        g2 = frame.createGraphics();
+        maxCameraX = Math.max(0, mapSize * world.tileSize - world.screenWidth);
+        camera.moveTo(maxCameraX / 2, Math.max(0, mapSize * world.tileSize - world.screenHeight) / 2);
+    }
+
+    /**
+     * Releases the graphics of the offscreen frame.
+     */
+    @TearDown
+    public void tearDown() {
+        g2.dispose();
+    }
+
+    /**
+     * Copies a whole map into the world and rebuilds the collision grid.
+     *
+     * @return The tile manager, so the load is not optimized away
+     */
+    @Benchmark
+    public TileManager loadMap() {
+        world.tileM.loadMap(source);
+        return world.tileM;
+    }
+
+    /**
+     * Draws a frame from a camera that stands still, so every chunk is already cached.
+     *
+     * @return The frame
+     */
+    @Benchmark
+    public BufferedImage drawStill() {
+        world.tileM.drawGround(g2, camera);
+        world.tileM.drawOverhead(g2, camera);
+        return frame;
+    }
+
+    /**
+     * Draws a frame from a camera that pans across the map, so new chunks keep coming into view.
+     *
+     * @return The frame
+     */
+    @Benchmark
+    public BufferedImage drawPanning() {
+        int x = camera.x + PAN_STEP;
+        camera.moveTo(x > maxCameraX ? 0 : x, camera.y);
+        world.tileM.drawGround(g2, camera);
+        world.tileM.drawOverhead(g2, camera);
+        return frame;
+    }
+}
@@ -0,0 +1,188 @@
+package Tile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * Read-only view of a map stored in the compact binary map format.
+ * <p>
+ * The file starts with a fixed header followed by the packed tile ids:
+ * <pre>
+ *   int    magic     ('2DMP')
+ *   short  version   (1)
+ *   int    cols
+ *   int    rows
+ *   byte   layers
+ *   byte   idWidth   (1 for byte ids, 2 for short ids)
+ *   ids    layers * rows * cols unsigned ids, layer by layer, row-major
+ * </pre>
+ * The largest id that fits the id width (0xFF or 0xFFFF) marks a position without a tile;
+ * the decoration and overhead layers hold it wherever nothing is drawn over the ground.
+ * Files are memory-mapped when possible, so opening even a very large map costs
+ * no more than reading the header, and tiles are decoded straight from the buffer
+ * without any per-tile allocation.
+ */
+public final class BinaryMap {
+    /** Marks the start of every binary map file */
+    public static final int MAGIC = ('2' << 24) | ('D' << 16) | ('M' << 8) | 'P';
+    /** Current version of the format */
+    public static final short VERSION = 1;
+    /** Size of the header in bytes */
+    public static final int HEADER_SIZE = 4 + 2 + 4 + 4 + 1 + 1;
+    /** Largest tile id that can be stored; larger ids are reserved for empty positions */
+    public static final int MAX_TILE_ID = 0xFFFE;
+
+    /** Buffer holding the whole file, header included */
+    private final ByteBuffer data;
+    /** Number of tile columns */
+    public final int cols;
+    /** Number of tile rows */
+    public final int rows;
+    /** Number of stacked tile layers */
+    public final int layers;
+    /** Number of bytes per tile id (1 or 2) */
+    public final int idWidth;
+
+    /**
+     * Wraps a buffer containing a complete binary map and validates its header.
+     *
+     * @param data Buffer positioned anywhere; the map is read from absolute offsets
+     * @throws IllegalArgumentException if the buffer does not hold a valid map
+     */
+    public BinaryMap(ByteBuffer data) {
+        this.data = data;
+
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a binary map file");
+        }
+        if (data.getShort(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary map version: " + data.getShort(4));
+        }
+        cols = data.getInt(6);
+        rows = data.getInt(10);
+        layers = data.get(14);
+        idWidth = data.get(15);
+
+        if (cols <= 0 || rows <= 0 || layers <= 0 || (idWidth != 1 && idWidth != 2)) {
+            throw new IllegalArgumentException("Corrupt binary map header");
+        }
+        if ((long) data.limit() < HEADER_SIZE + (long) layers * rows * cols * idWidth) {
+            throw new IllegalArgumentException("Binary map is truncated");
+        }
+    }
+
+    /**
+     * Opens a binary map file by memory-mapping it.
+     *
+     * @param file The map file
+     * @return A view of the map
+     * @throws IOException if the file cannot be read
+     */
+    public static BinaryMap open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new BinaryMap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Opens a binary map from the classpath. Resources that live in the file system
+     * (e.g. when running from the IDE) are memory-mapped, resources inside a jar are
+     * read into a heap buffer.
+     *
+     * @param resource The absolute resource path
+     * @return A view of the map
+     * @throws IOException if the resource cannot be read
+     */
+    public static BinaryMap fromResource(String resource) throws IOException {
+        URL url = Objects.requireNonNull(BinaryMap.class.getResource(resource), resource);
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return open(Path.of(url.toURI()));
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid map location: " + url, e);
+            }
+        }
+        try (InputStream is = url.openStream()) {
+            return new BinaryMap(ByteBuffer.wrap(is.readAllBytes()));
+        }
+    }
+
+    /**
+     * Returns the tile id at the given position.
+     *
+     * @param layer The layer index
+     * @param col The tile column
+     * @param row The tile row
+     * @return The unsigned tile id, or {@link TileMap#VOID_TILE} if the position has no tile
+     */
+    public int getTile(int layer, int col, int row) {
+        int index = (layer * rows + row) * cols + col;
+        if (idWidth == 1) {
+            int id = data.get(HEADER_SIZE + index) & 0xFF;
+            return id == 0xFF ? TileMap.VOID_TILE : id;
+        }
+        int id = data.getShort(HEADER_SIZE + index * 2) & 0xFFFF;
+        return id == 0xFFFF ? TileMap.VOID_TILE : id;
+    }
+
+    /**
+     * Writes a map in the binary format.
+     *
+     * @param file The destination file, replaced if it exists
+     * @param tiles Tile ids indexed as {@code tiles[layer][row][col]}, {@link TileMap#VOID_TILE} where there is no tile
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if a tile id is larger than {@link #MAX_TILE_ID}
+     */
+    public static void write(Path file, int[][][] tiles) throws IOException {
+        int layers = tiles.length;
+        int rows = tiles[0].length;
+        int cols = tiles[0][0].length;
+
+        int maxId = 0;
+        for (int[][] layer : tiles) {
+            for (int[] row : layer) {
+                for (int id : row) {
+                    if (id < TileMap.VOID_TILE || id > MAX_TILE_ID) {
+                        throw new IllegalArgumentException("Tile id out of range: " + id);
+                    }
+                    maxId = Math.max(maxId, id);
+                }
+            }
+        }
+        int idWidth = maxId < 0xFF ? 1 : 2;
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + layers * rows * cols * idWidth);
+        buffer.putInt(MAGIC)
+                .putShort(VERSION)
+                .putInt(cols)
+                .putInt(rows)
+                .put((byte) layers)
+                .put((byte) idWidth);
+        for (int[][] layer : tiles) {
+            for (int[] row : layer) {
+                for (int id : row) {
+                    if (idWidth == 1) {
+                        buffer.put((byte) id);
+                    } else {
+                        buffer.putShort((short) id);
+                    }
+                }
+            }
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package Tile;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed collision bitmap of the world with one bit per tile.
+ * Rows are stored as runs of 64-bit words, so asking whether any tile in a rectangle is
+ * solid tests up to 64 tiles per operation and never allocates. The grid is built from
+ * the map layers and the tile collision table and then kept up to date incrementally.
+ * Positions outside the world always count as solid.
+ */
+public final class CollisionGrid {
+    /**
+     * Notified when tiles change between walkable and solid.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * Called after tiles in an area changed; not every tile in the area has to have changed.
+         *
+         * @param firstCol First tile column of the area
+         * @param firstRow First tile row of the area
+         * @param cols Number of tile columns in the area
+         * @param rows Number of tile rows in the area
+         */
+        void collisionChanged(int firstCol, int firstRow, int cols, int rows);
+    }
+
+    /** Number of tile columns */
+    private final int maxCol;
+    /** Number of tile rows */
+    private final int maxRow;
+    /** Number of 64-bit words per row */
+    private final int wordsPerRow;
+    /** Solid bits, row-major, bit {@code col & 63} of word {@code row * wordsPerRow + col / 64} */
+    private final long[] bits;
+    /** Notified when tiles change, may be null */
+    private Listener listener;
+
+    /**
+     * Constructs a new grid of the given size with every tile solid until it is rebuilt from a map.
+     *
+     * @param maxCol Number of tile columns
+     * @param maxRow Number of tile rows
+     */
+    public CollisionGrid(int maxCol, int maxRow) {
+        this.maxCol = maxCol;
+        this.maxRow = maxRow;
+        this.wordsPerRow = (maxCol + 63) >>> 6;
+        this.bits = new long[wordsPerRow * maxRow];
+        Arrays.fill(bits, -1L);
+    }
+
+    /**
+     * @param listener Notified when tiles change between walkable and solid, or null
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return Number of tile columns
+     */
+    public int getMaxCol() {
+        return maxCol;
+    }
+
+    /**
+     * @return Number of tile rows
+     */
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    /**
+     * Recomputes the bits of an area from the map layers.
+     * A tile is solid if the tile on any layer is; void ground (outside the map or not loaded)
+     * is marked solid, while empty positions on the other layers do not block.
+     *
+     * @param layers The map layers providing tile numbers, ground first
+     * @param properties The tile property table providing collision flags
+     * @param firstCol First tile column of the area
+     * @param firstRow First tile row of the area
+     * @param cols Number of tile columns in the area
+     * @param rows Number of tile rows in the area
+     */
+    public void rebuild(TileMap[] layers, TileProperties properties, int firstCol, int firstRow, int cols, int rows) {
+        int lastCol = Math.min(maxCol, firstCol + cols);
+        int lastRow = Math.min(maxRow, firstRow + rows);
+
+        boolean changed = false;
+        for (int row = Math.max(0, firstRow); row < lastRow; row++) {
+            for (int col = Math.max(0, firstCol); col < lastCol; col++) {
+                changed |= write(col, row, solidAt(layers, properties, col, row));
+            }
+        }
+        if (changed && listener != null) {
+            listener.collisionChanged(firstCol, firstRow, cols, rows);
+        }
+    }
+
+    /**
+     * Checks whether the tiles stacked at a position block movement.
+     *
+     * @param layers The map layers, ground first
+     * @param properties The tile property table providing collision flags
+     * @param col The tile column
+     * @param row The tile row
+     * @return true if the ground is void or the tile on any layer is solid or past the end of the table
+     */
+    public static boolean solidAt(TileMap[] layers, TileProperties properties, int col, int row) {
+        if (isSolid(properties, layers[0].getTile(col, row))) {
+            return true;
+        }
+        for (int layer = 1; layer < layers.length; layer++) {
+            int tileNum = layers[layer].getTile(col, row);
+            if (tileNum != TileMap.VOID_TILE && isSolid(properties, tileNum)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a tile type blocks movement. Tile numbers past the end of the table, such as
+     * ids left in a map after their tile type was removed, block movement instead of failing the lookup.
+     *
+     * @param properties The tile property table providing collision flags
+     * @param tileNum A tile number, {@link TileMap#VOID_TILE} included
+     * @return true if the tile type is solid or not in the table
+     */
+    private static boolean isSolid(TileProperties properties, int tileNum) {
+        return tileNum < 0 || tileNum >= properties.collision.length || properties.collision[tileNum];
+    }
+
+    /**
+     * Marks an area as solid, e.g. when the tiles there are no longer loaded.
+     *
+     * @param firstCol First tile column of the area
+     * @param firstRow First tile row of the area
+     * @param cols Number of tile columns in the area
+     * @param rows Number of tile rows in the area
+     */
+    public void fillSolid(int firstCol, int firstRow, int cols, int rows) {
+        int lastCol = Math.min(maxCol, firstCol + cols);
+        int lastRow = Math.min(maxRow, firstRow + rows);
+
+        boolean changed = false;
+        for (int row = Math.max(0, firstRow); row < lastRow; row++) {
+            for (int col = Math.max(0, firstCol); col < lastCol; col++) {
+                changed |= write(col, row, true);
+            }
+        }
+        if (changed && listener != null) {
+            listener.collisionChanged(firstCol, firstRow, cols, rows);
+        }
+    }
+
+    /**
+     * Sets whether a single tile is solid.
+     *
+     * @param col The tile column
+     * @param row The tile row
+     * @param solid Whether the tile blocks movement
+     */
+    public void set(int col, int row, boolean solid) {
+        if (write(col, row, solid) && listener != null) {
+            listener.collisionChanged(col, row, 1, 1);
+        }
+    }
+
+    /**
+     * Sets whether a single tile is solid without notifying the listener.
+     *
+     * @param col The tile column
+     * @param row The tile row
+     * @param solid Whether the tile blocks movement
+     * @return true if the tile changed
+     */
+    private boolean write(int col, int row, boolean solid) {
+        int index = row * wordsPerRow + (col >>> 6);
+        long mask = 1L << col;
+        long old = bits[index];
+        bits[index] = solid ? old | mask : old & ~mask;
+        return bits[index] != old;
+    }
+
+    /**
+     * Checks whether a single tile is solid.
+     *
+     * @param col The tile column
+     * @param row The tile row
+     * @return true if the tile blocks movement or lies outside the world
+     */
+    public boolean isSolid(int col, int row) {
+        if (col < 0 || row < 0 || col >= maxCol || row >= maxRow) {
+            return true;
+        }
+        return (bits[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    /**
+     * Checks whether any tile in a rectangle of tiles is solid.
+     *
+     * @param firstCol First tile column, inclusive
+     * @param firstRow First tile row, inclusive
+     * @param lastCol Last tile column, inclusive
+     * @param lastRow Last tile row, inclusive
+     * @return true if any tile in the rectangle blocks movement or the rectangle leaves the world
+     */
+    public boolean anySolid(int firstCol, int firstRow, int lastCol, int lastRow) {
+        if (firstCol > lastCol || firstRow > lastRow) {
+            return false;
+        }
+        if (firstCol < 0 || firstRow < 0 || lastCol >= maxCol || lastRow >= maxRow) {
+            return true;
+        }
+        int firstWord = firstCol >>> 6;
+        int lastWord = lastCol >>> 6;
+        long firstMask = -1L << firstCol;
+        long lastMask = -1L >>> (63 - (lastCol & 63));
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            int base = row * wordsPerRow;
+            if (firstWord == lastWord) {
+                if ((bits[base + firstWord] & firstMask & lastMask) != 0) {
+                    return true;
+                }
+                continue;
+            }
+            if ((bits[base + firstWord] & firstMask) != 0 || (bits[base + lastWord] & lastMask) != 0) {
+                return true;
+            }
+            for (int word = firstWord + 1; word < lastWord; word++) {
+                if (bits[base + word] != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether any tile touched by a rectangle of world pixels is solid.
+     * Both edges are treated as inclusive, matching how entity bounds are probed.
+     *
+     * @param left Left edge in world pixels
+     * @param top Top edge in world pixels
+     * @param right Right edge in world pixels
+     * @param bottom Bottom edge in world pixels
+     * @param tileSize Size of a tile in pixels
+     * @return true if any touched tile blocks movement or the rectangle leaves the world
+     */
+    public boolean anySolidInPixels(int left, int top, int right, int bottom, int tileSize) {
+        return anySolid(Math.floorDiv(left, tileSize), Math.floorDiv(top, tileSize),
+                Math.floorDiv(right, tileSize), Math.floorDiv(bottom, tileSize));
+    }
+}
@@ -0,0 +1,106 @@
+package Tile;
+
+/**
+ * A tile map that keeps every tile in memory in a single row-major array.
+ * Tile numbers are stored as bytes when the tileset has at most 256 tile types and as
+ * shorts otherwise, which keeps the map small and lets row-by-row iteration (as done by
+ * rendering and collision) walk memory sequentially.
+ * <p>
+ * Maps for the layers drawn over the ground can be created empty; they store every tile
+ * number plus one so that zero means {@link #VOID_TILE}.
+ */
+public final class FlatTileMap implements TileMap {
+    /** Tile numbers in row-major order when the tileset fits in a byte, otherwise null */
+    private final byte[] byteTiles;
+    /** Tile numbers in row-major order when the tileset needs shorts, otherwise null */
+    private final short[] shortTiles;
+    /** Number of tile columns */
+    private final int maxCol;
+    /** Number of tile rows */
+    private final int maxRow;
+    /** Number of tile types that can be stored */
+    private final int tileTypes;
+    /** 1 if the map can hold {@link #VOID_TILE} and stores tile numbers shifted up by one, otherwise 0 */
+    private final int offset;
+
+    /**
+     * Constructs a new map of the given size filled with tile 0.
+     *
+     * @param maxCol Number of tile columns
+     * @param maxRow Number of tile rows
+     * @param tileTypes Number of tile types in the tileset, at most 65536
+     * @throws IllegalArgumentException if the tileset is too large
+     */
+    public FlatTileMap(int maxCol, int maxRow, int tileTypes) {
+        this(maxCol, maxRow, tileTypes, false);
+    }
+
+    /**
+     * Constructs a new map of the given size.
+     *
+     * @param maxCol Number of tile columns
+     * @param maxRow Number of tile rows
+     * @param tileTypes Number of tile types in the tileset, at most 65536, or 65535 if the map starts empty
+     * @param empty true to fill the map with {@link #VOID_TILE} and accept it in {@link #setTile(int, int, int)},
+     *              false to fill it with tile 0
+     * @throws IllegalArgumentException if the tileset is too large
+     */
+    public FlatTileMap(int maxCol, int maxRow, int tileTypes, boolean empty) {
+        this.offset = empty ? 1 : 0;
+        if (tileTypes + offset > 0x10000) {
+            throw new IllegalArgumentException("Too many tile types: " + tileTypes);
+        }
+        this.maxCol = maxCol;
+        this.maxRow = maxRow;
+        this.tileTypes = tileTypes;
+
+        if (tileTypes + offset <= 0x100) {
+            byteTiles = new byte[maxCol * maxRow];
+            shortTiles = null;
+        } else {
+            byteTiles = null;
+            shortTiles = new short[maxCol * maxRow];
+        }
+    }
+
+    @Override
+    public int getMaxCol() {
+        return maxCol;
+    }
+
+    @Override
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    @Override
+    public int getTile(int col, int row) {
+        if (col < 0 || row < 0 || col >= maxCol || row >= maxRow) {
+            return VOID_TILE;
+        }
+        int index = row * maxCol + col;
+        return (byteTiles != null ? byteTiles[index] & 0xFF : shortTiles[index] & 0xFFFF) - offset;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IndexOutOfBoundsException if the position is outside the map
+     * @throws IllegalArgumentException if the tile number cannot be stored
+     */
+    @Override
+    public void setTile(int col, int row, int tileNum) {
+        if (col < 0 || row < 0 || col >= maxCol || row >= maxRow) {
+            throw new IndexOutOfBoundsException("Position " + col + "," + row + " is outside the " + maxCol + "x" + maxRow + " map");
+        }
+        if (tileNum < -offset || tileNum >= tileTypes) {
+            throw new IllegalArgumentException("Tile number out of range: " + tileNum);
+        }
+        int index = row * maxCol + col;
+        if (byteTiles != null) {
+            byteTiles[index] = (byte) (tileNum + offset);
+        } else {
+            shortTiles[index] = (short) (tileNum + offset);
+        }
+    }
+}
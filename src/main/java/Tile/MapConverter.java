@@ -0,0 +1,119 @@
+package Tile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Converts maps from the editable text format to the binary map format.
+ * Text maps contain one line per tile row with space-separated tile numbers; a {@code .}
+ * marks a position without a tile, for the layers drawn over the ground.
+ * <p>
+ * Usage: {@code MapConverter <output.map> <layer0.txt> [layer1.txt ...]}
+ */
+public final class MapConverter {
+
+    private MapConverter() {
+    }
+
+    /**
+     * Entry point of the converter.
+     *
+     * @param args The output file followed by one text map per layer
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: MapConverter <output.map> <layer0.txt> [layer1.txt ...]");
+            System.exit(1);
+        }
+
+        int[][][] layers = new int[args.length - 1][][];
+        for (int i = 1; i < args.length; i++) {
+            try (BufferedReader br = Files.newBufferedReader(Path.of(args[i]), StandardCharsets.UTF_8)) {
+                layers[i - 1] = parseTextMap(br);
+            }
+            if (layers[i - 1].length != layers[0].length || layers[i - 1][0].length != layers[0][0].length) {
+                throw new IOException("Layer " + args[i] + " does not match the size of " + args[1]);
+            }
+        }
+
+        BinaryMap.write(Path.of(args[0]), layers);
+        System.out.println("Wrote " + args[0] + ": " + layers[0][0].length + "x" + layers[0].length
+                + ", " + layers.length + " layer(s)");
+    }
+
+    /**
+     * Parses a text map. Each line is scanned once and numbers are decoded in place,
+     * without splitting the line into strings.
+     *
+     * @param reader Reader positioned at the start of the map
+     * @return Tile numbers indexed as {@code [row][col]}, {@link TileMap#VOID_TILE} for {@code .}
+     * @throws IOException if the map cannot be read or is not rectangular
+     */
+    public static int[][] parseTextMap(Reader reader) throws IOException {
+        BufferedReader br = reader instanceof BufferedReader b ? b : new BufferedReader(reader);
+        List<int[]> rows = new ArrayList<>();
+        int cols = -1;
+
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            int[] row = parseRow(line, cols < 0 ? 64 : cols);
+            if (cols < 0) {
+                cols = row.length;
+            } else if (row.length != cols) {
+                throw new IOException("Row " + rows.size() + " has " + row.length + " tiles, expected " + cols);
+            }
+            rows.add(row);
+        }
+        if (rows.isEmpty()) {
+            throw new IOException("Map is empty");
+        }
+        return rows.toArray(new int[0][]);
+    }
+
+    /**
+     * Decodes the space-separated tile numbers and {@code .} markers of a single line.
+     *
+     * @param line The line to decode
+     * @param expected Expected number of tiles, used to size the result
+     * @return The tile numbers of the line
+     * @throws IOException if the line contains anything but numbers, markers and whitespace
+     */
+    private static int[] parseRow(String line, int expected) throws IOException {
+        int[] row = new int[Math.max(expected, 1)];
+        int count = 0;
+        int value = -1;
+        boolean empty = false;
+
+        for (int i = 0, n = line.length(); i <= n; i++) {
+            char c = i < n ? line.charAt(i) : ' ';
+            if (c >= '0' && c <= '9' && !empty) {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+            } else if (c == '.' && value < 0 && !empty) {
+                empty = true;
+            } else if (Character.isWhitespace(c)) {
+                if (value >= 0 || empty) {
+                    if (count == row.length) {
+                        row = Arrays.copyOf(row, row.length * 2);
+                    }
+                    row[count++] = empty ? TileMap.VOID_TILE : value;
+                    value = -1;
+                    empty = false;
+                }
+            } else {
+                throw new IOException("Unexpected character '" + c + "' in map line: " + line);
+            }
+        }
+        return count == row.length ? row : Arrays.copyOf(row, count);
+    }
+}
@@ -0,0 +1,681 @@
+package Tile;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A tile map that is split into square regions stored as separate files on disk.
+ * Only the regions around the focus point are kept in memory: they are loaded ahead of
+ * time on a background thread, and the least recently needed regions are released once
+ * more than the memory budget are loaded. Modified regions are written back before they
+ * are released; a region needed again before its write-back ran is taken back from memory
+ * instead of being read from disk. This keeps memory bounded no matter how large the world is.
+ * Regions that fail to load read as void, and the failure, like a failed write-back, is
+ * thrown from the next {@link #focus(int, int)} or from {@link #close()}.
+ * By default regions are installed as soon as they arrive, so which tick they appear on
+ * depends on the disk; {@link #setDeterministic(boolean)} ties it to the tick they were
+ * requested on instead, which recorded and replayed sessions need.
+ * <p>
+ * A region world is a directory containing {@value #INDEX_FILE} with the world size and
+ * region size, and one {@link BinaryMap} file per region named {@code r.<x>.<y>.map}.
+ * Missing region files are treated as void.
+ * <p>
+ * Every region holds all tile layers of its area, so the layers drawn over the ground are
+ * streamed together with it. This map reads and writes the ground layer; {@link #layer(int)}
+ * gives a view of any layer.
+ * <p>
+ * {@link #focus(int, int)} and {@link #setTile(int, int, int)} must be called from the game
+ * thread; {@link #getTile(int, int)} may be called from any thread.
+ */
+public final class RegionTileMap implements TileMap {
+    /** Name of the file describing the world */
+    public static final String INDEX_FILE = "world.properties";
+    /** Stored value of {@link #VOID_TILE}, read back unsigned; larger tile numbers cannot be stored */
+    private static final int EMPTY = 0xFFFF;
+
+    /**
+     * Receives notifications when areas of the map are loaded or released.
+     */
+    public interface RegionListener {
+        /**
+         * Called on the game thread after a region has been loaded.
+         *
+         * @param firstCol First tile column of the region
+         * @param firstRow First tile row of the region
+         * @param cols Number of tile columns in the region
+         * @param rows Number of tile rows in the region
+         */
+        void regionLoaded(int firstCol, int firstRow, int cols, int rows);
+
+        /**
+         * Called on the game thread after a region has been released; its tiles read as void again.
+         *
+         * @param firstCol First tile column of the region
+         * @param firstRow First tile row of the region
+         * @param cols Number of tile columns in the region
+         * @param rows Number of tile rows in the region
+         */
+        default void regionUnloaded(int firstCol, int firstRow, int cols, int rows) {
+        }
+    }
+
+    /**
+     * A loaded region of tiles.
+     */
+    private static final class Region {
+        /** Key of the region, see {@link #key(int, int)} */
+        final long key;
+        /** Region column */
+        final int regionX;
+        /** Region row */
+        final int regionY;
+        /** Unsigned tile numbers in row-major order, layer by layer; {@link #EMPTY} marks void */
+        final short[] tiles;
+        /** Whether the region has changes that are not written to disk yet */
+        boolean dirty;
+        /** Game tick at which the region was last within the focus area */
+        long lastNeeded;
+
+        Region(int regionX, int regionY, short[] tiles) {
+            this.key = key(regionX, regionY);
+            this.regionX = regionX;
+            this.regionY = regionY;
+            this.tiles = tiles;
+        }
+
+        /**
+         * @param index Index into {@link #tiles}
+         * @return The tile number there, or {@link #VOID_TILE}
+         */
+        int get(int index) {
+            int tileNum = tiles[index] & 0xFFFF;
+            return tileNum == EMPTY ? VOID_TILE : tileNum;
+        }
+    }
+
+    /** Directory holding the region files */
+    private final Path dir;
+    /** Number of tile columns in the world */
+    private final int maxCol;
+    /** Number of tile rows in the world */
+    private final int maxRow;
+    /** Width and height of a region, in tiles */
+    private final int regionSize;
+    /** Number of tile layers */
+    private final int layers;
+    /** Number of regions around the focus region loaded ahead of time, in each direction */
+    private final int loadRadius;
+    /** Maximum number of regions kept in memory */
+    private final int maxLoadedRegions;
+
+    /** Loaded regions by key */
+    private final Map<Long, Region> loaded = new ConcurrentHashMap<>();
+    /** Keys of regions queued for loading */
+    private final Set<Long> pending = new HashSet<>();
+    /** Regions finished loading in the background, waiting to be installed by the game thread */
+    private final ConcurrentLinkedQueue<Region> completed = new ConcurrentLinkedQueue<>();
+    /** Released modified regions by key, until their write-back has finished */
+    private final Map<Long, Region> saving = new ConcurrentHashMap<>();
+    /** Load and save failures of the background thread, not thrown yet */
+    private final ConcurrentLinkedQueue<RuntimeException> failures = new ConcurrentLinkedQueue<>();
+    /** Single background thread doing all disk I/O, so saves and loads of a region stay ordered */
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "region-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Most recently accessed region, checked before the region table */
+    private volatile Region lastRegion;
+    /** Notified when regions are loaded, may be null */
+    private RegionListener listener;
+    /** Number of focus updates so far, used to track when regions were last needed */
+    private long tick;
+    /** Whether each focus update waits for the loads queued by the previous one */
+    private boolean deterministic;
+
+    /**
+     * Opens a region world.
+     *
+     * @param dir Directory containing the index file and region files
+     * @param loadRadius Number of regions around the focus region to keep loaded, in each direction
+     * @param maxLoadedRegions Maximum number of regions kept in memory
+     * @throws IOException if the index file cannot be read
+     */
+    public RegionTileMap(Path dir, int loadRadius, int maxLoadedRegions) throws IOException {
+        Properties index = new Properties();
+        try (Reader reader = Files.newBufferedReader(dir.resolve(INDEX_FILE), StandardCharsets.UTF_8)) {
+            index.load(reader);
+        }
+        this.dir = dir;
+        this.maxCol = Integer.parseInt(index.getProperty("cols"));
+        this.maxRow = Integer.parseInt(index.getProperty("rows"));
+        this.regionSize = Integer.parseInt(index.getProperty("regionSize"));
+        this.layers = Integer.parseInt(index.getProperty("layers", "1"));
+        this.loadRadius = loadRadius;
+        this.maxLoadedRegions = Math.max(maxLoadedRegions, (2 * loadRadius + 1) * (2 * loadRadius + 1));
+    }
+
+    /**
+     * Chooses when regions loaded in the background are installed. When deterministic,
+     * every focus update first waits for the loads and write-backs queued before it, so a
+     * region requested on one tick is always installed on the next and collision never
+     * depends on how fast the disk is. The game thread may then stall when the disk falls
+     * more than a tick behind.
+     *
+     * @param deterministic true to install regions on a fixed tick, false to install them as they arrive
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Sets the listener notified when regions finish loading.
+     *
+     * @param listener The listener, or null to remove it
+     */
+    public void setListener(RegionListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public int getMaxCol() {
+        return maxCol;
+    }
+
+    @Override
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    @Override
+    public int getTile(int col, int row) {
+        return getTile(0, col, row);
+    }
+
+    @Override
+    public void setTile(int col, int row, int tileNum) {
+        setTile(0, col, row, tileNum);
+    }
+
+    /**
+     * @return The number of tile layers stored in the regions
+     */
+    public int getLayerCount() {
+        return layers;
+    }
+
+    /**
+     * Returns a view of one tile layer. Positions whose region is not loaded read as
+     * {@link #VOID_TILE} on every layer.
+     *
+     * @param layer The layer index, 0 for the ground
+     * @return The layer
+     * @throws IllegalArgumentException if the world has no such layer
+     */
+    public TileMap layer(int layer) {
+        if (layer < 0 || layer >= layers) {
+            throw new IllegalArgumentException("No layer " + layer + " in a world of " + layers);
+        }
+        if (layer == 0) {
+            return this;
+        }
+        return new TileMap() {
+            @Override
+            public int getMaxCol() {
+                return maxCol;
+            }
+
+            @Override
+            public int getMaxRow() {
+                return maxRow;
+            }
+
+            @Override
+            public int getTile(int col, int row) {
+                return RegionTileMap.this.getTile(layer, col, row);
+            }
+
+            @Override
+            public void setTile(int col, int row, int tileNum) {
+                RegionTileMap.this.setTile(layer, col, row, tileNum);
+            }
+        };
+    }
+
+    /**
+     * @param layer The layer index
+     * @param col The tile column
+     * @param row The tile row
+     * @return The tile number, or {@link #VOID_TILE} if the position is outside the map or not loaded
+     */
+    private int getTile(int layer, int col, int row) {
+        if (col < 0 || row < 0 || col >= maxCol || row >= maxRow) {
+            return VOID_TILE;
+        }
+        Region region = findRegion(col / regionSize, row / regionSize);
+        if (region == null) {
+            return VOID_TILE;
+        }
+        return region.get((layer * regionSize + row % regionSize) * regionSize + (col % regionSize));
+    }
+
+    /**
+     * @param layer The layer index
+     * @param col The tile column
+     * @param row The tile row
+     * @param tileNum The new tile number, or {@link #VOID_TILE}
+     * @throws IndexOutOfBoundsException if the position is outside the map
+     * @throws IllegalArgumentException if the tile number cannot be stored
+     * @throws IllegalStateException if the region containing the position is not loaded
+     */
+    private void setTile(int layer, int col, int row, int tileNum) {
+        if (col < 0 || row < 0 || col >= maxCol || row >= maxRow) {
+            throw new IndexOutOfBoundsException("Position " + col + "," + row + " is outside the " + maxCol + "x" + maxRow + " map");
+        }
+        if (tileNum < VOID_TILE || tileNum >= EMPTY) {
+            throw new IllegalArgumentException("Tile number out of range: " + tileNum);
+        }
+        Region region = findRegion(col / regionSize, row / regionSize);
+        if (region == null) {
+            throw new IllegalStateException("Region containing " + col + "," + row + " is not loaded");
+        }
+        region.tiles[(layer * regionSize + row % regionSize) * regionSize + (col % regionSize)] = (short) tileNum;
+        region.dirty = true;
+    }
+
+    /**
+     * Installs regions that finished loading, queues the regions around the focus point
+     * for loading and releases the least recently needed regions over the budget.
+     * Only the very first call loads the region containing the focus point right away, so
+     * the game starts on solid ground; afterwards it is queued ahead of its neighbours and
+     * reads as void until it arrives, e.g. after a teleport.
+     * In deterministic mode, see {@link #setDeterministic(boolean)}, it first waits for the
+     * regions queued by the previous call.
+     *
+     * @param col The tile column the game is centered on
+     * @param row The tile row the game is centered on
+     * @throws RuntimeException if a region failed to load or to be written back
+     */
+    @Override
+    public void focus(int col, int row) {
+        tick++;
+        if (deterministic) {
+            awaitIo();
+        }
+        installCompleted();
+
+        int centerX = Math.floorDiv(col, regionSize);
+        int centerY = Math.floorDiv(row, regionSize);
+        if (loaded.isEmpty() && pending.isEmpty() && contains(centerX, centerY)) {
+            install(loadRegion(centerX, centerY));
+        }
+        request(centerX, centerY);
+        for (int regionY = centerY - loadRadius; regionY <= centerY + loadRadius; regionY++) {
+            for (int regionX = centerX - loadRadius; regionX <= centerX + loadRadius; regionX++) {
+                request(regionX, regionY);
+            }
+        }
+
+        evictOverBudget();
+        RuntimeException failure = failures.poll();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Marks a loaded region as needed, or queues it for loading.
+     *
+     * @param regionX The region column
+     * @param regionY The region row
+     */
+    private void request(int regionX, int regionY) {
+        if (!contains(regionX, regionY)) {
+            return;
+        }
+        long key = key(regionX, regionY);
+        Region region = loaded.get(key);
+        if (region != null) {
+            region.lastNeeded = tick;
+        } else if (pending.add(key)) {
+            io.execute(() -> completed.add(loadRegion(regionX, regionY)));
+        }
+    }
+
+    /**
+     * @param regionX The region column
+     * @param regionY The region row
+     * @return true if the region lies within the world
+     */
+    private boolean contains(int regionX, int regionY) {
+        return regionX >= 0 && regionY >= 0 && regionX * regionSize < maxCol && regionY * regionSize < maxRow;
+    }
+
+    /**
+     * Writes all modified regions back to disk and stops the background thread.
+     * Calling it again does nothing.
+     *
+     * @throws IOException if a region cannot be written, now or by an earlier write-back
+     */
+    public void close() throws IOException {
+        io.shutdown();
+        try {
+            io.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Region region : loaded.values()) {
+            if (region.dirty) {
+                writeRegion(region);
+            }
+        }
+        RuntimeException failure = failures.poll();
+        if (failure != null) {
+            throw new IOException(failure.getMessage(), failure.getCause());
+        }
+    }
+
+    /**
+     * Blocks until the background thread has finished everything queued so far.
+     *
+     * @throws RuntimeException if the wait is interrupted
+     */
+    private void awaitIo() {
+        try {
+            io.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for regions", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to wait for regions", e.getCause());
+        }
+    }
+
+    /**
+     * Installs every region that finished loading in the background.
+     */
+    private void installCompleted() {
+        Region region;
+        while ((region = completed.poll()) != null) {
+            if (pending.remove(region.key) && !loaded.containsKey(region.key)) {
+                install(region);
+            }
+        }
+    }
+
+    /**
+     * Makes a loaded region available for lookups and notifies the listener.
+     *
+     * @param region The region to install
+     */
+    private void install(Region region) {
+        region.lastNeeded = tick;
+        loaded.put(region.key, region);
+
+        if (listener != null) {
+            int firstCol = region.regionX * regionSize;
+            int firstRow = region.regionY * regionSize;
+            listener.regionLoaded(firstCol, firstRow,
+                    Math.min(regionSize, maxCol - firstCol), Math.min(regionSize, maxRow - firstRow));
+        }
+    }
+
+    /**
+     * Notifies the listener that a region was released.
+     *
+     * @param region The released region
+     */
+    private void notifyUnloaded(Region region) {
+        if (listener != null) {
+            int firstCol = region.regionX * regionSize;
+            int firstRow = region.regionY * regionSize;
+            listener.regionUnloaded(firstCol, firstRow,
+                    Math.min(regionSize, maxCol - firstCol), Math.min(regionSize, maxRow - firstRow));
+        }
+    }
+
+    /**
+     * Releases the least recently needed regions until the budget is met.
+     * Modified regions are written back on the background thread before they are dropped.
+     */
+    private void evictOverBudget() {
+        int excess = loaded.size() - maxLoadedRegions;
+        if (excess <= 0) {
+            return;
+        }
+        List<Region> candidates = new ArrayList<>(loaded.values());
+        // Ties are broken by key so the same regions are released in every run
+        candidates.sort((a, b) -> a.lastNeeded != b.lastNeeded
+                ? Long.compare(a.lastNeeded, b.lastNeeded) : Long.compare(a.key, b.key));
+
+        for (int i = 0; i < excess; i++) {
+            Region region = candidates.get(i);
+            loaded.remove(region.key);
+            if (lastRegion == region) {
+                lastRegion = null;
+            }
+            notifyUnloaded(region);
+            if (region.dirty) {
+                saving.put(region.key, region);
+                io.execute(() -> writeBack(region));
+            }
+        }
+    }
+
+    /**
+     * Writes a released region to disk unless it was taken back since it was released.
+     * Runs on the background thread; failures are queued for the game thread.
+     *
+     * @param region The released region
+     */
+    private void writeBack(Region region) {
+        synchronized (region) {
+            if (saving.get(region.key) != region) {
+                return;
+            }
+            try {
+                writeRegion(region);
+            } catch (IOException e) {
+                failures.add(new RuntimeException("Failed to save region " + region.regionX + "," + region.regionY, e));
+            } finally {
+                saving.remove(region.key, region);
+            }
+        }
+    }
+
+    /**
+     * Loads a region, taking it back from the write-back queue if it is still there.
+     * A region that cannot be read is returned filled with void and its failure is queued.
+     *
+     * @param regionX The region column
+     * @param regionY The region row
+     * @return The loaded region
+     */
+    private Region loadRegion(int regionX, int regionY) {
+        Region saved = saving.get(key(regionX, regionY));
+        if (saved != null) {
+            synchronized (saved) {
+                if (saving.remove(saved.key, saved)) {
+                    // Still modified and not written, so the file on disk is out of date
+                    return saved;
+                }
+            }
+        }
+        try {
+            return readRegion(regionX, regionY);
+        } catch (IOException | IllegalArgumentException e) {
+            failures.add(new RuntimeException("Failed to load region " + regionX + "," + regionY, e));
+            short[] tiles = new short[layers * regionSize * regionSize];
+            Arrays.fill(tiles, (short) VOID_TILE);
+            return new Region(regionX, regionY, tiles);
+        }
+    }
+
+    /**
+     * Looks up a loaded region, checking the most recently used one first.
+     * The region is only kept as the most recently used one while it is still loaded, so a
+     * lookup racing with {@link #evictOverBudget()} cannot bring a released region back.
+     *
+     * @param regionX The region column
+     * @param regionY The region row
+     * @return The region, or null if it is not loaded
+     */
+    private Region findRegion(int regionX, int regionY) {
+        Region region = lastRegion;
+        if (region != null && region.regionX == regionX && region.regionY == regionY) {
+            return region;
+        }
+        region = loaded.get(key(regionX, regionY));
+        if (region != null) {
+            lastRegion = region;
+            // An eviction between the lookup and the store has already cleared the cache, so clear it again
+            if (loaded.get(region.key) != region) {
+                lastRegion = null;
+            }
+        }
+        return region;
+    }
+
+    /**
+     * Reads a region from disk. Missing regions are returned filled with void.
+     *
+     * @param regionX The region column
+     * @param regionY The region row
+     * @return The loaded region
+     * @throws IOException if the region file cannot be read
+     * @throws IllegalArgumentException if the region file is not a valid binary map
+     */
+    private Region readRegion(int regionX, int regionY) throws IOException {
+        short[] tiles = new short[layers * regionSize * regionSize];
+        Path file = regionFile(regionX, regionY);
+        if (!Files.exists(file)) {
+            Arrays.fill(tiles, (short) VOID_TILE);
+            return new Region(regionX, regionY, tiles);
+        }
+        BinaryMap map = BinaryMap.open(file);
+        for (int layer = 0; layer < layers; layer++) {
+            for (int row = 0; row < regionSize; row++) {
+                for (int col = 0; col < regionSize; col++) {
+                    boolean inside = layer < map.layers && col < map.cols && row < map.rows;
+                    tiles[(layer * regionSize + row) * regionSize + col] = (short) (inside ? map.getTile(layer, col, row) : VOID_TILE);
+                }
+            }
+        }
+        return new Region(regionX, regionY, tiles);
+    }
+
+    /**
+     * Writes a region to disk.
+     *
+     * @param region The region to write
+     * @throws IOException if the file cannot be written
+     */
+    private void writeRegion(Region region) throws IOException {
+        int cols = Math.min(regionSize, maxCol - region.regionX * regionSize);
+        int rows = Math.min(regionSize, maxRow - region.regionY * regionSize);
+        int[][][] tiles = new int[layers][rows][cols];
+        for (int layer = 0; layer < layers; layer++) {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    int tileNum = region.get((layer * regionSize + row) * regionSize + col);
+                    // The ground is never empty on disk
+                    tiles[layer][row][col] = layer == 0 ? Math.max(0, tileNum) : tileNum;
+                }
+            }
+        }
+        BinaryMap.write(regionFile(region.regionX, region.regionY), tiles);
+        region.dirty = false;
+    }
+
+    /**
+     * @param regionX The region column
+     * @param regionY The region row
+     * @return The file holding the region
+     */
+    private Path regionFile(int regionX, int regionY) {
+        return dir.resolve("r." + regionX + "." + regionY + ".map");
+    }
+
+    /**
+     * Combines region coordinates into a single lookup key.
+     *
+     * @param regionX The region column
+     * @param regionY The region row
+     * @return The region key
+     */
+    private static long key(int regionX, int regionY) {
+        return ((long) regionX << 32) | (regionY & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Splits a binary map into a region world.
+     *
+     * @param source The map to split
+     * @param dir The output directory, created if missing
+     * @param regionSize Width and height of a region, in tiles
+     * @throws IOException if the world cannot be written
+     */
+    public static void split(BinaryMap source, Path dir, int regionSize) throws IOException {
+        Files.createDirectories(dir);
+
+        Properties index = new Properties();
+        index.setProperty("cols", Integer.toString(source.cols));
+        index.setProperty("rows", Integer.toString(source.rows));
+        index.setProperty("regionSize", Integer.toString(regionSize));
+        index.setProperty("layers", Integer.toString(source.layers));
+        try (Writer writer = Files.newBufferedWriter(dir.resolve(INDEX_FILE), StandardCharsets.UTF_8)) {
+            index.store(writer, "Region world");
+        }
+
+        for (int regionY = 0; regionY * regionSize < source.rows; regionY++) {
+            for (int regionX = 0; regionX * regionSize < source.cols; regionX++) {
+                int cols = Math.min(regionSize, source.cols - regionX * regionSize);
+                int rows = Math.min(regionSize, source.rows - regionY * regionSize);
+                int[][][] tiles = new int[source.layers][rows][cols];
+                for (int layer = 0; layer < source.layers; layer++) {
+                    for (int row = 0; row < rows; row++) {
+                        for (int col = 0; col < cols; col++) {
+                            tiles[layer][row][col] = source.getTile(layer, regionX * regionSize + col, regionY * regionSize + row);
+                        }
+                    }
+                }
+                BinaryMap.write(dir.resolve("r." + regionX + "." + regionY + ".map"), tiles);
+            }
+        }
+    }
+
+    /**
+     * Splits a binary map file into a region world.
+     * <p>
+     * Usage: {@code RegionTileMap <world.map> <outputDir> [regionSize]}
+     *
+     * @param args The map file, output directory and optional region size (default 64)
+     * @throws IOException if the map cannot be read or the world cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: RegionTileMap <world.map> <outputDir> [regionSize]");
+            System.exit(1);
+        }
+        int regionSize = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        split(BinaryMap.open(Path.of(args[0])), Path.of(args[1]), regionSize);
+    }
+}
@@ -0,0 +1,172 @@
+package Tile;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs many small images (tiles, sprite frames) into one display-compatible image,
+ * each pre-scaled to a square cell of the final on-screen size.
+ * Drawing a sprite then copies a cell 1:1 from a single image that Java2D can keep in
+ * video memory, instead of scaling and converting a separate small image on every call.
+ * Sprites are identified by the id {@link Builder#add(BufferedImage)} returned for them.
+ */
+public final class TextureAtlas {
+    /** The packed image */
+    private final BufferedImage image;
+    /** Width and height of a cell in pixels */
+    private final int cellSize;
+    /** Left edge of each sprite's cell in the atlas image */
+    private final int[] sourceX;
+    /** Top edge of each sprite's cell in the atlas image */
+    private final int[] sourceY;
+
+    /**
+     * Collects images and packs them into an atlas.
+     */
+    public static final class Builder {
+        /** Width and height every image is scaled to */
+        private final int cellSize;
+        /** Images in id order */
+        private final List<BufferedImage> images = new ArrayList<>();
+
+        /**
+         * Constructs a new builder.
+         *
+         * @param cellSize Width and height every image is scaled to, in pixels
+         */
+        public Builder(int cellSize) {
+            this.cellSize = cellSize;
+        }
+
+        /**
+         * Adds an image to the atlas.
+         *
+         * @param image The image; it is scaled to the cell size when the atlas is built
+         * @return The id of the image in the atlas
+         */
+        public int add(BufferedImage image) {
+            images.add(image);
+            return images.size() - 1;
+        }
+
+        /**
+         * Packs every added image into a roughly square grid of cells.
+         *
+         * @return The new atlas
+         */
+        public TextureAtlas build() {
+            int count = Math.max(1, images.size());
+            int columns = (int) Math.ceil(Math.sqrt(count));
+            int rows = (count + columns - 1) / columns;
+
+            BufferedImage atlas = createCompatibleImage(columns * cellSize, rows * cellSize, Transparency.TRANSLUCENT);
+            int[] sourceX = new int[images.size()];
+            int[] sourceY = new int[images.size()];
+
+            Graphics2D g2 = atlas.createGraphics();
+            try {
+                // Pixel art stays crisp when scaled with nearest neighbour
+                g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                for (int id = 0; id < images.size(); id++) {
+                    sourceX[id] = (id % columns) * cellSize;
+                    sourceY[id] = (id / columns) * cellSize;
+                    g2.drawImage(images.get(id), sourceX[id], sourceY[id], cellSize, cellSize, null);
+                }
+            } finally {
+                g2.dispose();
+            }
+            return new TextureAtlas(atlas, cellSize, sourceX, sourceY);
+        }
+    }
+
+    /**
+     * Constructs a new atlas; use a {@link Builder}.
+     *
+     * @param image The packed image
+     * @param cellSize Width and height of a cell in pixels
+     * @param sourceX Left edge of each sprite's cell
+     * @param sourceY Top edge of each sprite's cell
+     */
+    private TextureAtlas(BufferedImage image, int cellSize, int[] sourceX, int[] sourceY) {
+        this.image = image;
+        this.cellSize = cellSize;
+        this.sourceX = sourceX;
+        this.sourceY = sourceY;
+    }
+
+    /**
+     * Draws a sprite at its pre-scaled size.
+     *
+     * @param g2 The Graphics2D object used for rendering
+     * @param id The id of the sprite
+     * @param x Left edge on the destination, in pixels
+     * @param y Top edge on the destination, in pixels
+     */
+    public void draw(Graphics2D g2, int id, int x, int y) {
+        int sx = sourceX[id];
+        int sy = sourceY[id];
+        g2.drawImage(image, x, y, x + cellSize, y + cellSize, sx, sy, sx + cellSize, sy + cellSize, null);
+    }
+
+    /**
+     * @param id The id of a sprite
+     * @return The left edge of the sprite's cell in {@link #getImage()}
+     */
+    public int sourceX(int id) {
+        return sourceX[id];
+    }
+
+    /**
+     * @param id The id of a sprite
+     * @return The top edge of the sprite's cell in {@link #getImage()}
+     */
+    public int sourceY(int id) {
+        return sourceY[id];
+    }
+
+    /**
+     * @return The width and height of a cell in pixels
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return The number of sprites in the atlas
+     */
+    public int size() {
+        return sourceX.length;
+    }
+
+    /**
+     * @return The packed image
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Creates an image in the display's native pixel format so blits need no conversion
+     * and can be accelerated. Falls back to a plain RGB or ARGB image when no display is available.
+     *
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @param transparency One of the {@link Transparency} constants
+     * @return A new image
+     */
+    public static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice()
+                    .getDefaultConfiguration()
+                    .createCompatibleImage(width, height, transparency);
+        }
+        int type = transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE;
+        return new BufferedImage(width, height, type);
+    }
+}
@@ -0,0 +1,382 @@
+package Tile;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import main.Camera;
+
+/**
+ * Caches one tile layer as pre-rendered chunks of {@value #CHUNK_SIZE}x{@value #CHUNK_SIZE} tiles.
+ * Each chunk is rendered once at the final tile size into a display-compatible image, so a frame
+ * only needs to blit the handful of chunks that intersect the camera instead of one scaled
+ * image per tile. Chunks are rebuilt lazily after their tiles change and the least recently
+ * drawn chunks are evicted once the cache grows past its budget.
+ * <p>
+ * Each layer has its own cache, so a change on one layer never re-renders another. Ground
+ * chunks are opaque; chunks of the layers above are transparent wherever they have no tile,
+ * and chunks without any tile on them keep no image and are not drawn at all, so a sparse
+ * layer costs a blit only where it has something to show.
+ * <p>
+ * Each chunk remembers which of its cells hold animated tiles. When an animation moves to
+ * its next frame, only those cells are repainted in place; the rest of the chunk stays as rendered.
+ * <p>
+ * Invalidations may come from the game thread while the cache is drawn on the render
+ * thread, so they are queued and applied at the start of the next draw.
+ */
+public final class TileChunkCache {
+    /** Width and height of a chunk, in tiles */
+    public static final int CHUNK_SIZE = 16;
+    /** Maximum number of rendered chunks kept in memory */
+    private static final int MAX_CACHED_CHUNKS = 16;
+
+    /** Tile manager providing the map layout and drawing the tiles */
+    private final TileManager tileM;
+    /** The cached layer, see {@link TileManager#GROUND_LAYER} */
+    private final int layer;
+    /** Whether chunks are opaque, which only the ground layer is */
+    private final boolean opaque;
+    /** Size of a tile on screen, in pixels */
+    private final int tileSize;
+    /** Number of tile columns in the world */
+    private final int maxWorldCol;
+    /** Number of tile rows in the world */
+    private final int maxWorldRow;
+    /** Number of chunk columns covering the world */
+    private final int chunkCols;
+
+    /**
+     * A rendered chunk and the animated cells in it.
+     */
+    private static final class Chunk {
+        /** The rendered tiles, or null if the chunk has no tile on it */
+        final BufferedImage image;
+        /** Cells holding animated tiles, each as {@code row * CHUNK_SIZE + col} within the chunk */
+        int[] animatedCells = new int[0];
+        /** Number of entries in {@link #animatedCells} */
+        int animatedCount;
+        /** Frame version of the tile manager the animated cells were last painted for */
+        long frameVersion;
+
+        Chunk(BufferedImage image) {
+            this.image = image;
+        }
+
+        /**
+         * Records a cell holding an animated tile.
+         *
+         * @param cell The cell, as {@code row * CHUNK_SIZE + col}
+         */
+        void addAnimatedCell(int cell) {
+            if (animatedCount == animatedCells.length) {
+                animatedCells = Arrays.copyOf(animatedCells, Math.max(16, animatedCount * 2));
+            }
+            animatedCells[animatedCount++] = cell;
+        }
+    }
+
+    /** Rendered chunks keyed by chunk index, in least-recently-drawn order */
+    private final LinkedHashMap<Integer, Chunk> chunks = new LinkedHashMap<>(MAX_CACHED_CHUNKS, 0.75f, true);
+    /** Full-size chunk images released by eviction or invalidation, reused by the next render */
+    private final ArrayDeque<BufferedImage> spareImages = new ArrayDeque<>();
+    /** Indices of chunks invalidated since the last draw */
+    private final ConcurrentLinkedQueue<Integer> staleChunks = new ConcurrentLinkedQueue<>();
+    /** Whether every chunk was invalidated since the last draw */
+    private volatile boolean allStale;
+
+    /**
+     * Constructs a new chunk cache over one layer of the given tile manager's map.
+     *
+     * @param tileM The tile manager providing the map layout and drawing the tiles
+     * @param layer The cached layer, see {@link TileManager#GROUND_LAYER}
+     * @param tileSize Size of a tile on screen, in pixels
+     * @param maxWorldCol Number of tile columns in the world
+     * @param maxWorldRow Number of tile rows in the world
+     */
+    public TileChunkCache(TileManager tileM, int layer, int tileSize, int maxWorldCol, int maxWorldRow) {
+        this.tileM = tileM;
+        this.layer = layer;
+        this.opaque = layer == TileManager.GROUND_LAYER;
+        this.tileSize = tileSize;
+        this.maxWorldCol = maxWorldCol;
+        this.maxWorldRow = maxWorldRow;
+        this.chunkCols = (maxWorldCol + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    /**
+     * Marks the chunk containing the given tile as stale so it is re-rendered on its next draw.
+     *
+     * @param col The tile column that changed
+     * @param row The tile row that changed
+     */
+    public void invalidate(int col, int row) {
+        if (col < 0 || row < 0 || col >= maxWorldCol || row >= maxWorldRow) {
+            return;
+        }
+        staleChunks.add(chunkIndex(col / CHUNK_SIZE, row / CHUNK_SIZE));
+    }
+
+    /**
+     * Marks every chunk overlapping the given tile area as stale.
+     *
+     * @param firstCol First tile column of the area
+     * @param firstRow First tile row of the area
+     * @param cols Number of tile columns in the area
+     * @param rows Number of tile rows in the area
+     */
+    public void invalidateArea(int firstCol, int firstRow, int cols, int rows) {
+        for (int row = firstRow; row < firstRow + rows + CHUNK_SIZE - 1; row += CHUNK_SIZE) {
+            for (int col = firstCol; col < firstCol + cols + CHUNK_SIZE - 1; col += CHUNK_SIZE) {
+                invalidate(Math.min(col, firstCol + cols - 1), Math.min(row, firstRow + rows - 1));
+            }
+        }
+    }
+
+    /**
+     * Marks every chunk as stale, e.g. after a new map or new tile images were loaded.
+     */
+    public void invalidateAll() {
+        allStale = true;
+    }
+
+    /**
+     * @return true if any chunk was invalidated since the last draw
+     */
+    public boolean hasStaleChunks() {
+        return allStale || !staleChunks.isEmpty();
+    }
+
+    /**
+     * Draws the chunks intersecting the camera's visible tile range; empty chunks are skipped.
+     *
+     * @param g2 The Graphics2D object used for rendering
+     * @param camera The camera describing the visible part of the world
+     */
+    public void draw(Graphics2D g2, Camera camera) {
+        if (camera.minCol > camera.maxCol || camera.minRow > camera.maxRow) {
+            return;
+        }
+        dropStaleChunks();
+        int chunkPixels = CHUNK_SIZE * tileSize;
+
+        for (int chunkRow = camera.minRow / CHUNK_SIZE; chunkRow <= camera.maxRow / CHUNK_SIZE; chunkRow++) {
+            for (int chunkCol = camera.minCol / CHUNK_SIZE; chunkCol <= camera.maxCol / CHUNK_SIZE; chunkCol++) {
+                BufferedImage image = getChunk(chunkCol, chunkRow).image;
+                if (image == null) {
+                    continue;
+                }
+                g2.drawImage(image, camera.toScreenX(chunkCol * chunkPixels), camera.toScreenY(chunkRow * chunkPixels), null);
+            }
+        }
+    }
+
+    /**
+     * Drops the rendered images of all chunks invalidated since the last draw.
+     */
+    private void dropStaleChunks() {
+        if (allStale) {
+            allStale = false;
+            staleChunks.clear();
+            for (Chunk chunk : chunks.values()) {
+                release(chunk.image);
+            }
+            chunks.clear();
+        }
+        Integer index;
+        while ((index = staleChunks.poll()) != null) {
+            Chunk chunk = chunks.remove(index);
+            if (chunk != null) {
+                release(chunk.image);
+            }
+        }
+    }
+
+    /**
+     * Returns a chunk, rendering it first if it is not cached and bringing its animated
+     * cells up to date if it is.
+     *
+     * @param chunkCol The chunk column
+     * @param chunkRow The chunk row
+     * @return The rendered chunk
+     */
+    private Chunk getChunk(int chunkCol, int chunkRow) {
+        int index = chunkIndex(chunkCol, chunkRow);
+        Chunk chunk = chunks.get(index);
+        if (chunk == null) {
+            chunk = render(chunkCol, chunkRow);
+            chunks.put(index, chunk);
+            evictOverflow();
+        } else if (chunk.animatedCount > 0 && chunk.frameVersion != tileM.getFrameVersion()) {
+            animate(chunk, chunkCol, chunkRow);
+        }
+        return chunk;
+    }
+
+    /**
+     * Renders all tiles of a chunk into an image at final tile scale.
+     * A chunk of an upper layer without any tile gets no image.
+     *
+     * @param chunkCol The chunk column
+     * @param chunkRow The chunk row
+     * @return The rendered chunk
+     */
+    private Chunk render(int chunkCol, int chunkRow) {
+        int firstCol = chunkCol * CHUNK_SIZE;
+        int firstRow = chunkRow * CHUNK_SIZE;
+        int cols = Math.min(CHUNK_SIZE, maxWorldCol - firstCol);
+        int rows = Math.min(CHUNK_SIZE, maxWorldRow - firstRow);
+        if (!opaque && isEmpty(firstCol, firstRow, cols, rows)) {
+            return new Chunk(null);
+        }
+
+        Chunk chunk = new Chunk(acquireImage(cols * tileSize, rows * tileSize));
+        chunk.frameVersion = tileM.getFrameVersion();
+        BufferedImage image = chunk.image;
+        Graphics2D g2 = image.createGraphics();
+        try {
+            clear(g2, 0, 0, image.getWidth(), image.getHeight());
+
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    int tileNum = tileM.getTile(layer, firstCol + col, firstRow + row);
+                    if (tileNum == TileMap.VOID_TILE) {
+                        continue;
+                    }
+                    if (tileM.animationOf(tileNum) != TileProperties.NO_ANIMATION) {
+                        chunk.addAnimatedCell(row * CHUNK_SIZE + col);
+                    }
+                    tileM.drawTile(g2, tileNum, col * tileSize, row * tileSize);
+                }
+            }
+        } finally {
+            g2.dispose();
+        }
+        return chunk;
+    }
+
+    /**
+     * Repaints the animated cells of a chunk whose animation changed frame since they were painted.
+     *
+     * @param chunk The chunk
+     * @param chunkCol The chunk column
+     * @param chunkRow The chunk row
+     */
+    private void animate(Chunk chunk, int chunkCol, int chunkRow) {
+        int firstCol = chunkCol * CHUNK_SIZE;
+        int firstRow = chunkRow * CHUNK_SIZE;
+        Graphics2D g2 = chunk.image.createGraphics();
+        try {
+            for (int i = 0; i < chunk.animatedCount; i++) {
+                int col = chunk.animatedCells[i] % CHUNK_SIZE;
+                int row = chunk.animatedCells[i] / CHUNK_SIZE;
+                int tileNum = tileM.getTile(layer, firstCol + col, firstRow + row);
+                int animation = tileM.animationOf(tileNum);
+                if (animation == TileProperties.NO_ANIMATION || !tileM.animationChangedSince(animation, chunk.frameVersion)) {
+                    continue;
+                }
+                // Frames may be transparent, so clear the old one first
+                clear(g2, col * tileSize, row * tileSize, tileSize, tileSize);
+                tileM.drawTile(g2, tileNum, col * tileSize, row * tileSize);
+            }
+        } finally {
+            g2.dispose();
+        }
+        chunk.frameVersion = tileM.getFrameVersion();
+    }
+
+    /**
+     * @param firstCol First tile column of the area
+     * @param firstRow First tile row of the area
+     * @param cols Number of tile columns in the area
+     * @param rows Number of tile rows in the area
+     * @return true if no position in the area has a tile on this layer
+     */
+    private boolean isEmpty(int firstCol, int firstRow, int cols, int rows) {
+        for (int row = firstRow; row < firstRow + rows; row++) {
+            for (int col = firstCol; col < firstCol + cols; col++) {
+                if (tileM.getTile(layer, col, row) != TileMap.VOID_TILE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Clears an area of a chunk image to black on the ground layer and to transparent on the others.
+     *
+     * @param g2 Graphics of the chunk image
+     * @param x Left edge of the area, in pixels
+     * @param y Top edge of the area, in pixels
+     * @param width Width of the area, in pixels
+     * @param height Height of the area, in pixels
+     */
+    private void clear(Graphics2D g2, int x, int y, int width, int height) {
+        if (opaque) {
+            g2.setColor(Color.BLACK);
+            g2.fillRect(x, y, width, height);
+            return;
+        }
+        g2.setComposite(AlphaComposite.Clear);
+        g2.fillRect(x, y, width, height);
+        g2.setComposite(AlphaComposite.SrcOver);
+    }
+
+    /**
+     * Evicts the least recently drawn chunks until the cache is within its budget.
+     */
+    private void evictOverflow() {
+        Iterator<Map.Entry<Integer, Chunk>> it = chunks.entrySet().iterator();
+        while (chunks.size() > MAX_CACHED_CHUNKS && it.hasNext()) {
+            release(it.next().getValue().image);
+            it.remove();
+        }
+    }
+
+    /**
+     * Returns an image of the requested size, reusing a released full-size chunk image when possible.
+     *
+     * @param width Image width in pixels
+     * @param height Image height in pixels
+     * @return An image of the requested size, opaque on the ground layer and translucent on the others
+     */
+    private BufferedImage acquireImage(int width, int height) {
+        int chunkPixels = CHUNK_SIZE * tileSize;
+        if (width == chunkPixels && height == chunkPixels && !spareImages.isEmpty()) {
+            return spareImages.pop();
+        }
+        return TextureAtlas.createCompatibleImage(width, height, opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Keeps a no longer used full-size chunk image for reuse.
+     *
+     * @param image The released image, may be null
+     */
+    private void release(BufferedImage image) {
+        int chunkPixels = CHUNK_SIZE * tileSize;
+        if (image != null && image.getWidth() == chunkPixels && image.getHeight() == chunkPixels
+                && spareImages.size() < MAX_CACHED_CHUNKS) {
+            spareImages.push(image);
+        }
+    }
+
+    /**
+     * Computes the flat index of a chunk.
+     *
+     * @param chunkCol The chunk column
+     * @param chunkRow The chunk row
+     * @return The chunk index
+     */
+    private int chunkIndex(int chunkCol, int chunkRow) {
+        return chunkRow * chunkCols + chunkCol;
+    }
+}
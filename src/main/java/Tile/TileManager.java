@@ -1,158 +1,684 @@
 package Tile;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
-import javax.imageio.ImageIO;
-
-import main.GamePanel;
+import main.Camera;
+import main.DamageTracker;
+import main.GameWorld;
 
 /**
  * Manages the game's tile system, including loading, storing, and rendering map tiles.
  * This class handles the game world's visual representation through a tile-based system,
- * supporting different tile types (grass, water, buildings, etc.) and their properties.
+ * supporting different tile types (grass, water, buildings, etc.) and their properties,
+ * which are defined by a {@link TileSet} descriptor rather than in code.
+ * <p>
+ * The map is made of up to {@value #LAYER_COUNT} stacked layers: the ground, decorations
+ * drawn over it such as trees, and an overhead layer drawn over the entities. Each layer is
+ * cached on its own, so a frame blits the cached ground and decorations, draws the entities,
+ * then blits the cached overhead layer; only the entities are drawn from scratch.
+ * A tile blocks movement if the tile on any layer at its position is solid.
+ * Tiles can only be placed on the layers their tileset flags them for, see {@link TileSet}.
  */
 public final class TileManager {
-    /** Reference to the main game panel */
-    private final GamePanel gp;
-    /** Array storing all tile types used in the game */
-    public Tile[] tile;
-    /** 2D array representing the map layout using tile numbers */
-    public int[][] mapTileNum;
+    /** Fill color used to highlight solid tiles in the collision overlay */
+    private static final Color COLLISION_OVERLAY_COLOR = new Color(255, 0, 0, 80);
+    /** System property naming a region world directory to stream instead of the built-in map */
+    public static final String WORLD_DIR_PROPERTY = "game.world";
+    /** Layer index of the ground, which has a tile everywhere in the map */
+    public static final int GROUND_LAYER = 0;
+    /** Layer index of the decorations drawn over the ground but under the entities */
+    public static final int DECORATION_LAYER = 1;
+    /** Layer index of the tiles drawn over the entities */
+    public static final int OVERHEAD_LAYER = 2;
+    /** Most layers a map can have */
+    public static final int LAYER_COUNT = 3;
+
+    /** The game world this object belongs to */
+    private final GameWorld world;
+    /** The tile types used in the game, read from a tileset descriptor */
+    public TileSet tileSet;
+    /** Primitive property tables of the tile types, replaced whenever a tileset is loaded */
+    public TileProperties properties;
+
+    /** The ground layer of the map layout using tile numbers */
+    public TileMap map;
+    /** The layers of the map, ground first; the layers above hold {@link TileMap#VOID_TILE} where they are empty */
+    public TileMap[] layers;
+    /** Solid-tile bitmap of all layers, kept in sync by {@link #setTile(int, int, int, int)} */
+    public CollisionGrid collisionGrid;
+    /** Pre-rendered chunks of each layer */
+    private TileChunkCache[] chunkCaches;
+    /** The streamed world the layers come from, or null if the map is held in memory */
+    private volatile RegionTileMap regionWorld;
+    /** Whether a streamed world installs regions on a fixed tick, see {@link RegionTileMap#setDeterministic(boolean)} */
+    private boolean deterministicStreaming;
+    /** Map file or world directory the layers were loaded from, empty for maps set up in code */
+    private String mapSource = "";
+    /** Running hash of every tile changed through {@link #setTile(int, int, int, int)} */
+    private long editHash;
+    /** Atlas holding the pre-scaled tile images, or null until one is set */
+    private volatile TextureAtlas atlas;
+    /** Paths of the tile images held from the asset manager */
+    private final List<String> imagePaths = new ArrayList<>();
+    /** Pending requests for the tile images */
+    private final List<CompletableFuture<Void>> imageRequests = new ArrayList<>();
+    /** Completed once every tile image is decoded */
+    private CompletableFuture<Void> imagesLoaded;
+    /** Image of each tileset sprite, empty until the images are decoded */
+    private volatile BufferedImage[] spriteImages = new BufferedImage[0];
+    /** Atlas id of each tileset sprite */
+    private int[] spriteAtlasIds = new int[0];
+
+    // Animation state, only touched by the render thread
+    /** Tileset sprite each animation shows at {@link #animatedTick} */
+    private int[] animationSprites = new int[0];
+    /** {@link #frameVersion} at which each animation last changed its frame */
+    private long[] animationChanged = new long[0];
+    /** Incremented whenever any animation changes frame, so cached chunks can tell which cells are out of date */
+    private long frameVersion;
+    /** Tileset the animation state was computed for */
+    private TileSet animatedSet;
+    /** Tick the animation frames were last computed for, or -1 */
+    private long animatedTick = -1;
 
     /**
-     * Constructs a new TileManager with the specified game panel.
-     * Initializes tile arrays and loads necessary resources.
+     * Constructs a new TileManager with the specified game world.
+     * Loads the tileset (see {@link TileSet#load()}) and the map.
      *
-     * @param gp The game panel that this tile manager will work with
+     * @param world The game world that this tile manager will work with
      */
-    public TileManager(GamePanel gp) {
-        this.gp = gp;
+    public TileManager(GameWorld world) {
+        this.world = world;
 
-        tile = new Tile[20];
-        mapTileNum = new int[gp.maxWorldCol][gp.maxWorldRow];
+        loadTileSet(TileSet.load());
 
-        getTileImage();
-        loadMap("/maps/world01.txt");
+        String worldDir = System.getProperty(WORLD_DIR_PROPERTY);
+        if (worldDir != null) {
+            openRegionWorld(Path.of(worldDir));
+        } else {
+            setMap(new FlatTileMap(world.maxWorldCol, world.maxWorldRow, properties.size()),
+                    new FlatTileMap(world.maxWorldCol, world.maxWorldRow, properties.size(), true),
+                    new FlatTileMap(world.maxWorldCol, world.maxWorldRow, properties.size(), true));
+            loadMap("/maps/world01.map");
+        }
     }
 
     /**
-     * Loads all tile images and initializes their properties.
-     * Sets up different types of tiles including grass, buildings, water, and trees,
-     * along with their collision properties.
-     * 
-     * @throws RuntimeException if there's an error loading any tile image
+     * Replaces the map layout, e.g. to switch to a streamed world.
+     * Layers left out are treated as empty. A streamed world that was open is closed.
+     *
+     * @param layers The new layers, ground first, all of the ground's size
+     * @throws IllegalArgumentException if there are no layers or more than {@value #LAYER_COUNT}
      */
-    public void getTileImage() {
-        try{
-            // GRASS
-            tile[0] = new Tile();
-            tile[0].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/grass/grass1.PNG")));
-
-            tile[1] = new Tile();
-            tile[1].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/grass/grass2.PNG")));
+    public void setMap(TileMap... layers) {
+        if (layers.length == 0 || layers.length > LAYER_COUNT) {
+            throw new IllegalArgumentException("Unsupported number of layers: " + layers.length);
+        }
+        close();
+        this.mapSource = "";
+        this.editHash = 0;
+        this.map = layers[GROUND_LAYER];
+        this.layers = layers.clone();
+        this.chunkCaches = new TileChunkCache[layers.length];
+        for (int layer = 0; layer < layers.length; layer++) {
+            chunkCaches[layer] = new TileChunkCache(this, layer, world.tileSize, map.getMaxCol(), map.getMaxRow());
+        }
+        this.collisionGrid = new CollisionGrid(map.getMaxCol(), map.getMaxRow());
+    }
 
-            tile[2] = new Tile();
-            tile[2].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/grass/grass3.PNG")));
+    /**
+     * Switches to a region world streamed from disk around the player.
+     *
+     * @param dir Directory containing the region world
+     * @throws RuntimeException if the world cannot be opened
+     */
+    public void openRegionWorld(Path dir) {
+        try {
+            RegionTileMap regions = new RegionTileMap(dir, 1, 16);
+            TileMap[] views = new TileMap[Math.min(LAYER_COUNT, regions.getLayerCount())];
+            for (int layer = 0; layer < views.length; layer++) {
+                views[layer] = regions.layer(layer);
+            }
+            setMap(views);
+            regions.setDeterministic(deterministicStreaming);
+            regionWorld = regions;
+            mapSource = dir.toString();
+            regions.setListener(new RegionTileMap.RegionListener() {
+                @Override
+                public void regionLoaded(int firstCol, int firstRow, int cols, int rows) {
+                    refreshArea(firstCol, firstRow, cols, rows);
+                }
 
-            tile[3] = new Tile();
-            tile[3].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/grass/grass4.PNG")));
+                @Override
+                public void regionUnloaded(int firstCol, int firstRow, int cols, int rows) {
+                    collisionGrid.fillSolid(firstCol, firstRow, cols, rows);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open world: " + dir, e);
+        }
+    }
 
-            tile[4] = new Tile();
-            tile[4].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/grass/grass5.PNG")));
+    /**
+     * Takes the tile types of the world and requests their images from the asset manager.
+     * The collision, layer and animation tables are ready right away; the images arrive
+     * in the background, see {@link #imagesLoaded()}. The world builds its atlas from them
+     * once, so the tileset cannot be swapped afterwards.
+     *
+     * @param tileSet The tile types to use
+     */
+    private void loadTileSet(TileSet tileSet) {
+        this.tileSet = tileSet;
+        BufferedImage[] images = new BufferedImage[tileSet.imageCount()];
+        for (int i = 0; i < images.length; i++) {
+            int image = i;
+            String path = tileSet.imagePath(i);
+            imagePaths.add(path);
+            imageRequests.add(world.assets.acquire(path).thenAccept(decoded -> images[image] = decoded));
+        }
+        imagesLoaded = CompletableFuture.allOf(imageRequests.toArray(new CompletableFuture<?>[0]))
+                .thenRun(() -> cropSprites(tileSet, images));
 
-            tile[5] = new Tile();
-            tile[5].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/grass/grass6.PNG")));
+        properties = tileSet.properties;
+    }
 
-            tile[6] = new Tile();
-            tile[6].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/Buildings/brick.PNG")));
-            tile[6].collision = true;
+    /**
+     * Cuts every sprite of a tileset out of its decoded image.
+     *
+     * @param tileSet The tileset
+     * @param images The decoded images, indexed like {@link TileSet#imagePath(int)}
+     */
+    private void cropSprites(TileSet tileSet, BufferedImage[] images) {
+        BufferedImage[] sprites = new BufferedImage[tileSet.spriteCount()];
+        for (int sprite = 0; sprite < sprites.length; sprite++) {
+            sprites[sprite] = tileSet.cropSprite(sprite, images[tileSet.spriteImage(sprite)]);
+        }
+        spriteImages = sprites;
+    }
 
-            tile[7] = new Tile();
-            tile[7].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/Water/water4.PNG")));
-            tile[7].collision = true;
+    /**
+     * @return A future completed once every tile image requested by the constructor
+     *         is decoded, or completed exceptionally if one failed to load
+     */
+    public CompletableFuture<Void> imagesLoaded() {
+        return imagesLoaded;
+    }
 
-            tile[8] = new Tile();
-            tile[8].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/dirt1.PNG")));
+    /**
+     * Gives the tile images back to the asset manager, e.g. when the world is discarded.
+     */
+    public void releaseImages() {
+        for (String path : imagePaths) {
+            world.assets.release(path);
+        }
+        imagePaths.clear();
+        imageRequests.clear();
+        spriteImages = new BufferedImage[0];
+    }
 
-            tile[9] = new Tile();
-            tile[9].image = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/tiles/Trees/treecomplete.PNG")));
-            tile[9].collision = true;
+    /**
+     * Adds every tile sprite, animation frames included, to an atlas under construction.
+     * Pass the built atlas to {@link #setAtlas(TextureAtlas)}.
+     *
+     * @param builder The atlas builder
+     */
+    public void addSprites(TextureAtlas.Builder builder) {
+        int[] atlasIds = new int[spriteImages.length];
+        for (int sprite = 0; sprite < atlasIds.length; sprite++) {
+            atlasIds[sprite] = builder.add(spriteImages[sprite]);
+        }
+        spriteAtlasIds = atlasIds;
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load tile images", e);
+    /**
+     * Switches tile drawing to an atlas built with {@link #addSprites(TextureAtlas.Builder)}.
+     *
+     * @param atlas The atlas holding the tile images
+     */
+    public void setAtlas(TextureAtlas atlas) {
+        this.atlas = atlas;
+        for (TileChunkCache chunkCache : chunkCaches) {
+            chunkCache.invalidateAll();
         }
     }
 
     /**
-     * Loads a map from a text file and converts it into a tile-based world.
-     * The map file should contain space-separated numbers representing tile types.
+     * Loads a map and converts it into a tile-based world.
+     * Files ending in {@code .map} are read in the binary map format (see {@link BinaryMap}),
+     * anything else is treated as a text map of space-separated numbers representing tile types,
+     * which fills the ground layer only. Tiles outside the world bounds are ignored.
      *
      * @param mapFile The path to the map file in the resources directory
-     * @throws RuntimeException if there's an error reading or parsing the map file
+     * @throws RuntimeException if there's an error reading or parsing the map file, or it puts
+     *         a tile on a layer the tile is not flagged for
      */
     public void loadMap(String mapFile) {
         try {
+            if (mapFile.endsWith(".map")) {
+                loadMap(BinaryMap.fromResource(mapFile));
+                mapSource = mapFile;
+                return;
+            }
             InputStream is = Objects.requireNonNull(getClass().getResourceAsStream(mapFile));
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(is))) {
-                int col = 0;
-                int row = 0;
-                
-                while (row < gp.maxWorldRow && col < gp.maxWorldCol) {
-                    String line = br.readLine();
-                    
-                    while (col < gp.maxWorldCol){
-                        String[] numbers = line.split(" ");
-                        int num = Integer.parseInt(numbers[col]);
-                        mapTileNum[col][row] = num;
-                        col++;
-                    }
-                    if (col == gp.maxWorldCol) {
-                        col = 0;
-                        row++;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+                int[][] rows = MapConverter.parseTextMap(br);
+
+                for (int row = 0; row < Math.min(rows.length, map.getMaxRow()); row++) {
+                    for (int col = 0; col < Math.min(rows[row].length, map.getMaxCol()); col++) {
+                        checkLayer(GROUND_LAYER, col, row, rows[row][col]);
+                        map.setTile(col, row, rows[row][col]);
                     }
                 }
             }
         } catch (Exception e) {
             throw new RuntimeException("Failed to load map file: " + mapFile, e);
         }
+        mapSource = mapFile;
+        refreshArea(0, 0, map.getMaxCol(), map.getMaxRow());
+    }
+
+    /**
+     * Brings the chunk caches and collision grid up to date after tiles in an area
+     * changed without going through {@link #setTile(int, int, int, int)}.
+     *
+     * @param firstCol First tile column of the area
+     * @param firstRow First tile row of the area
+     * @param cols Number of tile columns in the area
+     * @param rows Number of tile rows in the area
+     */
+    private void refreshArea(int firstCol, int firstRow, int cols, int rows) {
+        for (TileChunkCache chunkCache : chunkCaches) {
+            chunkCache.invalidateArea(firstCol, firstRow, cols, rows);
+        }
+        collisionGrid.rebuild(layers, properties, firstCol, firstRow, cols, rows);
+    }
+
+    /**
+     * Copies the layers of a binary map into the world.
+     * Layers of the world the binary map does not have are cleared, and layers of the
+     * binary map the world does not have are ignored, as are tiles outside the world bounds.
+     *
+     * @param source The binary map to load
+     * @throws IllegalArgumentException if the map puts a tile on a layer the tile is not flagged for;
+     *         the world is left unchanged
+     */
+    public void loadMap(BinaryMap source) {
+        int cols = Math.min(source.cols, map.getMaxCol());
+        int rows = Math.min(source.rows, map.getMaxRow());
+
+        for (int layer = 0; layer < Math.min(layers.length, source.layers); layer++) {
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    checkLayer(layer, col, row, source.getTile(layer, col, row));
+                }
+            }
+        }
+
+        for (int layer = 0; layer < layers.length; layer++) {
+            TileMap target = layers[layer];
+            boolean present = layer < source.layers;
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    target.setTile(col, row, present ? source.getTile(layer, col, row) : TileMap.VOID_TILE);
+                }
+            }
+        }
+        refreshArea(0, 0, map.getMaxCol(), map.getMaxRow());
+    }
+
+    /**
+     * Writes the modified regions of a streamed world back to disk and stops streaming it.
+     * Does nothing if the map is held in memory or the world is already closed.
+     *
+     * @throws RuntimeException if a region cannot be written
+     */
+    public void close() {
+        RegionTileMap regions = regionWorld;
+        if (regions == null) {
+            return;
+        }
+        regionWorld = null;
+        try {
+            regions.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save world", e);
+        }
+    }
+
+    /**
+     * Chooses whether a streamed world installs regions on a fixed tick instead of as soon
+     * as they arrive, see {@link RegionTileMap#setDeterministic(boolean)}. Recorded,
+     * replayed and headless sessions turn it on so collision never depends on the disk.
+     * Also applies to streamed worlds opened later.
+     *
+     * @param deterministic true to install regions on a fixed tick
+     */
+    public void setDeterministicStreaming(boolean deterministic) {
+        this.deterministicStreaming = deterministic;
+        RegionTileMap regions = regionWorld;
+        if (regions != null) {
+            regions.setDeterministic(deterministic);
+        }
+    }
+
+    /**
+     * @return The map file or world directory the layers were loaded from, empty for maps set up in code
+     */
+    public String getMapSource() {
+        return mapSource;
+    }
+
+    /**
+     * @return A hash of every tile changed through {@link #setTile(int, int, int, int)} since
+     *         the map was set, in order, for comparing the state of two runs
+     */
+    public long getEditHash() {
+        return editHash;
+    }
+
+    /**
+     * Per-tick update: lets a streamed map load the area around the player.
+     */
+    public void update() {
+        map.focus(world.player.worldX / world.tileSize, world.player.worldY / world.tileSize);
+    }
+
+    /**
+     * Returns the ground tile number at the given map position.
+     *
+     * @param col The tile column
+     * @param row The tile row
+     * @return The tile number, or {@link TileMap#VOID_TILE} outside the map or in unloaded areas
+     */
+    public int getTile(int col, int row) {
+        return map.getTile(col, row);
+    }
+
+    /**
+     * Returns the tile number on a layer at the given map position.
+     *
+     * @param layer The layer index, see {@link #GROUND_LAYER}
+     * @param col The tile column
+     * @param row The tile row
+     * @return The tile number, or {@link TileMap#VOID_TILE} outside the map, in unloaded areas,
+     *         where the layer is empty and on layers the map does not have
+     */
+    public int getTile(int layer, int col, int row) {
+        return layer < layers.length ? layers[layer].getTile(col, row) : TileMap.VOID_TILE;
+    }
+
+    /**
+     * Checks whether entities are blocked by the tile at the given map position.
+     * Positions outside the map and areas that are not loaded yet count as solid.
+     *
+     * @param col The tile column
+     * @param row The tile row
+     * @return true if the tile blocks movement
+     */
+    public boolean isSolid(int col, int row) {
+        return collisionGrid.isSolid(col, row);
+    }
+
+    /**
+     * Changes the ground tile at the given map position.
+     *
+     * @param col The tile column
+     * @param row The tile row
+     * @param tileNum The new tile number
+     */
+    public void setTile(int col, int row, int tileNum) {
+        setTile(GROUND_LAYER, col, row, tileNum);
+    }
+
+    /**
+     * Changes the tile on a layer at the given map position.
+     * Always use this instead of writing to {@link #layers} directly so cached renders
+     * and the collision grid stay in sync. Only the changed layer's cache is invalidated.
+     *
+     * @param layer The layer index, see {@link #GROUND_LAYER}
+     * @param col The tile column
+     * @param row The tile row
+     * @param tileNum The new tile number, or {@link TileMap#VOID_TILE} to clear a layer above the ground
+     * @throws IllegalArgumentException if the map has no such layer, or the tile is not flagged for it
+     */
+    public void setTile(int layer, int col, int row, int tileNum) {
+        if (layer < 0 || layer >= layers.length) {
+            throw new IllegalArgumentException("No layer " + layer + " in a map of " + layers.length);
+        }
+        checkLayer(layer, col, row, tileNum);
+        if (layers[layer].getTile(col, row) != tileNum) {
+            layers[layer].setTile(col, row, tileNum);
+            editHash = (((editHash * 31 + layer) * 31 + col) * 31 + row) * 31 + tileNum;
+            chunkCaches[layer].invalidate(col, row);
+            collisionGrid.set(col, row, CollisionGrid.solidAt(layers, properties, col, row));
+        }
+    }
+
+    /**
+     * Rejects a tile whose tileset entry does not allow it on a layer.
+     * Empty tiles are allowed everywhere, and tile numbers the tileset does not define are
+     * not checked here.
+     *
+     * @param layer The layer index
+     * @param col The tile column, for the error message
+     * @param row The tile row, for the error message
+     * @param tileNum The tile number
+     * @throws IllegalArgumentException if the tile is not flagged for the layer
+     */
+    private void checkLayer(int layer, int col, int row, int tileNum) {
+        if (tileNum >= 0 && tileNum < properties.size() && !properties.isAllowedOn(tileNum, layer)) {
+            throw new IllegalArgumentException("Tile " + tileNum + " at " + col + "," + row
+                    + " is not allowed on layer " + layer);
+        }
     }
 
     /**
-     * Renders the visible tiles on the screen based on the player's position.
-     * Only draws tiles that are within the player's view range to optimize performance.
+     * Renders the visible ground and decoration tiles on the screen based on the camera position,
+     * to be drawn under the entities. Tiles are drawn from pre-rendered chunks, so only the few
+     * chunks overlapping the screen are blitted regardless of the world size.
      *
      * @param g2 The Graphics2D object used for rendering
+     * @param camera The camera describing the visible part of the world
      */
-    public void draw(Graphics2D g2) {
-        int worldCol = 0;
-        int worldRow = 0;
+    public void drawGround(Graphics2D g2, Camera camera) {
+        advanceAnimations(world.getTick());
+        for (int layer = GROUND_LAYER; layer <= DECORATION_LAYER && layer < chunkCaches.length; layer++) {
+            chunkCaches[layer].draw(g2, camera);
+        }
+    }
 
-        while (worldCol < gp.maxWorldCol && worldRow < gp.maxWorldRow) {
-            int tileNum = mapTileNum[worldCol][worldRow];
+    /**
+     * Renders the visible overhead tiles on the screen, to be drawn over the entities after
+     * {@link #drawGround(Graphics2D, Camera)} in the same frame.
+     *
+     * @param g2 The Graphics2D object used for rendering
+     * @param camera The camera describing the visible part of the world
+     */
+    public void drawOverhead(Graphics2D g2, Camera camera) {
+        if (OVERHEAD_LAYER < chunkCaches.length) {
+            chunkCaches[OVERHEAD_LAYER].draw(g2, camera);
+        }
+    }
+
+    /**
+     * Records which on-screen tiles look different at one tick than at another.
+     * Changed tiles anywhere in the map damage the whole screen; otherwise only the
+     * visible positions where an animated tile on any layer changed frame are recorded,
+     * one region per run of adjacent tiles in a row. Safe to call from any thread.
+     *
+     * @param camera The camera describing the visible part of the world
+     * @param lastTick The tick the screen was last drawn at
+     * @param tick The tick about to be drawn
+     * @param damage Receives the changed screen regions
+     */
+    public void addDamage(Camera camera, long lastTick, long tick, DamageTracker damage) {
+        TileChunkCache[] caches = chunkCaches;
+        for (TileChunkCache chunkCache : caches) {
+            if (chunkCache.hasStaleChunks()) {
+                damage.addFull();
+                return;
+            }
+        }
+        TileSet set = tileSet;
+        if (set.animationCount() == 0 || tick == lastTick) {
+            return;
+        }
+        int tileSize = world.tileSize;
+        for (int row = camera.minRow; row <= camera.maxRow; row++) {
+            int runStart = -1;
+            for (int col = camera.minCol; col <= camera.maxCol + 1; col++) {
+                boolean changed = false;
+                for (int layer = 0; layer < caches.length && col <= camera.maxCol && !changed; layer++) {
+                    changed = frameChanged(set, getTile(layer, col, row), lastTick, tick);
+                }
+                if (changed && runStart < 0) {
+                    runStart = col;
+                } else if (!changed && runStart >= 0) {
+                    damage.add(camera.toScreenX(runStart * tileSize), camera.toScreenY(row * tileSize),
+                            (col - runStart) * tileSize, tileSize);
+                    runStart = -1;
+                }
+            }
+        }
+    }
 
-            int worldX = worldCol * gp.tileSize;
-            int worldY = worldRow * gp.tileSize;
+    /**
+     * @param set The tileset
+     * @param tileNum A tile number
+     * @param lastTick One tick
+     * @param tick Another tick
+     * @return Whether the tile type is animated and shows different frames at the two ticks
+     */
+    private static boolean frameChanged(TileSet set, int tileNum, long lastTick, long tick) {
+        if (!set.isDefined(tileNum)) {
+            return false;
+        }
+        int animation = set.properties.animation[tileNum];
+        if (animation == TileProperties.NO_ANIMATION) {
+            return false;
+        }
+        int ticks = set.animationTicks(animation);
+        int length = set.animationLength(animation);
+        return (lastTick / ticks) % length != (tick / ticks) % length;
+    }
 
-            int screenX = worldX - gp.player.worldX + gp.player.screenX;
-            int screenY = worldY - gp.player.worldY + gp.player.screenY;
+    /**
+     * Moves every animation to its frame for a tick of the global clock.
+     * All tiles of a type share one animation, so this is one step per animation no matter
+     * how many tiles show it; drawing a tile then only looks up its animation's sprite.
+     *
+     * @param tick The current tick
+     */
+    private void advanceAnimations(long tick) {
+        TileSet set = tileSet;
+        int count = set.animationCount();
+        if (set != animatedSet) {
+            animatedSet = set;
+            animationSprites = new int[count];
+            animationChanged = new long[count];
+            Arrays.fill(animationSprites, -1);
+            animatedTick = -1;
+        }
+        if (tick == animatedTick) {
+            return;
+        }
+        animatedTick = tick;
 
-            // Only draw tiles visible on screen
-            if (worldX + gp.tileSize > gp.player.worldX - gp.player.screenX &&
-                worldX - gp.tileSize < gp.player.worldX + gp.player.screenX &&
-                worldY + gp.tileSize > gp.player.worldY - gp.player.screenY &&
-                worldY - gp.tileSize < gp.player.worldY + gp.player.screenY) {
-                g2.drawImage(tile[tileNum].image, screenX, screenY, gp.tileSize, gp.tileSize, null);
+        boolean changed = false;
+        for (int animation = 0; animation < count; animation++) {
+            int frame = (int) ((tick / set.animationTicks(animation)) % set.animationLength(animation));
+            int sprite = set.animationFrame(animation, frame);
+            if (sprite != animationSprites[animation]) {
+                if (!changed) {
+                    frameVersion++;
+                    changed = true;
+                }
+                animationSprites[animation] = sprite;
+                animationChanged[animation] = frameVersion;
             }
+        }
+    }
+
+    /**
+     * @param tileNum A tile number
+     * @return The animation of the tile type, or {@link TileProperties#NO_ANIMATION}
+     */
+    int animationOf(int tileNum) {
+        TileSet set = tileSet;
+        return tileNum >= 0 && tileNum < set.size() ? set.properties.animation[tileNum] : TileProperties.NO_ANIMATION;
+    }
+
+    /**
+     * @return A number that changes whenever any animated tile changes frame
+     */
+    long getFrameVersion() {
+        return frameVersion;
+    }
 
-            worldCol++;
+    /**
+     * @param animation An animation number
+     * @param version A value of {@link #getFrameVersion()}
+     * @return Whether the animation changed frame after that version
+     */
+    boolean animationChangedSince(int animation, long version) {
+        return animation >= animationChanged.length || animationChanged[animation] > version;
+    }
 
-            if (worldCol == gp.maxWorldCol) {
-                worldCol = 0;
-                worldRow++;
+    /**
+     * Draws a single tile at its on-screen size, from the atlas when one is set.
+     * Animated tiles show their animation's current frame.
+     * Tile numbers the tileset does not define, and tiles whose images are not loaded yet, are skipped.
+     *
+     * @param g2 The Graphics2D object used for rendering
+     * @param tileNum The tile number
+     * @param x Left edge on the destination, in pixels
+     * @param y Top edge on the destination, in pixels
+     */
+    void drawTile(Graphics2D g2, int tileNum, int x, int y) {
+        TileSet set = tileSet;
+        if (!set.isDefined(tileNum)) {
+            return;
+        }
+        int animation = set.properties.animation[tileNum];
+        int sprite = animation != TileProperties.NO_ANIMATION && animation < animationSprites.length
+                ? animationSprites[animation]
+                : set.tileSprite(tileNum);
+        TextureAtlas current = atlas;
+        if (current != null) {
+            current.draw(g2, spriteAtlasIds[sprite], x, y);
+        } else if (sprite < spriteImages.length) {
+            g2.drawImage(spriteImages[sprite], x, y, world.tileSize, world.tileSize, null);
+        }
+    }
+
+    /**
+     * Outlines every solid tile on screen, for debugging collision.
+     * Only the camera's visible tile range is visited.
+     *
+     * @param g2 The Graphics2D object used for rendering
+     * @param camera The camera describing the visible part of the world
+     */
+    public void drawCollisionOverlay(Graphics2D g2, Camera camera) {
+        g2.setColor(COLLISION_OVERLAY_COLOR);
+
+        for (int row = camera.minRow; row <= camera.maxRow; row++) {
+            for (int col = camera.minCol; col <= camera.maxCol; col++) {
+                if (isSolid(col, row)) {
+                    g2.fillRect(camera.toScreenX(col * world.tileSize), camera.toScreenY(row * world.tileSize), world.tileSize, world.tileSize);
+                }
             }
         }
     }
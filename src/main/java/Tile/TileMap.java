@@ -0,0 +1,50 @@
+package Tile;
+
+/**
+ * Storage for the tile numbers that make up the world.
+ * Implementations may keep the whole map in memory or stream parts of it from disk,
+ * so callers should only rely on this lookup API rather than on a backing array.
+ */
+public interface TileMap {
+    /** Tile number returned for positions that are outside the map or not loaded yet */
+    int VOID_TILE = -1;
+
+    /**
+     * @return The number of tile columns in the map
+     */
+    int getMaxCol();
+
+    /**
+     * @return The number of tile rows in the map
+     */
+    int getMaxRow();
+
+    /**
+     * Returns the tile number at the given position.
+     *
+     * @param col The tile column
+     * @param row The tile row
+     * @return The tile number, or {@link #VOID_TILE} if the position is outside the map or not loaded
+     */
+    int getTile(int col, int row);
+
+    /**
+     * Changes the tile number at the given position.
+     *
+     * @param col The tile column
+     * @param row The tile row
+     * @param tileNum The new tile number
+     */
+    void setTile(int col, int row, int tileNum);
+
+    /**
+     * Tells the map which part of the world is in use, called once per game tick.
+     * Streaming maps use it to load nearby areas and release distant ones;
+     * fully loaded maps ignore it.
+     *
+     * @param col The tile column the game is centered on
+     * @param row The tile row the game is centered on
+     */
+    default void focus(int col, int row) {
+    }
+}
@@ -0,0 +1,57 @@
+package Tile;
+
+import java.util.Arrays;
+
+/**
+ * Per-tile-type properties stored as parallel primitive arrays indexed by tile number.
+ * Hot paths such as collision checks read these tables instead of dereferencing
+ * per-tile objects, keeping the data they touch small and contiguous.
+ */
+public final class TileProperties {
+    /** Layer flag: the tile belongs to the ground layer; flag {@code 1 << n} allows layer index {@code n} */
+    public static final byte LAYER_GROUND = 1;
+    /** Layer flag: the tile is a decoration drawn on top of the ground */
+    public static final byte LAYER_DECORATION = 1 << 1;
+    /** Layer flag: the tile is drawn above entities */
+    public static final byte LAYER_OVERHEAD = 1 << 2;
+    /** Animation id of tiles that are not animated */
+    public static final short NO_ANIMATION = -1;
+
+    /** Whether entities are blocked by each tile type */
+    public final boolean[] collision;
+    /** Animation id of each tile type, or {@link #NO_ANIMATION} */
+    public final short[] animation;
+    /** Layer flags of each tile type, naming the layers the type may be placed on */
+    public final byte[] layerFlags;
+
+    /**
+     * Constructs a new table for the given number of tile types.
+     * Every type starts out walkable, not animated and on the ground layer.
+     *
+     * @param tileTypes Number of tile types
+     */
+    public TileProperties(int tileTypes) {
+        collision = new boolean[tileTypes];
+        animation = new short[tileTypes];
+        layerFlags = new byte[tileTypes];
+
+        Arrays.fill(animation, NO_ANIMATION);
+        Arrays.fill(layerFlags, LAYER_GROUND);
+    }
+
+    /**
+     * @param tileNum A tile number in the table
+     * @param layer A layer index, see {@link TileManager#GROUND_LAYER}
+     * @return Whether the tile type may be placed on the layer
+     */
+    public boolean isAllowedOn(int tileNum, int layer) {
+        return (layerFlags[tileNum] & (1 << layer)) != 0;
+    }
+
+    /**
+     * @return The number of tile types in the table
+     */
+    public int size() {
+        return collision.length;
+    }
+}
@@ -0,0 +1,547 @@
+package Tile;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The tile types of a world, read from a tileset descriptor instead of being compiled in.
+ * A descriptor is a text file with one tile type per line: its tile number, its image and
+ * any options. Blank lines and lines starting with {@code #} are ignored.
+ * <pre>
+ * # id  image                              options
+ * 0     /Tiles/Grass/grass1.PNG
+ * 6     /Tiles/Buildings/brick.PNG         solid
+ * 7     /Tiles/Water/water4.PNG            solid frames=/Tiles/Water/water1.PNG;/Tiles/Water/water2.PNG frameTicks=10
+ * 12    /Tiles/sheet.png@16,0,16,16        layer=decoration
+ * </pre>
+ * An image is a path, optionally followed by {@code @x,y,width,height} to cut the tile out
+ * of a larger sheet. The options are {@code solid} for tiles that block movement,
+ * {@code layer=} with a comma-separated list of {@code ground}, {@code decoration} and
+ * {@code overhead} naming the layers the tile may be placed on (the ground by default),
+ * and {@code frames=} with {@code frameTicks=} for animated tiles.
+ * <p>
+ * Everything is parsed into flat primitive tables indexed by tile number, sprite number or
+ * animation number, so even tilesets with thousands of types cost a few arrays and per-tile
+ * lookups never touch an object. Identical images are shared: every distinct path is decoded
+ * once and every distinct region becomes one sprite.
+ */
+public final class TileSet {
+    /** Classpath resource of the built-in tileset */
+    public static final String DEFAULT_RESOURCE = "/Tiles/tileset.txt";
+    /** System property naming a tileset file on disk to use instead of the built-in one */
+    public static final String TILESET_PROPERTY = "game.tileset";
+    /** Number of tile numbers available, limited by the short tile numbers of streamed maps */
+    public static final int MAX_TILE_TYPES = Short.MAX_VALUE + 1;
+    /** Ticks each animation frame is shown for when the descriptor does not say */
+    public static final int DEFAULT_FRAME_TICKS = 8;
+
+    /** Collision, animation and layer of each tile type */
+    public final TileProperties properties;
+    /** Sprite of each tile type, or -1 for tile numbers the descriptor leaves undefined */
+    private final int[] tileSprite;
+
+    /** Path of each distinct image */
+    private final String[] imagePaths;
+    /** Image each sprite is cut from, as an index into {@link #imagePaths} */
+    private final int[] spriteImage;
+    /** Left edge of each sprite in its image */
+    private final int[] spriteX;
+    /** Top edge of each sprite in its image */
+    private final int[] spriteY;
+    /** Width of each sprite, or 0 if the sprite is the whole image */
+    private final int[] spriteWidth;
+    /** Height of each sprite, or 0 if the sprite is the whole image */
+    private final int[] spriteHeight;
+
+    /** First entry of each animation in {@link #animationFrames} */
+    private final int[] animationStart;
+    /** Number of frames of each animation */
+    private final int[] animationLength;
+    /** Ticks each frame of each animation is shown for */
+    private final int[] animationTicks;
+    /** Sprite of every animation frame, animation by animation */
+    private final int[] animationFrames;
+
+    /**
+     * Constructs a new tileset; use {@link #parse(Reader)}.
+     *
+     * @param parser The parser holding the tables of the whole descriptor
+     */
+    private TileSet(Parser parser) {
+        int tileTypes = parser.tileTypes;
+        properties = new TileProperties(tileTypes);
+        System.arraycopy(parser.collision, 0, properties.collision, 0, tileTypes);
+        System.arraycopy(parser.animation, 0, properties.animation, 0, tileTypes);
+        System.arraycopy(parser.layerFlags, 0, properties.layerFlags, 0, tileTypes);
+        tileSprite = Arrays.copyOf(parser.tileSprite, tileTypes);
+
+        imagePaths = parser.imagePaths.toArray(new String[0]);
+        int sprites = parser.spriteCount;
+        spriteImage = Arrays.copyOf(parser.spriteImage, sprites);
+        spriteX = Arrays.copyOf(parser.spriteX, sprites);
+        spriteY = Arrays.copyOf(parser.spriteY, sprites);
+        spriteWidth = Arrays.copyOf(parser.spriteWidth, sprites);
+        spriteHeight = Arrays.copyOf(parser.spriteHeight, sprites);
+
+        int animations = parser.animationCount;
+        animationStart = Arrays.copyOf(parser.animationStart, animations);
+        animationLength = Arrays.copyOf(parser.animationLength, animations);
+        animationTicks = Arrays.copyOf(parser.animationTicks, animations);
+        animationFrames = Arrays.copyOf(parser.animationFrames, parser.frameCount);
+    }
+
+    /**
+     * Loads the tileset file named by the {@value #TILESET_PROPERTY} system property,
+     * or the built-in tileset if the property is not set.
+     *
+     * @return The tileset
+     * @throws RuntimeException if the tileset cannot be read or is malformed
+     */
+    public static TileSet load() {
+        String file = System.getProperty(TILESET_PROPERTY);
+        if (file == null) {
+            return fromResource(DEFAULT_RESOURCE);
+        }
+        try (Reader reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+            return parse(reader);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load tileset: " + file, e);
+        }
+    }
+
+    /**
+     * Loads a tileset from the classpath.
+     *
+     * @param resource Path of the descriptor on the classpath
+     * @return The tileset
+     * @throws RuntimeException if the tileset cannot be read or is malformed
+     */
+    public static TileSet fromResource(String resource) {
+        InputStream is = Objects.requireNonNull(TileSet.class.getResourceAsStream(resource), resource);
+        try (Reader reader = new InputStreamReader(is, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load tileset: " + resource, e);
+        }
+    }
+
+    /**
+     * Parses a tileset descriptor.
+     *
+     * @param reader The descriptor text; not closed
+     * @return The tileset
+     * @throws IOException if the descriptor cannot be read
+     * @throws IllegalArgumentException if a line is malformed or a tile number is defined twice
+     */
+    public static TileSet parse(Reader reader) throws IOException {
+        Parser parser = new Parser();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            parser.parseLine(line.split("\\s+"), lineNumber);
+        }
+        return new TileSet(parser);
+    }
+
+    /**
+     * @return The number of tile types, i.e. the highest defined tile number plus one
+     */
+    public int size() {
+        return tileSprite.length;
+    }
+
+    /**
+     * Hashes everything the descriptor defines, so a recording can tell whether it is
+     * replayed with the tileset it was made with.
+     *
+     * @return A hash of the tile types, sprites and animations
+     */
+    public long fingerprint() {
+        long hash = tileSprite.length;
+        hash = hash * 31 + Arrays.hashCode(properties.collision);
+        hash = hash * 31 + Arrays.hashCode(properties.animation);
+        hash = hash * 31 + Arrays.hashCode(properties.layerFlags);
+        hash = hash * 31 + Arrays.hashCode(tileSprite);
+        hash = hash * 31 + Arrays.hashCode(imagePaths);
+        hash = hash * 31 + Arrays.hashCode(spriteImage);
+        hash = hash * 31 + Arrays.hashCode(spriteX);
+        hash = hash * 31 + Arrays.hashCode(spriteY);
+        hash = hash * 31 + Arrays.hashCode(spriteWidth);
+        hash = hash * 31 + Arrays.hashCode(spriteHeight);
+        hash = hash * 31 + Arrays.hashCode(animationStart);
+        hash = hash * 31 + Arrays.hashCode(animationLength);
+        hash = hash * 31 + Arrays.hashCode(animationTicks);
+        hash = hash * 31 + Arrays.hashCode(animationFrames);
+        return hash;
+    }
+
+    /**
+     * @param tileNum A tile number
+     * @return Whether the descriptor defines the tile number
+     */
+    public boolean isDefined(int tileNum) {
+        return tileNum >= 0 && tileNum < tileSprite.length && tileSprite[tileNum] >= 0;
+    }
+
+    /**
+     * @param tileNum A defined tile number
+     * @return The sprite showing the tile type when it is not animated
+     */
+    public int tileSprite(int tileNum) {
+        return tileSprite[tileNum];
+    }
+
+    /**
+     * @return The number of distinct images the sprites are cut from
+     */
+    public int imageCount() {
+        return imagePaths.length;
+    }
+
+    /**
+     * @param image An image number
+     * @return The path of the image, as passed to the asset manager
+     */
+    public String imagePath(int image) {
+        return imagePaths[image];
+    }
+
+    /**
+     * @return The number of distinct sprites, including animation frames
+     */
+    public int spriteCount() {
+        return spriteImage.length;
+    }
+
+    /**
+     * @param sprite A sprite number
+     * @return The image the sprite is cut from
+     */
+    public int spriteImage(int sprite) {
+        return spriteImage[sprite];
+    }
+
+    /**
+     * Cuts a sprite out of its decoded image.
+     *
+     * @param sprite A sprite number
+     * @param image The decoded image {@link #spriteImage(int)} names
+     * @return The sprite's region of the image, sharing its pixels
+     * @throws RuntimeException if the region lies outside the image
+     */
+    public BufferedImage cropSprite(int sprite, BufferedImage image) {
+        if (spriteWidth[sprite] == 0) {
+            return image;
+        }
+        try {
+            return image.getSubimage(spriteX[sprite], spriteY[sprite], spriteWidth[sprite], spriteHeight[sprite]);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to cut sprite " + sprite + " from " + imagePaths[spriteImage[sprite]], e);
+        }
+    }
+
+    /**
+     * @return The number of animations
+     */
+    public int animationCount() {
+        return animationStart.length;
+    }
+
+    /**
+     * @param animation An animation number, see {@link TileProperties#animation}
+     * @return The number of frames of the animation
+     */
+    public int animationLength(int animation) {
+        return animationLength[animation];
+    }
+
+    /**
+     * @param animation An animation number, see {@link TileProperties#animation}
+     * @return The ticks each frame of the animation is shown for
+     */
+    public int animationTicks(int animation) {
+        return animationTicks[animation];
+    }
+
+    /**
+     * @param animation An animation number, see {@link TileProperties#animation}
+     * @param frame A frame number below {@link #animationLength(int)}
+     * @return The sprite of the frame
+     */
+    public int animationFrame(int animation, int frame) {
+        return animationFrames[animationStart[animation] + frame];
+    }
+
+    /**
+     * Growable tables filled line by line, trimmed into the final tileset.
+     */
+    private static final class Parser {
+        /** Highest defined tile number plus one */
+        int tileTypes;
+        /** Sprite of each tile number, -1 while undefined */
+        int[] tileSprite = filled(new int[16], -1);
+        /** Collision flag of each tile number */
+        boolean[] collision = new boolean[16];
+        /** Animation of each tile number */
+        short[] animation = filledShort(new short[16], TileProperties.NO_ANIMATION);
+        /** Layer flags of each tile number */
+        byte[] layerFlags = new byte[16];
+
+        /** Distinct image paths in order of appearance */
+        final List<String> imagePaths = new ArrayList<>();
+        /** Index of each path in {@link #imagePaths} */
+        final Map<String, Integer> imageIndex = new HashMap<>();
+        /** Sprite number of each distinct image specification */
+        final Map<String, Integer> spriteIndex = new HashMap<>();
+        /** Number of sprites */
+        int spriteCount;
+        /** Image of each sprite */
+        int[] spriteImage = new int[16];
+        /** Left edge of each sprite */
+        int[] spriteX = new int[16];
+        /** Top edge of each sprite */
+        int[] spriteY = new int[16];
+        /** Width of each sprite, 0 for whole images */
+        int[] spriteWidth = new int[16];
+        /** Height of each sprite, 0 for whole images */
+        int[] spriteHeight = new int[16];
+
+        /** Number of animations */
+        int animationCount;
+        /** First frame of each animation */
+        int[] animationStart = new int[4];
+        /** Frame count of each animation */
+        int[] animationLength = new int[4];
+        /** Ticks per frame of each animation */
+        int[] animationTicks = new int[4];
+        /** Number of animation frames */
+        int frameCount;
+        /** Sprite of every animation frame */
+        int[] animationFrames = new int[16];
+
+        /**
+         * Adds the tile type described by one descriptor line.
+         *
+         * @param parts The whitespace-separated fields of the line
+         * @param lineNumber The line number, for error messages
+         */
+        void parseLine(String[] parts, int lineNumber) {
+            if (parts.length < 2) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected '<id> <image> [options]'");
+            }
+            int id = parseInt(parts[0], "tile number", lineNumber);
+            if (id < 0 || id >= MAX_TILE_TYPES) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": tile number out of range: " + id);
+            }
+            ensureTileCapacity(id + 1);
+            if (tileSprite[id] >= 0) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": tile " + id + " is defined twice");
+            }
+
+            int sprite = sprite(parts[1], lineNumber);
+            boolean solid = false;
+            byte layer = TileProperties.LAYER_GROUND;
+            String frames = null;
+            int frameTicks = DEFAULT_FRAME_TICKS;
+            for (int i = 2; i < parts.length; i++) {
+                String option = parts[i];
+                if (option.equals("solid")) {
+                    solid = true;
+                } else if (option.startsWith("layer=")) {
+                    layer = 0;
+                    for (String name : option.substring(6).split(",")) {
+                        layer |= layer(name, lineNumber);
+                    }
+                } else if (option.startsWith("frames=")) {
+                    frames = option.substring(7);
+                } else if (option.startsWith("frameTicks=")) {
+                    frameTicks = parseInt(option.substring(11), "frame ticks", lineNumber);
+                    if (frameTicks <= 0) {
+                        throw new IllegalArgumentException("Line " + lineNumber + ": frame ticks must be positive");
+                    }
+                } else {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": unknown option " + option);
+                }
+            }
+
+            tileSprite[id] = sprite;
+            collision[id] = solid;
+            layerFlags[id] = layer;
+            if (frames != null) {
+                animation[id] = (short) addAnimation(frames.split(";"), frameTicks, lineNumber);
+            }
+            tileTypes = Math.max(tileTypes, id + 1);
+        }
+
+        /**
+         * Finds or adds the sprite for an image specification.
+         *
+         * @param spec A path, optionally followed by {@code @x,y,width,height}
+         * @param lineNumber The line number, for error messages
+         * @return The sprite number
+         */
+        int sprite(String spec, int lineNumber) {
+            Integer known = spriteIndex.get(spec);
+            if (known != null) {
+                return known;
+            }
+
+            String path = spec;
+            int x = 0, y = 0, width = 0, height = 0;
+            int at = spec.indexOf('@');
+            if (at >= 0) {
+                path = spec.substring(0, at);
+                String[] region = spec.substring(at + 1).split(",");
+                if (region.length != 4) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": expected '<image>@x,y,width,height'");
+                }
+                x = parseInt(region[0], "region", lineNumber);
+                y = parseInt(region[1], "region", lineNumber);
+                width = parseInt(region[2], "region", lineNumber);
+                height = parseInt(region[3], "region", lineNumber);
+                if (x < 0 || y < 0 || width <= 0 || height <= 0) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": bad region " + spec.substring(at + 1));
+                }
+            }
+            if (path.isEmpty()) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": missing image path");
+            }
+
+            Integer image = imageIndex.get(path);
+            if (image == null) {
+                image = imagePaths.size();
+                imagePaths.add(path);
+                imageIndex.put(path, image);
+            }
+
+            if (spriteCount == spriteImage.length) {
+                int capacity = spriteCount * 2;
+                spriteImage = Arrays.copyOf(spriteImage, capacity);
+                spriteX = Arrays.copyOf(spriteX, capacity);
+                spriteY = Arrays.copyOf(spriteY, capacity);
+                spriteWidth = Arrays.copyOf(spriteWidth, capacity);
+                spriteHeight = Arrays.copyOf(spriteHeight, capacity);
+            }
+            spriteImage[spriteCount] = image;
+            spriteX[spriteCount] = x;
+            spriteY[spriteCount] = y;
+            spriteWidth[spriteCount] = width;
+            spriteHeight[spriteCount] = height;
+            spriteIndex.put(spec, spriteCount);
+            return spriteCount++;
+        }
+
+        /**
+         * Adds an animation.
+         *
+         * @param frames Image specification of each frame
+         * @param frameTicks Ticks each frame is shown for
+         * @param lineNumber The line number, for error messages
+         * @return The animation number
+         */
+        int addAnimation(String[] frames, int frameTicks, int lineNumber) {
+            if (animationCount > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": too many animations");
+            }
+            if (animationCount == animationStart.length) {
+                int capacity = animationCount * 2;
+                animationStart = Arrays.copyOf(animationStart, capacity);
+                animationLength = Arrays.copyOf(animationLength, capacity);
+                animationTicks = Arrays.copyOf(animationTicks, capacity);
+            }
+            if (frameCount + frames.length > animationFrames.length) {
+                animationFrames = Arrays.copyOf(animationFrames, Math.max(animationFrames.length * 2, frameCount + frames.length));
+            }
+
+            animationStart[animationCount] = frameCount;
+            animationLength[animationCount] = frames.length;
+            animationTicks[animationCount] = frameTicks;
+            for (String frame : frames) {
+                animationFrames[frameCount++] = sprite(frame, lineNumber);
+            }
+            return animationCount++;
+        }
+
+        /**
+         * Grows the per-tile tables to hold at least the given number of tile types.
+         *
+         * @param tileTypes The number of tile types needed
+         */
+        void ensureTileCapacity(int tileTypes) {
+            if (tileTypes <= tileSprite.length) {
+                return;
+            }
+            int capacity = Math.max(tileTypes, tileSprite.length * 2);
+            int old = tileSprite.length;
+            tileSprite = Arrays.copyOf(tileSprite, capacity);
+            Arrays.fill(tileSprite, old, capacity, -1);
+            collision = Arrays.copyOf(collision, capacity);
+            animation = Arrays.copyOf(animation, capacity);
+            Arrays.fill(animation, old, capacity, TileProperties.NO_ANIMATION);
+            layerFlags = Arrays.copyOf(layerFlags, capacity);
+        }
+
+        /**
+         * @param name A layer name
+         * @param lineNumber The line number, for error messages
+         * @return The matching layer flag
+         */
+        static byte layer(String name, int lineNumber) {
+            return switch (name) {
+                case "ground" -> TileProperties.LAYER_GROUND;
+                case "decoration" -> TileProperties.LAYER_DECORATION;
+                case "overhead" -> TileProperties.LAYER_OVERHEAD;
+                default -> throw new IllegalArgumentException("Line " + lineNumber + ": unknown layer " + name);
+            };
+        }
+
+        /**
+         * @param text The text to parse
+         * @param what What the number is, for error messages
+         * @param lineNumber The line number, for error messages
+         * @return The parsed number
+         */
+        static int parseInt(String text, String what, int lineNumber) {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": bad " + what + " " + text, e);
+            }
+        }
+
+        /**
+         * @return The array, filled with the value
+         */
+        static int[] filled(int[] array, int value) {
+            Arrays.fill(array, value);
+            return array;
+        }
+
+        /**
+         * @return The array, filled with the value
+         */
+        static short[] filledShort(short[] array, short value) {
+            Arrays.fill(array, value);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,722 @@
+package ai;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import Tile.CollisionGrid;
+
+/**
+ * Hierarchical abstraction of the collision grid for long-distance path searches (HPA*).
+ * <p>
+ * The world is split into square clusters. Wherever two neighbouring clusters share a run of
+ * tiles that is walkable on both sides of their border, the run is an entrance: narrow ones get
+ * one transition in the middle, wide ones one at each end, and every transition becomes a pair
+ * of nodes facing each other across the border. Within each cluster the walking distance
+ * between every pair of its nodes is precomputed with a breadth-first search that stays inside
+ * the cluster. A long query then searches this small graph of nodes instead of the tiles, and
+ * only the legs between consecutive nodes of the result are searched tile by tile.
+ * Paths found this way are close to, but not always exactly, the shortest.
+ * <p>
+ * When tiles change, only the clusters containing them are marked; the next {@link #update(BitSet)}
+ * rebuilds the entrances on their borders and the distances of them and their neighbours.
+ * A graph is not thread-safe; {@link PathService} only touches it from its worker.
+ */
+public final class ClusterGraph {
+    /** Default width and height of a cluster in tiles, matching the render chunks */
+    public static final int DEFAULT_CLUSTER_SIZE = 16;
+    /** Entrances at least this wide get a transition at each end instead of one in the middle */
+    private static final int WIDE_ENTRANCE = 6;
+    /** Queries at most this many clusters apart first try a plain search */
+    private static final int LOCAL_CLUSTERS = 2;
+
+    /** The grid the graph abstracts */
+    private final CollisionGrid grid;
+    /** Width and height of a cluster in tiles */
+    private final int clusterSize;
+    /** Number of cluster columns */
+    private final int clustersX;
+    /** Number of cluster rows */
+    private final int clustersY;
+    /** Searches the legs of abstract paths and short queries */
+    private final PathFinder finder;
+    /** Whether every cluster was built at least once */
+    private boolean built;
+
+    // Clusters, indexed by clusterY * clustersX + clusterX
+    /** Ids of the nodes in each cluster, null while it has none */
+    private final int[][] clusterNodes;
+    /** Number of nodes in each cluster */
+    private final int[] clusterNodeCounts;
+    /** Walking distance between the nodes of each cluster, by position in the cluster, row-major; -1 if unreachable */
+    private final int[][] clusterDistances;
+
+    // Nodes, indexed by id
+    /** Tile column of each node */
+    private int[] nodeCols = new int[256];
+    /** Tile row of each node */
+    private int[] nodeRows = new int[256];
+    /** Id of the node facing each node across the border */
+    private int[] nodePartners = new int[256];
+    /** Border each node lies on, see {@link #rightBorder(int)} and {@link #bottomBorder(int)} */
+    private int[] nodeBorders = new int[256];
+    /** Position of each node in its cluster's node list */
+    private int[] nodePositions = new int[256];
+    /** One more than the highest id in use */
+    private int nodeLimit;
+    /** Ids of removed nodes, reused before new ones are taken */
+    private int[] freeNodes = new int[64];
+    /** Number of entries in {@link #freeNodes} */
+    private int freeCount;
+
+    // Abstract search state, indexed by node id; the start and goal take the two ids past nodeLimit
+    /** Cost of the cheapest known route from the start */
+    private int[] cost = new int[0];
+    /** Node the cheapest known route comes from */
+    private int[] parent = new int[0];
+    /** Generation in which the node was last reached */
+    private int[] reached = new int[0];
+    /** Generation in which the node was last expanded */
+    private int[] closed = new int[0];
+    /** Number of the current search */
+    private int generation;
+    /** Open set of the current search */
+    private final NodeHeap open = new NodeHeap();
+    /** Number of nodes expanded by the last abstract search */
+    private int expanded;
+
+    // Scratch space
+    /** Whether each tile of the cluster loaded by {@link #loadCluster(int)} is walkable, by tile position */
+    private final boolean[] localWalkable;
+    /** Distances of a breadth-first search within one cluster, by tile position in the cluster */
+    private final int[] localDistances;
+    /** Queue of a breadth-first search within one cluster */
+    private final int[] localQueue;
+    /** Distance from the start of a query to each node of its cluster */
+    private int[] startDistances = new int[16];
+    /** Distance from each node of the goal's cluster to the goal of a query */
+    private int[] goalDistances = new int[16];
+    /** Tile columns of the waypoints of the last abstract search */
+    private int[] waypointCols = new int[64];
+    /** Tile rows of the waypoints of the last abstract search */
+    private int[] waypointRows = new int[64];
+
+    /**
+     * Constructs a new graph over a grid. It is built by the first {@link #update(BitSet)}.
+     *
+     * @param grid The grid to abstract
+     * @param clusterSize Width and height of a cluster in tiles
+     */
+    public ClusterGraph(CollisionGrid grid, int clusterSize) {
+        this.grid = grid;
+        this.clusterSize = clusterSize;
+        this.clustersX = (grid.getMaxCol() + clusterSize - 1) / clusterSize;
+        this.clustersY = (grid.getMaxRow() + clusterSize - 1) / clusterSize;
+        this.finder = new PathFinder(clusterSize);
+        this.clusterNodes = new int[clustersX * clustersY][];
+        this.clusterNodeCounts = new int[clustersX * clustersY];
+        this.clusterDistances = new int[clustersX * clustersY][];
+        this.localWalkable = new boolean[clusterSize * clusterSize];
+        this.localDistances = new int[clusterSize * clusterSize];
+        this.localQueue = new int[clusterSize * clusterSize];
+    }
+
+    /**
+     * Adds the clusters overlapping an area of tiles to a set. Only reads settings fixed at
+     * construction, so it may be called from any thread.
+     *
+     * @param firstCol First tile column of the area
+     * @param firstRow First tile row of the area
+     * @param cols Number of tile columns in the area
+     * @param rows Number of tile rows in the area
+     * @param clusters Receives the cluster indices
+     */
+    public void addClusters(int firstCol, int firstRow, int cols, int rows, BitSet clusters) {
+        int firstX = Math.max(0, firstCol / clusterSize);
+        int firstY = Math.max(0, firstRow / clusterSize);
+        int lastX = Math.min(clustersX - 1, (firstCol + cols - 1) / clusterSize);
+        int lastY = Math.min(clustersY - 1, (firstRow + rows - 1) / clusterSize);
+        if (lastX < firstX) {
+            return;
+        }
+        for (int y = firstY; y <= lastY; y++) {
+            clusters.set(y * clustersX + firstX, y * clustersX + lastX + 1);
+        }
+    }
+
+    /**
+     * Brings the graph up to date after tiles in some clusters changed; the first call builds
+     * the whole graph. Entrances are rebuilt on every border of a changed cluster, and the
+     * node distances of the changed clusters and of their neighbours, whose nodes on those
+     * borders were replaced.
+     *
+     * @param changed Indices of the clusters whose tiles changed; not modified
+     */
+    public void update(BitSet changed) {
+        BitSet dirty = changed;
+        if (!built) {
+            dirty = new BitSet();
+            dirty.set(0, clustersX * clustersY);
+            built = true;
+        }
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        BitSet borders = new BitSet();
+        BitSet affected = new BitSet();
+        for (int cluster = dirty.nextSetBit(0); cluster >= 0; cluster = dirty.nextSetBit(cluster + 1)) {
+            int x = cluster % clustersX;
+            int y = cluster / clustersX;
+            affected.set(cluster);
+            if (x + 1 < clustersX) {
+                borders.set(rightBorder(cluster));
+                affected.set(cluster + 1);
+            }
+            if (y + 1 < clustersY) {
+                borders.set(bottomBorder(cluster));
+                affected.set(cluster + clustersX);
+            }
+            if (x > 0) {
+                borders.set(rightBorder(cluster - 1));
+                affected.set(cluster - 1);
+            }
+            if (y > 0) {
+                borders.set(bottomBorder(cluster - clustersX));
+                affected.set(cluster - clustersX);
+            }
+        }
+
+        for (int border = borders.nextSetBit(0); border >= 0; border = borders.nextSetBit(border + 1)) {
+            removeBorderNodes(border);
+        }
+        for (int border = borders.nextSetBit(0); border >= 0; border = borders.nextSetBit(border + 1)) {
+            addEntrances(border);
+        }
+        for (int cluster = affected.nextSetBit(0); cluster >= 0; cluster = affected.nextSetBit(cluster + 1)) {
+            computeDistances(cluster);
+        }
+    }
+
+    /**
+     * Finds a path between two tiles. Nearby goals are searched tile by tile; farther ones,
+     * or nearby ones only reachable by a detour, over the graph.
+     *
+     * @param startCol Tile column of the start
+     * @param startRow Tile row of the start
+     * @param goalCol Tile column of the goal
+     * @param goalRow Tile row of the goal
+     * @return The path, or null if the start or goal is solid or the goal cannot be reached
+     */
+    public Path find(int startCol, int startRow, int goalCol, int goalRow) {
+        expanded = 0;
+        if (grid.isSolid(startCol, startRow) || grid.isSolid(goalCol, goalRow)) {
+            return null;
+        }
+        if (Math.abs(goalCol - startCol) + Math.abs(goalRow - startRow) <= LOCAL_CLUSTERS * clusterSize) {
+            Path path = finder.find(grid, startCol, startRow, goalCol, goalRow);
+            if (path != null) {
+                return path;
+            }
+        }
+        int waypoints = searchGraph(startCol, startRow, goalCol, goalRow);
+        return waypoints < 0 ? null : refine(waypoints);
+    }
+
+    /**
+     * @return Number of nodes in the graph
+     */
+    public int getNodeCount() {
+        return nodeLimit - freeCount;
+    }
+
+    /**
+     * @return Number of nodes expanded by the last query's search over the graph, 0 if it needed none
+     */
+    public int getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Searches the graph from the start to the goal with A*, linking both into it through the
+     * distances to the nodes of their clusters.
+     *
+     * @param startCol Tile column of the start
+     * @param startRow Tile row of the start
+     * @param goalCol Tile column of the goal
+     * @param goalRow Tile row of the goal
+     * @return Number of waypoints stored, from the start to the goal inclusive, or -1 if there is no route
+     */
+    private int searchGraph(int startCol, int startRow, int goalCol, int goalRow) {
+        int startCluster = clusterOf(startCol, startRow);
+        int goalCluster = clusterOf(goalCol, goalRow);
+        int start = nodeLimit;
+        int goal = nodeLimit + 1;
+        prepareSearch(nodeLimit + 2);
+
+        // Distances linking the start and the goal to their clusters' nodes
+        int startCount = clusterNodeCounts[startCluster];
+        if (startDistances.length < startCount) {
+            startDistances = new int[startCount];
+        }
+        loadCluster(startCluster);
+        searchCluster(startCluster, startCol, startRow);
+        for (int i = 0; i < startCount; i++) {
+            int node = clusterNodes[startCluster][i];
+            startDistances[i] = localDistance(startCluster, nodeCols[node], nodeRows[node]);
+        }
+        int direct = startCluster == goalCluster ? localDistance(startCluster, goalCol, goalRow) : -1;
+        int goalCount = clusterNodeCounts[goalCluster];
+        if (goalDistances.length < goalCount) {
+            goalDistances = new int[goalCount];
+        }
+        loadCluster(goalCluster);
+        searchCluster(goalCluster, goalCol, goalRow);
+        for (int i = 0; i < goalCount; i++) {
+            int node = clusterNodes[goalCluster][i];
+            goalDistances[i] = localDistance(goalCluster, nodeCols[node], nodeRows[node]);
+        }
+
+        reached[start] = generation;
+        cost[start] = 0;
+        parent[start] = -1;
+        open.clear();
+        int remaining = Math.abs(goalCol - startCol) + Math.abs(goalRow - startRow);
+        open.push(start, remaining, remaining);
+
+        while (!open.isEmpty()) {
+            int node = open.pop();
+            if (closed[node] == generation) {
+                continue;
+            }
+            closed[node] = generation;
+            expanded++;
+            if (node == goal) {
+                return storeWaypoints(goal, startCol, startRow, goalCol, goalRow);
+            }
+
+            if (node == start) {
+                for (int i = 0; i < startCount; i++) {
+                    if (startDistances[i] >= 0) {
+                        relax(clusterNodes[startCluster][i], node, startDistances[i], goal, goalCol, goalRow);
+                    }
+                }
+                if (direct >= 0) {
+                    relax(goal, node, direct, goal, goalCol, goalRow);
+                }
+                continue;
+            }
+
+            relax(nodePartners[node], node, cost[node] + 1, goal, goalCol, goalRow);
+            int cluster = clusterOf(nodeCols[node], nodeRows[node]);
+            int count = clusterNodeCounts[cluster];
+            int[] nodes = clusterNodes[cluster];
+            int[] distances = clusterDistances[cluster];
+            int position = nodePositions[node];
+            for (int i = 0; i < count; i++) {
+                int distance = distances[position * count + i];
+                if (i != position && distance >= 0) {
+                    relax(nodes[i], node, cost[node] + distance, goal, goalCol, goalRow);
+                }
+            }
+            if (cluster == goalCluster && goalDistances[position] >= 0) {
+                relax(goal, node, cost[node] + goalDistances[position], goal, goalCol, goalRow);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Records a cheaper route to a node of the graph search, if it is one.
+     *
+     * @param node The node reached
+     * @param from The node it is reached from
+     * @param newCost Cost of the route through {@code from}
+     * @param goal Id of the goal
+     * @param goalCol Tile column of the goal
+     * @param goalRow Tile row of the goal
+     */
+    private void relax(int node, int from, int newCost, int goal, int goalCol, int goalRow) {
+        if (closed[node] == generation || (reached[node] == generation && cost[node] <= newCost)) {
+            return;
+        }
+        reached[node] = generation;
+        cost[node] = newCost;
+        parent[node] = from;
+        int remaining = node == goal ? 0 : Math.abs(goalCol - nodeCols[node]) + Math.abs(goalRow - nodeRows[node]);
+        open.push(node, newCost + remaining, remaining);
+    }
+
+    /**
+     * Stores the tiles of the nodes on the route found, from the start to the goal.
+     *
+     * @param goal Id of the goal
+     * @param startCol Tile column of the start
+     * @param startRow Tile row of the start
+     * @param goalCol Tile column of the goal
+     * @param goalRow Tile row of the goal
+     * @return Number of waypoints
+     */
+    private int storeWaypoints(int goal, int startCol, int startRow, int goalCol, int goalRow) {
+        int count = 0;
+        for (int node = goal; node >= 0; node = parent[node]) {
+            count++;
+        }
+        if (waypointCols.length < count) {
+            waypointCols = new int[count];
+            waypointRows = new int[count];
+        }
+        int i = count - 1;
+        for (int node = parent[goal]; parent[node] >= 0; node = parent[node]) {
+            waypointCols[--i] = nodeCols[node];
+            waypointRows[i] = nodeRows[node];
+        }
+        waypointCols[0] = startCol;
+        waypointRows[0] = startRow;
+        waypointCols[count - 1] = goalCol;
+        waypointRows[count - 1] = goalRow;
+        return count;
+    }
+
+    /**
+     * Joins the waypoints of an abstract route into a path, searching each leg tile by tile.
+     * Every leg stays within one cluster or crosses one border, so each search is small.
+     *
+     * @param waypoints Number of waypoints
+     * @return The path, or null if a leg could not be found
+     */
+    private Path refine(int waypoints) {
+        int[] cols = new int[64];
+        int[] rows = new int[64];
+        cols[0] = waypointCols[0];
+        rows[0] = waypointRows[0];
+        int length = 1;
+        for (int i = 1; i < waypoints; i++) {
+            int fromCol = cols[length - 1];
+            int fromRow = rows[length - 1];
+            int toCol = waypointCols[i];
+            int toRow = waypointRows[i];
+            int distance = Math.abs(toCol - fromCol) + Math.abs(toRow - fromRow);
+            if (distance == 0) {
+                // Two nodes on the same corner tile
+                continue;
+            }
+            Path leg = null;
+            if (distance > 1) {
+                leg = finder.find(grid, fromCol, fromRow, toCol, toRow);
+                if (leg == null) {
+                    return null;
+                }
+            }
+            int steps = leg == null ? 1 : leg.length() - 1;
+            if (length + steps > cols.length) {
+                cols = Arrays.copyOf(cols, Math.max(length + steps, cols.length * 2));
+                rows = Arrays.copyOf(rows, cols.length);
+            }
+            if (leg == null) {
+                // Crossing a border
+                cols[length] = toCol;
+                rows[length++] = toRow;
+                continue;
+            }
+            for (int step = 1; step < leg.length(); step++) {
+                cols[length] = leg.col(step);
+                rows[length++] = leg.row(step);
+            }
+        }
+        return new Path(Arrays.copyOf(cols, length), Arrays.copyOf(rows, length));
+    }
+
+    /**
+     * Starts a new graph search, growing the per-node arrays if the graph grew.
+     *
+     * @param nodes Number of ids the search may touch
+     */
+    private void prepareSearch(int nodes) {
+        if (nodes > cost.length) {
+            int capacity = Math.max(nodes, cost.length * 2);
+            cost = new int[capacity];
+            parent = new int[capacity];
+            reached = new int[capacity];
+            closed = new int[capacity];
+            generation = 0;
+        }
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(reached, 0);
+            Arrays.fill(closed, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Removes every node lying on a border from the two clusters it separates.
+     *
+     * @param border The border
+     */
+    private void removeBorderNodes(int border) {
+        int cluster = border >> 1;
+        removeNodes(cluster, border);
+        removeNodes((border & 1) == 0 ? cluster + 1 : cluster + clustersX, border);
+    }
+
+    /**
+     * Removes the nodes of a cluster that lie on a border, keeping the order of the others.
+     *
+     * @param cluster The cluster
+     * @param border The border
+     */
+    private void removeNodes(int cluster, int border) {
+        int[] nodes = clusterNodes[cluster];
+        int count = clusterNodeCounts[cluster];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int node = nodes[i];
+            if (nodeBorders[node] == border) {
+                freeNode(node);
+            } else {
+                nodes[kept++] = node;
+            }
+        }
+        clusterNodeCounts[cluster] = kept;
+    }
+
+    /**
+     * Finds the entrances on a border and adds a pair of nodes for each transition.
+     *
+     * @param border The border
+     */
+    private void addEntrances(int border) {
+        int cluster = border >> 1;
+        boolean vertical = (border & 1) == 0;
+        int other = vertical ? cluster + 1 : cluster + clustersX;
+        int x = cluster % clustersX;
+        int y = cluster / clustersX;
+        // The border runs along the last column (or row) of the cluster; "along" walks it
+        int first = vertical ? y * clusterSize : x * clusterSize;
+        int end = Math.min(vertical ? grid.getMaxRow() : grid.getMaxCol(), first + clusterSize);
+        int edge = vertical ? (x + 1) * clusterSize - 1 : (y + 1) * clusterSize - 1;
+
+        int runStart = -1;
+        for (int along = first; along <= end; along++) {
+            boolean open = along < end && (vertical
+                    ? !grid.isSolid(edge, along) && !grid.isSolid(edge + 1, along)
+                    : !grid.isSolid(along, edge) && !grid.isSolid(along, edge + 1));
+            if (open && runStart < 0) {
+                runStart = along;
+            } else if (!open && runStart >= 0) {
+                int runEnd = along - 1;
+                if (runEnd - runStart + 1 >= WIDE_ENTRANCE) {
+                    addTransition(cluster, other, border, vertical, edge, runStart);
+                    addTransition(cluster, other, border, vertical, edge, runEnd);
+                } else {
+                    addTransition(cluster, other, border, vertical, edge, (runStart + runEnd) >>> 1);
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    /**
+     * Adds a pair of nodes facing each other across a border.
+     *
+     * @param cluster The cluster left of or above the border
+     * @param other The cluster right of or below the border
+     * @param border The border
+     * @param vertical Whether the border separates a cluster from its right neighbour
+     * @param edge Last tile column (or row) of {@code cluster}
+     * @param along Tile row (or column) of the transition
+     */
+    private void addTransition(int cluster, int other, int border, boolean vertical, int edge, int along) {
+        int near = addNode(cluster, vertical ? edge : along, vertical ? along : edge, border);
+        int far = addNode(other, vertical ? edge + 1 : along, vertical ? along : edge + 1, border);
+        nodePartners[near] = far;
+        nodePartners[far] = near;
+    }
+
+    /**
+     * Adds a node to a cluster.
+     *
+     * @param cluster The cluster
+     * @param col Tile column of the node
+     * @param row Tile row of the node
+     * @param border Border the node lies on
+     * @return Id of the node
+     */
+    private int addNode(int cluster, int col, int row, int border) {
+        int node;
+        if (freeCount > 0) {
+            node = freeNodes[--freeCount];
+        } else {
+            node = nodeLimit++;
+            if (node == nodeCols.length) {
+                int capacity = node * 2;
+                nodeCols = Arrays.copyOf(nodeCols, capacity);
+                nodeRows = Arrays.copyOf(nodeRows, capacity);
+                nodePartners = Arrays.copyOf(nodePartners, capacity);
+                nodeBorders = Arrays.copyOf(nodeBorders, capacity);
+                nodePositions = Arrays.copyOf(nodePositions, capacity);
+            }
+        }
+        nodeCols[node] = col;
+        nodeRows[node] = row;
+        nodeBorders[node] = border;
+
+        int count = clusterNodeCounts[cluster];
+        int[] nodes = clusterNodes[cluster];
+        if (nodes == null) {
+            nodes = clusterNodes[cluster] = new int[8];
+        } else if (count == nodes.length) {
+            nodes = clusterNodes[cluster] = Arrays.copyOf(nodes, count * 2);
+        }
+        nodes[count] = node;
+        nodePositions[node] = count;
+        clusterNodeCounts[cluster] = count + 1;
+        return node;
+    }
+
+    /**
+     * Gives a node id back for reuse.
+     *
+     * @param node Id of the node
+     */
+    private void freeNode(int node) {
+        if (freeCount == freeNodes.length) {
+            freeNodes = Arrays.copyOf(freeNodes, freeCount * 2);
+        }
+        freeNodes[freeCount++] = node;
+    }
+
+    /**
+     * Recomputes the walking distances between every pair of a cluster's nodes, staying
+     * inside the cluster.
+     *
+     * @param cluster The cluster
+     */
+    private void computeDistances(int cluster) {
+        int count = clusterNodeCounts[cluster];
+        int[] nodes = clusterNodes[cluster];
+        int[] distances = clusterDistances[cluster];
+        if (distances == null || distances.length < count * count) {
+            distances = clusterDistances[cluster] = new int[count * count];
+        }
+        for (int i = 0; i < count; i++) {
+            nodePositions[nodes[i]] = i;
+        }
+        if (count == 0) {
+            return;
+        }
+        loadCluster(cluster);
+        for (int i = 0; i < count; i++) {
+            searchCluster(cluster, nodeCols[nodes[i]], nodeRows[nodes[i]]);
+            for (int j = 0; j < count; j++) {
+                distances[i * count + j] = localDistance(cluster, nodeCols[nodes[j]], nodeRows[nodes[j]]);
+            }
+        }
+    }
+
+    /**
+     * Copies which tiles of a cluster are walkable into {@link #localWalkable}, for the
+     * searches that follow.
+     *
+     * @param cluster The cluster
+     */
+    private void loadCluster(int cluster) {
+        int firstCol = cluster % clustersX * clusterSize;
+        int firstRow = cluster / clustersX * clusterSize;
+        int cols = Math.min(clusterSize, grid.getMaxCol() - firstCol);
+        int rows = Math.min(clusterSize, grid.getMaxRow() - firstRow);
+        // Tiles past the world's edge stay solid
+        Arrays.fill(localWalkable, false);
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                localWalkable[row * clusterSize + col] = !grid.isSolid(firstCol + col, firstRow + row);
+            }
+        }
+    }
+
+    /**
+     * Runs a breadth-first search from a tile over the walkable tiles of the cluster loaded
+     * by {@link #loadCluster(int)}, leaving the distances in {@link #localDistances}.
+     *
+     * @param cluster The cluster
+     * @param col Tile column of the source
+     * @param row Tile row of the source
+     */
+    private void searchCluster(int cluster, int col, int row) {
+        Arrays.fill(localDistances, -1);
+        int head = 0;
+        int tail = 0;
+        int source = (row - cluster / clustersX * clusterSize) * clusterSize + (col - cluster % clustersX * clusterSize);
+        localDistances[source] = 0;
+        localQueue[tail++] = source;
+        while (head < tail) {
+            int tile = localQueue[head++];
+            int tileCol = tile % clusterSize;
+            int distance = localDistances[tile] + 1;
+            if (tile >= clusterSize) {
+                tail = visitLocal(tile - clusterSize, distance, tail);
+            }
+            if (tile < localWalkable.length - clusterSize) {
+                tail = visitLocal(tile + clusterSize, distance, tail);
+            }
+            if (tileCol > 0) {
+                tail = visitLocal(tile - 1, distance, tail);
+            }
+            if (tileCol < clusterSize - 1) {
+                tail = visitLocal(tile + 1, distance, tail);
+            }
+        }
+    }
+
+    /**
+     * Queues a tile of the cluster search if it is walkable and not reached yet.
+     *
+     * @param tile Position of the tile in the cluster
+     * @param distance Distance of the tile from the source
+     * @param tail Number of tiles queued so far
+     * @return Number of tiles queued now
+     */
+    private int visitLocal(int tile, int distance, int tail) {
+        if (!localWalkable[tile] || localDistances[tile] >= 0) {
+            return tail;
+        }
+        localDistances[tile] = distance;
+        localQueue[tail] = tile;
+        return tail + 1;
+    }
+
+    /**
+     * @param cluster The cluster searched last by {@link #searchCluster(int, int, int)}
+     * @param col Tile column within the cluster
+     * @param row Tile row within the cluster
+     * @return Distance of the tile from the source of the search, or -1 if unreachable
+     */
+    private int localDistance(int cluster, int col, int row) {
+        return localDistances[(row - cluster / clustersX * clusterSize) * clusterSize + (col - cluster % clustersX * clusterSize)];
+    }
+
+    /**
+     * @param col Tile column
+     * @param row Tile row
+     * @return Index of the cluster containing the tile
+     */
+    private int clusterOf(int col, int row) {
+        return row / clusterSize * clustersX + col / clusterSize;
+    }
+
+    /**
+     * @param cluster A cluster that has a right neighbour
+     * @return The border between the cluster and its right neighbour
+     */
+    private static int rightBorder(int cluster) {
+        return cluster << 1;
+    }
+
+    /**
+     * @param cluster A cluster that has a neighbour below
+     * @return The border between the cluster and its neighbour below
+     */
+    private static int bottomBorder(int cluster) {
+        return cluster << 1 | 1;
+    }
+}
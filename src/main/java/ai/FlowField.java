@@ -0,0 +1,171 @@
+package ai;
+
+import java.util.Arrays;
+
+import Tile.CollisionGrid;
+
+/**
+ * Shortest-path distances from every tile around a target to the target, and the direction
+ * of the first step to take from each of them. One field is built with a single breadth-first
+ * search and then followed by any number of agents heading for the same target, each looking
+ * up its next step in constant time.
+ * <p>
+ * A field covers the square of tiles within a radius of its target; tiles outside it have no
+ * direction. Fields never change once built, so agents may keep following a field after the
+ * collision grid changed until {@link PathService} has built a fresh one.
+ */
+public final class FlowField {
+    /** Number of directions a step can take */
+    public static final int DIRECTIONS = 4;
+    /** Direction of tiles that have no step: the target itself, unreachable tiles and tiles outside the field */
+    public static final int NONE = -1;
+    /** Step towards smaller rows */
+    public static final int UP = 0;
+    /** Step towards larger rows */
+    public static final int DOWN = 1;
+    /** Step towards smaller columns */
+    public static final int LEFT = 2;
+    /** Step towards larger columns */
+    public static final int RIGHT = 3;
+
+    /** Column offset of a step in each direction */
+    private static final int[] STEP_COL = {0, 0, -1, 1};
+    /** Row offset of a step in each direction */
+    private static final int[] STEP_ROW = {-1, 1, 0, 0};
+
+    /** Tile column of the target */
+    public final int targetCol;
+    /** Tile row of the target */
+    public final int targetRow;
+    /** First tile column covered */
+    private final int firstCol;
+    /** First tile row covered */
+    private final int firstRow;
+    /** Number of tile columns covered */
+    private final int cols;
+    /** Number of tile rows covered */
+    private final int rows;
+    /** Steps from each covered tile to the target, row-major, or -1 if it cannot be reached */
+    private final int[] distances;
+    /** Direction of the first step from each covered tile, row-major */
+    private final byte[] directions;
+
+    /**
+     * Constructs an empty field; {@link #build(CollisionGrid)} computes it.
+     *
+     * @param targetCol Tile column of the target
+     * @param targetRow Tile row of the target
+     * @param radius Tiles covered around the target in each direction
+     * @param maxCol Number of tile columns in the world
+     * @param maxRow Number of tile rows in the world
+     */
+    FlowField(int targetCol, int targetRow, int radius, int maxCol, int maxRow) {
+        this.targetCol = targetCol;
+        this.targetRow = targetRow;
+        this.firstCol = Math.max(0, targetCol - radius);
+        this.firstRow = Math.max(0, targetRow - radius);
+        this.cols = Math.max(0, Math.min(maxCol, targetCol + radius + 1) - firstCol);
+        this.rows = Math.max(0, Math.min(maxRow, targetRow + radius + 1) - firstRow);
+        this.distances = new int[cols * rows];
+        this.directions = new byte[cols * rows];
+    }
+
+    /**
+     * Computes the distances and directions with a breadth-first search out from the target.
+     * Every tile is reached first over one of its shortest paths, so its direction simply
+     * points back at the tile it was reached from.
+     *
+     * @param grid The collision grid
+     */
+    void build(CollisionGrid grid) {
+        Arrays.fill(distances, -1);
+        Arrays.fill(directions, (byte) NONE);
+        if (!covers(targetCol, targetRow) || grid.isSolid(targetCol, targetRow)) {
+            return;
+        }
+        int[] queue = new int[distances.length];
+        int head = 0;
+        int tail = 0;
+        int target = (targetRow - firstRow) * cols + (targetCol - firstCol);
+        distances[target] = 0;
+        queue[tail++] = target;
+
+        while (head < tail) {
+            int tile = queue[head++];
+            int col = firstCol + tile % cols;
+            int row = firstRow + tile / cols;
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                int nextCol = col + STEP_COL[direction];
+                int nextRow = row + STEP_ROW[direction];
+                if (!covers(nextCol, nextRow) || grid.isSolid(nextCol, nextRow)) {
+                    continue;
+                }
+                int next = tile + STEP_COL[direction] + STEP_ROW[direction] * cols;
+                if (distances[next] >= 0) {
+                    continue;
+                }
+                distances[next] = distances[tile] + 1;
+                // The step from the neighbour leads back the opposite way
+                directions[next] = (byte) (direction ^ 1);
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    /**
+     * @param col Tile column
+     * @param row Tile row
+     * @return Steps from the tile to the target, or -1 if it cannot be reached or lies outside the field
+     */
+    public int distance(int col, int row) {
+        return covers(col, row) ? distances[(row - firstRow) * cols + (col - firstCol)] : -1;
+    }
+
+    /**
+     * @param col Tile column
+     * @param row Tile row
+     * @return Direction of the first step from the tile towards the target, or {@link #NONE}
+     */
+    public int direction(int col, int row) {
+        return covers(col, row) ? directions[(row - firstRow) * cols + (col - firstCol)] : NONE;
+    }
+
+    /**
+     * @param col Tile column
+     * @param row Tile row
+     * @return true if the tile lies within the field
+     */
+    public boolean covers(int col, int row) {
+        return col >= firstCol && row >= firstRow && col < firstCol + cols && row < firstRow + rows;
+    }
+
+    /**
+     * Checks whether an area of tiles overlaps the field.
+     *
+     * @param areaCol First tile column of the area
+     * @param areaRow First tile row of the area
+     * @param areaCols Number of tile columns in the area
+     * @param areaRows Number of tile rows in the area
+     * @return true if any tile of the area lies within the field
+     */
+    public boolean overlaps(int areaCol, int areaRow, int areaCols, int areaRows) {
+        return areaCol < firstCol + cols && areaRow < firstRow + rows
+                && areaCol + areaCols > firstCol && areaRow + areaRows > firstRow;
+    }
+
+    /**
+     * @param direction A direction other than {@link #NONE}
+     * @return Column offset of a step in the direction
+     */
+    public static int stepCol(int direction) {
+        return STEP_COL[direction];
+    }
+
+    /**
+     * @param direction A direction other than {@link #NONE}
+     * @return Row offset of a step in the direction
+     */
+    public static int stepRow(int direction) {
+        return STEP_ROW[direction];
+    }
+}
@@ -0,0 +1,118 @@
+package ai;
+
+import java.util.Arrays;
+
+/**
+ * Open set of an A* search: a binary min-heap of node indices ordered by estimated total
+ * cost, ties going to the node with the smaller estimated remaining cost. Entries live in
+ * primitive arrays, so pushing and popping never allocate once the heap has grown.
+ * Nodes are not deduplicated; searches skip entries of nodes they already expanded.
+ */
+final class NodeHeap {
+    /** Node index of each entry */
+    private int[] nodes = new int[64];
+    /** Estimated total cost of each entry */
+    private int[] totals = new int[64];
+    /** Estimated remaining cost of each entry, breaking ties */
+    private int[] remainings = new int[64];
+    /** Number of entries */
+    private int size;
+
+    /**
+     * Removes every entry.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return true if the heap holds no entries
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds an entry.
+     *
+     * @param node Index of the node
+     * @param total Estimated total cost through the node
+     * @param remaining Estimated cost from the node to the goal
+     */
+    void push(int node, int total, int remaining) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            totals = Arrays.copyOf(totals, size * 2);
+            remainings = Arrays.copyOf(remainings, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (!before(total, remaining, totals[up], remainings[up])) {
+                break;
+            }
+            move(up, i);
+            i = up;
+        }
+        nodes[i] = node;
+        totals[i] = total;
+        remainings[i] = remaining;
+    }
+
+    /**
+     * Removes the entry with the lowest estimated total cost.
+     *
+     * @return Index of its node
+     */
+    int pop() {
+        int top = nodes[0];
+        int last = --size;
+        int node = nodes[last];
+        int total = totals[last];
+        int remaining = remainings[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= last) {
+                break;
+            }
+            if (child + 1 < last && before(totals[child + 1], remainings[child + 1], totals[child], remainings[child])) {
+                child++;
+            }
+            if (!before(totals[child], remainings[child], total, remaining)) {
+                break;
+            }
+            move(child, i);
+            i = child;
+        }
+        nodes[i] = node;
+        totals[i] = total;
+        remainings[i] = remaining;
+        return top;
+    }
+
+    /**
+     * Orders entries by estimated total cost, then by estimated remaining cost.
+     *
+     * @param total Estimated total cost of the first entry
+     * @param remaining Estimated remaining cost of the first entry
+     * @param otherTotal Estimated total cost of the second entry
+     * @param otherRemaining Estimated remaining cost of the second entry
+     * @return true if the first entry comes before the second
+     */
+    private static boolean before(int total, int remaining, int otherTotal, int otherRemaining) {
+        return total < otherTotal || (total == otherTotal && remaining < otherRemaining);
+    }
+
+    /**
+     * Copies an entry to another slot.
+     *
+     * @param from Slot to copy
+     * @param to Slot to overwrite
+     */
+    private void move(int from, int to) {
+        nodes[to] = nodes[from];
+        totals[to] = totals[from];
+        remainings[to] = remainings[from];
+    }
+}
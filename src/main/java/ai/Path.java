@@ -0,0 +1,46 @@
+package ai;
+
+/**
+ * A walkable route over the tile grid, from the start tile to the goal tile inclusive.
+ * Consecutive tiles are orthogonal neighbours. Paths never change once found.
+ */
+public final class Path {
+    /** Tile column of each step */
+    private final int[] cols;
+    /** Tile row of each step */
+    private final int[] rows;
+
+    /**
+     * Constructs a new path; the arrays are used as they are, not copied.
+     *
+     * @param cols Tile column of each step
+     * @param rows Tile row of each step
+     */
+    Path(int[] cols, int[] rows) {
+        this.cols = cols;
+        this.rows = rows;
+    }
+
+    /**
+     * @return Number of tiles on the path, including the start and the goal
+     */
+    public int length() {
+        return cols.length;
+    }
+
+    /**
+     * @param step Index of the step, 0 being the start
+     * @return Tile column of the step
+     */
+    public int col(int step) {
+        return cols[step];
+    }
+
+    /**
+     * @param step Index of the step, 0 being the start
+     * @return Tile row of the step
+     */
+    public int row(int step) {
+        return rows[step];
+    }
+}
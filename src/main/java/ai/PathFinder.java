@@ -0,0 +1,179 @@
+package ai;
+
+import java.util.Arrays;
+
+import Tile.CollisionGrid;
+
+/**
+ * A* search over the collision grid, moving between orthogonal neighbours at a cost of one
+ * per tile with the Manhattan distance as heuristic.
+ * <p>
+ * All search state lives in primitive arrays that are reused from one search to the next:
+ * per-tile costs and parents are valid only where a generation stamp matches the current
+ * search, so nothing is cleared between searches, and the open set is a binary heap of tile
+ * indices ordered by estimated total cost, ties going to the tile closer to the goal.
+ * A search only considers the rectangle spanned by the start and the goal, widened by a
+ * margin, so its cost is bounded however large the world is.
+ * <p>
+ * A finder is not thread-safe; each {@link ClusterGraph} has its own for its worker.
+ */
+public final class PathFinder {
+    /** Default number of tiles the search may stray outside the rectangle spanned by start and goal */
+    public static final int DEFAULT_MARGIN = 16;
+    /** Most tiles a search window may hold; farther goals need a {@link ClusterGraph} */
+    public static final int MAX_WINDOW_TILES = 1 << 18;
+
+    /** Tiles the search may stray outside the rectangle spanned by start and goal */
+    private final int margin;
+
+    // Search window of the current search
+    /** First tile column of the window */
+    private int windowCol;
+    /** First tile row of the window */
+    private int windowRow;
+    /** Number of tile columns in the window */
+    private int windowCols;
+
+    // Per-tile state, indexed by position in the window
+    /** Cost of the cheapest known route from the start */
+    private int[] cost = new int[0];
+    /** Window index of the tile the cheapest known route comes from */
+    private int[] parent = new int[0];
+    /** Generation in which the tile was last reached; its cost and parent are stale otherwise */
+    private int[] reached = new int[0];
+    /** Generation in which the tile was last expanded */
+    private int[] closed = new int[0];
+    /** Number of the current search, see {@link #reached} */
+    private int generation;
+
+    /** Open set of the current search */
+    private final NodeHeap open = new NodeHeap();
+
+    /** Number of tiles expanded by the last search */
+    private int expanded;
+
+    /**
+     * Constructs a new finder.
+     *
+     * @param margin Tiles the search may stray outside the rectangle spanned by start and goal
+     */
+    public PathFinder(int margin) {
+        this.margin = margin;
+    }
+
+    /**
+     * Finds a shortest path between two tiles.
+     *
+     * @param grid The collision grid to search
+     * @param startCol Tile column of the start
+     * @param startRow Tile row of the start
+     * @param goalCol Tile column of the goal
+     * @param goalRow Tile row of the goal
+     * @return The path, or null if the start or goal is solid, the goal cannot be reached
+     *         within the search window, or the window would exceed {@link #MAX_WINDOW_TILES}
+     */
+    public Path find(CollisionGrid grid, int startCol, int startRow, int goalCol, int goalRow) {
+        expanded = 0;
+        if (grid.isSolid(startCol, startRow) || grid.isSolid(goalCol, goalRow)) {
+            return null;
+        }
+        windowCol = Math.max(0, Math.min(startCol, goalCol) - margin);
+        windowRow = Math.max(0, Math.min(startRow, goalRow) - margin);
+        windowCols = Math.min(grid.getMaxCol(), Math.max(startCol, goalCol) + margin + 1) - windowCol;
+        int windowRows = Math.min(grid.getMaxRow(), Math.max(startRow, goalRow) + margin + 1) - windowRow;
+        if ((long) windowCols * windowRows > MAX_WINDOW_TILES) {
+            return null;
+        }
+        prepare(windowCols * windowRows);
+
+        int start = (startRow - windowRow) * windowCols + (startCol - windowCol);
+        int goal = (goalRow - windowRow) * windowCols + (goalCol - windowCol);
+        reached[start] = generation;
+        cost[start] = 0;
+        parent[start] = -1;
+        open.clear();
+        int remaining = Math.abs(goalCol - startCol) + Math.abs(goalRow - startRow);
+        open.push(start, remaining, remaining);
+
+        while (!open.isEmpty()) {
+            int tile = open.pop();
+            if (closed[tile] == generation) {
+                // A cheaper entry for this tile was expanded already
+                continue;
+            }
+            closed[tile] = generation;
+            expanded++;
+            if (tile == goal) {
+                return buildPath(goal);
+            }
+
+            int col = windowCol + tile % windowCols;
+            int row = windowRow + tile / windowCols;
+            int nextCost = cost[tile] + 1;
+            for (int direction = 0; direction < FlowField.DIRECTIONS; direction++) {
+                int nextCol = col + FlowField.stepCol(direction);
+                int nextRow = row + FlowField.stepRow(direction);
+                if (nextCol < windowCol || nextRow < windowRow || nextCol >= windowCol + windowCols
+                        || nextRow >= windowRow + windowRows || grid.isSolid(nextCol, nextRow)) {
+                    continue;
+                }
+                int next = tile + FlowField.stepCol(direction) + FlowField.stepRow(direction) * windowCols;
+                if (closed[next] == generation || (reached[next] == generation && cost[next] <= nextCost)) {
+                    continue;
+                }
+                reached[next] = generation;
+                cost[next] = nextCost;
+                parent[next] = tile;
+                remaining = Math.abs(goalCol - nextCol) + Math.abs(goalRow - nextRow);
+                open.push(next, nextCost + remaining, remaining);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Number of tiles expanded by the last search, a measure of its cost
+     */
+    public int getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Starts a new search generation, growing the per-tile arrays if the window needs it.
+     *
+     * @param tiles Number of tiles in the window
+     */
+    private void prepare(int tiles) {
+        if (tiles > cost.length) {
+            int capacity = Math.max(tiles, Math.min(MAX_WINDOW_TILES, cost.length * 2));
+            cost = new int[capacity];
+            parent = new int[capacity];
+            reached = new int[capacity];
+            closed = new int[capacity];
+            generation = 0;
+        }
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(reached, 0);
+            Arrays.fill(closed, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Walks the parents back from the goal to the start.
+     *
+     * @param goal Window index of the goal
+     * @return The path from the start to the goal
+     */
+    private Path buildPath(int goal) {
+        int length = cost[goal] + 1;
+        int[] cols = new int[length];
+        int[] rows = new int[length];
+        for (int tile = goal, step = length - 1; step >= 0; tile = parent[tile], step--) {
+            cols[step] = windowCol + tile % windowCols;
+            rows[step] = windowRow + tile / windowCols;
+        }
+        return new Path(cols, rows);
+    }
+}
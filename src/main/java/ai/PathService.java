@@ -0,0 +1,316 @@
+package ai;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import Tile.CollisionGrid;
+
+/**
+ * Serves path requests from any number of agents on a background thread.
+ * Nearby goals are searched directly on the tiles; distant ones over a {@link ClusterGraph}
+ * of the world, which is kept up to date cluster by cluster as tiles change.
+ * <p>
+ * Requests made during a tick are collected into one batch, which {@link #dispatch(CollisionGrid)}
+ * hands to the worker at the end of the tick. The worker runs while the game loop draws and
+ * waits for the next tick, and {@link #collect()} delivers the results at the start of that
+ * tick, in the order they were requested. The grid only changes during ticks, so the worker
+ * always sees the grid exactly as it was when the batch was dispatched, and the results are
+ * the same no matter how fast the worker is; recorded sessions replay identically.
+ * <p>
+ * Agents heading for the same target (e.g. the player) share a {@link FlowField} instead of
+ * searching one path each. The most recently used fields are cached, and a field is dropped
+ * as soon as a tile it covers changes between walkable and solid, so the next request builds
+ * a fresh one.
+ * <p>
+ * All methods must be called from the game thread.
+ */
+public final class PathService implements CollisionGrid.Listener {
+    /** Default number of tiles a flow field covers around its target in each direction */
+    public static final int DEFAULT_FIELD_RADIUS = 48;
+    /** Default number of flow fields kept */
+    public static final int DEFAULT_MAX_FIELDS = 8;
+    /** Default width and height of a cluster of the hierarchical graph, in tiles */
+    public static final int DEFAULT_CLUSTER_SIZE = ClusterGraph.DEFAULT_CLUSTER_SIZE;
+
+    /**
+     * Receives the result of a path request.
+     */
+    @FunctionalInterface
+    public interface Callback {
+        /**
+         * Called on the game thread at the start of the tick after the request.
+         *
+         * @param path The path, or null if the goal cannot be reached
+         */
+        void pathFound(Path path);
+    }
+
+    /**
+     * One path request and, once served, its result.
+     */
+    private static final class Request {
+        final int startCol;
+        final int startRow;
+        final int goalCol;
+        final int goalRow;
+        final Callback callback;
+        /** The path found by the worker */
+        Path result;
+
+        Request(int startCol, int startRow, int goalCol, int goalRow, Callback callback) {
+            this.startCol = startCol;
+            this.startRow = startRow;
+            this.goalCol = goalCol;
+            this.goalRow = goalRow;
+            this.callback = callback;
+        }
+    }
+
+    /** Tiles a flow field covers around its target in each direction */
+    private final int fieldRadius;
+    /** Most flow fields kept */
+    private final int maxFields;
+    /** Width and height of a cluster of the hierarchical graph, in tiles */
+    private final int clusterSize;
+    /** Thread serving the batches, started with the first one */
+    private ExecutorService worker;
+
+    /** Grid the batches are served on; this service listens to its changes */
+    private CollisionGrid grid;
+    /** Hierarchical graph of {@link #grid}, searched and updated only by the worker */
+    private ClusterGraph hierarchy;
+    /** Clusters of {@link #hierarchy} whose tiles changed since the last batch */
+    private BitSet changedClusters = new BitSet();
+    /** Path requests of the current tick */
+    private List<Request> pendingPaths = new ArrayList<>();
+    /** Targets of the flow fields requested during the current tick, see {@link #key(int, int)} */
+    private final List<Long> pendingFields = new ArrayList<>();
+    /** Path requests of the batch being served */
+    private List<Request> runningPaths = new ArrayList<>();
+    /** Flow fields of the batch being served */
+    private final List<FlowField> runningFields = new ArrayList<>();
+    /** The batch being served, or null */
+    private Future<?> batch;
+
+    /** Ready flow fields by target key */
+    private final Map<Long, FlowField> fields = new HashMap<>();
+    /** Tick at which each cached flow field was last asked for, by target key */
+    private final Map<Long, Long> fieldUses = new HashMap<>();
+    /** Number of {@link #collect()} calls so far */
+    private long tick;
+
+    /**
+     * Constructs a new service with the default flow field settings.
+     */
+    public PathService() {
+        this(DEFAULT_FIELD_RADIUS, DEFAULT_MAX_FIELDS, DEFAULT_CLUSTER_SIZE);
+    }
+
+    /**
+     * Constructs a new service.
+     *
+     * @param fieldRadius Tiles a flow field covers around its target in each direction
+     * @param maxFields Most flow fields kept
+     * @param clusterSize Width and height of a cluster of the hierarchical graph, in tiles
+     */
+    public PathService(int fieldRadius, int maxFields, int clusterSize) {
+        this.fieldRadius = fieldRadius;
+        this.maxFields = maxFields;
+        this.clusterSize = clusterSize;
+    }
+
+    /**
+     * Requests a path; the callback receives it at the start of the next tick.
+     *
+     * @param startCol Tile column of the start
+     * @param startRow Tile row of the start
+     * @param goalCol Tile column of the goal
+     * @param goalRow Tile row of the goal
+     * @param callback Receives the path
+     */
+    public void requestPath(int startCol, int startRow, int goalCol, int goalRow, Callback callback) {
+        pendingPaths.add(new Request(startCol, startRow, goalCol, goalRow, callback));
+    }
+
+    /**
+     * Gets the flow field towards a target, requesting it if it is not ready.
+     *
+     * @param targetCol Tile column of the target
+     * @param targetRow Tile row of the target
+     * @return The field, or null until it is built, normally at the start of the next tick
+     */
+    public FlowField flowField(int targetCol, int targetRow) {
+        long key = key(targetCol, targetRow);
+        FlowField field = fields.get(key);
+        if (field != null) {
+            fieldUses.put(key, tick);
+            return field;
+        }
+        if (!pendingFields.contains(key)) {
+            pendingFields.add(key);
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the batch dispatched at the end of the last tick, if any, then installs its
+     * flow fields and delivers its paths. Call at the start of every tick.
+     *
+     * @throws RuntimeException if the worker failed
+     */
+    public void collect() {
+        tick++;
+        if (batch == null) {
+            return;
+        }
+        try {
+            batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for paths", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to find paths", e.getCause());
+        } finally {
+            batch = null;
+        }
+
+        for (FlowField field : runningFields) {
+            long key = key(field.targetCol, field.targetRow);
+            fields.put(key, field);
+            fieldUses.put(key, tick);
+        }
+        runningFields.clear();
+        evictFields();
+
+        for (Request request : runningPaths) {
+            request.callback.pathFound(request.result);
+        }
+        runningPaths.clear();
+    }
+
+    /**
+     * Hands the requests of this tick to the worker. Call at the end of every tick, after
+     * the last change to the grid.
+     *
+     * @param grid The collision grid to serve the requests on
+     * @throws IllegalStateException if the last batch was not collected
+     */
+    public void dispatch(CollisionGrid grid) {
+        if (batch != null) {
+            throw new IllegalStateException("The last batch of paths was not collected");
+        }
+        if (grid != this.grid) {
+            if (this.grid != null) {
+                this.grid.setListener(null);
+            }
+            this.grid = grid;
+            grid.setListener(this);
+            fields.clear();
+            fieldUses.clear();
+            // The first batch builds the whole graph, so earlier changes need no tracking
+            hierarchy = new ClusterGraph(grid, clusterSize);
+            changedClusters.clear();
+        }
+        if (pendingPaths.isEmpty() && pendingFields.isEmpty()) {
+            return;
+        }
+
+        List<Request> paths = pendingPaths;
+        pendingPaths = runningPaths;
+        runningPaths = paths;
+        List<FlowField> fieldsToBuild = runningFields;
+        for (long target : pendingFields) {
+            fieldsToBuild.add(new FlowField((int) (target >> 32), (int) target, fieldRadius, grid.getMaxCol(), grid.getMaxRow()));
+        }
+        pendingFields.clear();
+        ClusterGraph graph = hierarchy;
+        // The graph only needs to catch up when there are paths to search
+        BitSet changed = paths.isEmpty() ? null : changedClusters;
+        if (changed != null) {
+            changedClusters = new BitSet();
+        }
+
+        if (worker == null) {
+            worker = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "pathfinding");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        batch = worker.submit(() -> {
+            for (FlowField field : fieldsToBuild) {
+                field.build(grid);
+            }
+            if (changed != null) {
+                graph.update(changed);
+            }
+            for (Request request : paths) {
+                request.result = graph.find(request.startCol, request.startRow, request.goalCol, request.goalRow);
+            }
+        });
+    }
+
+    /**
+     * Drops every cached flow field that covers a changed tile and marks the clusters of the
+     * hierarchical graph holding changed tiles for rebuilding.
+     */
+    @Override
+    public void collisionChanged(int firstCol, int firstRow, int cols, int rows) {
+        hierarchy.addClusters(firstCol, firstRow, cols, rows, changedClusters);
+        Iterator<FlowField> it = fields.values().iterator();
+        while (it.hasNext()) {
+            FlowField field = it.next();
+            if (field.overlaps(firstCol, firstRow, cols, rows)) {
+                fieldUses.remove(key(field.targetCol, field.targetRow));
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Stops the worker and stops listening to the grid. Requests still pending are dropped.
+     */
+    public void close() {
+        if (worker != null) {
+            worker.shutdownNow();
+        }
+        if (grid != null) {
+            grid.setListener(null);
+        }
+    }
+
+    /**
+     * Drops the least recently used flow fields until at most {@link #maxFields} remain.
+     */
+    private void evictFields() {
+        while (fields.size() > maxFields) {
+            long oldestKey = 0;
+            long oldestUse = Long.MAX_VALUE;
+            for (Map.Entry<Long, Long> use : fieldUses.entrySet()) {
+                if (use.getValue() < oldestUse || (use.getValue() == oldestUse && use.getKey() < oldestKey)) {
+                    oldestKey = use.getKey();
+                    oldestUse = use.getValue();
+                }
+            }
+            fields.remove(oldestKey);
+            fieldUses.remove(oldestKey);
+        }
+    }
+
+    /**
+     * @param col Tile column
+     * @param row Tile row
+     * @return Key of a flow field target
+     */
+    private static long key(int col, int row) {
+        return ((long) col << 32) | (row & 0xFFFFFFFFL);
+    }
+}
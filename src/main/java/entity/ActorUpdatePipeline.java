@@ -0,0 +1,484 @@
+package entity;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import Tile.CollisionGrid;
+import main.SweepResult;
+
+/**
+ * Updates the actors of an {@link EntityStore} in parallel.
+ * <p>
+ * Actors are partitioned by the world region they stand in and each tick runs in phases:
+ * <ol>
+ *   <li>movement and animation, in parallel per region; every task only writes its own actors</li>
+ *   <li>contact detection, in parallel per region on the now stable positions; each task
+ *       tests its actors against its own and the neighbouring regions and records the
+ *       overlapping pairs in a private buffer</li>
+ *   <li>a serial merge that combines the buffers into one contact list sorted by actor id</li>
+ *   <li>a serial separation that walks the sorted contacts and pushes each overlapping pair
+ *       apart along the axis they overlap least on, without moving an actor into a solid tile;
+ *       pairs that straddle a region border are resolved exactly like pairs within one</li>
+ * </ol>
+ * Because no task reads anything another task writes in the same phase and the serial
+ * phases work in sorted order, the result is identical no matter how many threads run the update.
+ * Small populations are updated on the calling thread.
+ * <p>
+ * Regions are looked up in an open-addressing table of primitive keys and their partitions
+ * are reused from tick to tick, so a steady population is partitioned without allocating.
+ */
+public final class ActorUpdatePipeline {
+    /** Below this number of actors everything runs on the calling thread */
+    private static final int PARALLEL_THRESHOLD = 2048;
+    /** Rough number of actors handled by one fork-join task */
+    private static final int ACTORS_PER_TASK = 512;
+    /** Orders partitions by region key */
+    private static final Comparator<Partition> BY_KEY = Comparator.comparingLong(partition -> partition.key);
+
+    /**
+     * The actors standing in one region, plus the contacts found for them.
+     */
+    private static final class Partition {
+        /** Region key, see {@link #key(int, int)} */
+        long key;
+        /** Region column */
+        int regionX;
+        /** Region row */
+        int regionY;
+        /** Ids of the actors in the region, ascending */
+        final IntList ids = new IntList();
+        /** Contact pairs found by this partition's task, encoded by {@link #pair(int, int)} */
+        long[] contacts = new long[8];
+        /** Number of entries in {@link #contacts} */
+        int contactCount;
+        /** Scratch result for the movement of this partition's actors */
+        final SweepResult sweep = new SweepResult();
+
+        /**
+         * Empties the partition and moves it to another region.
+         *
+         * @param regionX The region column
+         * @param regionY The region row
+         */
+        void reset(int regionX, int regionY) {
+            this.key = key(regionX, regionY);
+            this.regionX = regionX;
+            this.regionY = regionY;
+            ids.clear();
+            contactCount = 0;
+        }
+
+        void addContact(long pair) {
+            if (contactCount == contacts.length) {
+                contacts = Arrays.copyOf(contacts, contactCount * 2);
+            }
+            contacts[contactCount++] = pair;
+        }
+    }
+
+    /**
+     * Work done for every partition in a phase.
+     */
+    @FunctionalInterface
+    private interface Phase {
+        void run(Partition partition);
+    }
+
+    /**
+     * Runs a phase over a range of partitions, splitting the range while it holds many actors.
+     * Tasks only live for one update and are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private final class PhaseTask extends RecursiveAction {
+        private final Phase phase;
+        private final int from;
+        private final int to;
+
+        PhaseTask(Phase phase, int from, int to) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1 && actorPrefix[to] - actorPrefix[from] > ACTORS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PhaseTask(phase, from, middle), new PhaseTask(phase, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                phase.run(ordered[i]);
+            }
+        }
+    }
+
+    /** Pool running the parallel phases */
+    private final ForkJoinPool pool;
+    /** Width and height of a region in pixels; must not be smaller than any actor */
+    private final int regionSize;
+
+    /** Region keys of the lookup table, valid where {@link #tableValues} is not null */
+    private long[] tableKeys = new long[64];
+    /** Partitions of the lookup table, indexed like {@link #tableKeys}; null marks a free slot */
+    private Partition[] tableValues = new Partition[64];
+    /** Partitions of this tick, sorted by key once filled; entries past {@link #orderedCount} are spares */
+    private Partition[] ordered = new Partition[0];
+    /** Number of partitions in use */
+    private int orderedCount;
+    /** Number of actors in the partitions before each index of {@link #ordered} */
+    private int[] actorPrefix = new int[1];
+
+    /** Merged contact pairs of the last update, sorted */
+    private long[] contacts = new long[64];
+    /** Number of valid entries in {@link #contacts} */
+    private int contactCount;
+
+    /** Store being updated, read by the phase tasks */
+    private EntityStore store;
+    /** Collision grid used by the update in progress */
+    private CollisionGrid grid;
+    /** Tile size used by the update in progress */
+    private int tileSize;
+
+    /**
+     * Constructs a new pipeline.
+     *
+     * @param pool Pool running the parallel phases
+     * @param regionSize Width and height of a region in pixels; must not be smaller than any actor
+     */
+    public ActorUpdatePipeline(ForkJoinPool pool, int regionSize) {
+        this.pool = pool;
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * Runs one tick of actor simulation.
+     *
+     * @param store The actor store
+     * @param grid The collision grid of the world
+     * @param tileSize Size of a tile in pixels
+     */
+    public void update(EntityStore store, CollisionGrid grid, int tileSize) {
+        this.store = store;
+        this.grid = grid;
+        this.tileSize = tileSize;
+        try {
+            // PHASE 1: MOVEMENT AND ANIMATION
+            partition();
+            runPhase(this::moveActors);
+
+            // PHASE 2: CONTACTS
+            // Regions are recomputed from the new positions
+            partition();
+            runPhase(this::findContacts);
+
+            // PHASE 3: DETERMINISTIC MERGE
+            mergeContacts();
+
+            // PHASE 4: SEPARATION IN CONTACT ORDER
+            separateContacts();
+        } finally {
+            this.store = null;
+            this.grid = null;
+        }
+    }
+
+    /**
+     * @return The number of actor pairs whose bounds overlapped after moving in the last
+     *         update, before they were separated; e.g. for damage on contact
+     */
+    public int contactCount() {
+        return contactCount;
+    }
+
+    /**
+     * @param index Index of the contact, below {@link #contactCount()}
+     * @return The lower actor id of the contact pair
+     */
+    public int contactFirst(int index) {
+        return (int) (contacts[index] >>> 32);
+    }
+
+    /**
+     * @param index Index of the contact, below {@link #contactCount()}
+     * @return The higher actor id of the contact pair
+     */
+    public int contactSecond(int index) {
+        return (int) contacts[index];
+    }
+
+    /**
+     * Files every live actor under its region and orders the non-empty regions by key.
+     */
+    private void partition() {
+        Arrays.fill(tableValues, null);
+        orderedCount = 0;
+
+        for (int id = 0, limit = store.idLimit(); id < limit; id++) {
+            if ((store.flags[id] & EntityStore.FLAG_ALIVE) == 0) {
+                continue;
+            }
+            int regionX = Math.floorDiv(store.worldX[id] + store.solidX[id], regionSize);
+            int regionY = Math.floorDiv(store.worldY[id] + store.solidY[id], regionSize);
+            long key = key(regionX, regionY);
+            int slot = slot(key);
+            Partition partition = tableValues[slot];
+            if (partition == null) {
+                partition = takePartition(regionX, regionY);
+                tableKeys[slot] = key;
+                tableValues[slot] = partition;
+                if (orderedCount * 2 > tableValues.length) {
+                    growTable();
+                }
+            }
+            partition.ids.add(id);
+        }
+
+        Arrays.sort(ordered, 0, orderedCount, BY_KEY);
+        for (int i = 0; i < orderedCount; i++) {
+            actorPrefix[i + 1] = actorPrefix[i] + ordered[i].ids.size();
+        }
+    }
+
+    /**
+     * Takes the next spare partition, or a new one, for a region.
+     *
+     * @param regionX The region column
+     * @param regionY The region row
+     * @return The empty partition
+     */
+    private Partition takePartition(int regionX, int regionY) {
+        if (orderedCount == ordered.length) {
+            ordered = Arrays.copyOf(ordered, Math.max(16, orderedCount * 2));
+            actorPrefix = new int[ordered.length + 1];
+        }
+        Partition partition = ordered[orderedCount];
+        if (partition == null) {
+            partition = new Partition();
+            ordered[orderedCount] = partition;
+        }
+        orderedCount++;
+        partition.reset(regionX, regionY);
+        return partition;
+    }
+
+    /**
+     * Finds the table slot of a region key: the slot holding it, or the free slot it would go in.
+     *
+     * @param key The region key
+     * @return The slot index
+     */
+    private int slot(long key) {
+        int mask = tableValues.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (tableValues[slot] != null && tableKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the lookup table and re-inserts the partitions in use.
+     */
+    private void growTable() {
+        tableKeys = new long[tableKeys.length * 2];
+        tableValues = new Partition[tableValues.length * 2];
+        for (int i = 0; i < orderedCount; i++) {
+            int slot = slot(ordered[i].key);
+            tableKeys[slot] = ordered[i].key;
+            tableValues[slot] = ordered[i];
+        }
+    }
+
+    /**
+     * @param regionX The region column
+     * @param regionY The region row
+     * @return The partition of the region, or null if no actor stands in it
+     */
+    private Partition lookup(int regionX, int regionY) {
+        return tableValues[slot(key(regionX, regionY))];
+    }
+
+    /**
+     * Runs a phase over every partition, in parallel when there are enough actors.
+     *
+     * @param phase The work to do per partition
+     */
+    private void runPhase(Phase phase) {
+        if (actorPrefix[orderedCount] < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < orderedCount; i++) {
+                phase.run(ordered[i]);
+            }
+        } else {
+            pool.invoke(new PhaseTask(phase, 0, orderedCount));
+        }
+    }
+
+    /**
+     * Phase 1: moves and animates the actors of a partition.
+     *
+     * @param partition The partition to update
+     */
+    private void moveActors(Partition partition) {
+        IntList ids = partition.ids;
+        for (int i = 0; i < ids.size(); i++) {
+            int id = ids.get(i);
+            MovementSystem.move(store, grid, tileSize, id, partition.sweep);
+            AnimationSystem.animate(store, id);
+        }
+    }
+
+    /**
+     * Phase 2: records every pair of overlapping actors whose lower id is in the partition.
+     * Actors are never larger than a region, so overlapping actors are at most one region apart.
+     *
+     * @param partition The partition to check
+     */
+    private void findContacts(Partition partition) {
+        IntList ids = partition.ids;
+        for (int regionY = partition.regionY - 1; regionY <= partition.regionY + 1; regionY++) {
+            for (int regionX = partition.regionX - 1; regionX <= partition.regionX + 1; regionX++) {
+                Partition other = lookup(regionX, regionY);
+                if (other == null) {
+                    continue;
+                }
+                for (int i = 0; i < ids.size(); i++) {
+                    int id = ids.get(i);
+                    for (int j = 0; j < other.ids.size(); j++) {
+                        int otherId = other.ids.get(j);
+                        if (otherId > id && overlaps(id, otherId)) {
+                            partition.addContact(pair(id, otherId));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Phase 3: combines the contacts found by every partition into one sorted list.
+     */
+    private void mergeContacts() {
+        contactCount = 0;
+        for (int i = 0; i < orderedCount; i++) {
+            Partition partition = ordered[i];
+            if (contactCount + partition.contactCount > contacts.length) {
+                contacts = Arrays.copyOf(contacts, Math.max(contacts.length * 2, contactCount + partition.contactCount));
+            }
+            System.arraycopy(partition.contacts, 0, contacts, contactCount, partition.contactCount);
+            contactCount += partition.contactCount;
+        }
+        Arrays.sort(contacts, 0, contactCount);
+    }
+
+    /**
+     * Phase 4: pushes the actors of every contact apart, half the overlap each. If one of
+     * them cannot move without entering a solid tile, the other takes the whole push; if
+     * neither can, the pair stays overlapping. Pairs already separated by an earlier push
+     * are skipped.
+     */
+    private void separateContacts() {
+        for (int i = 0; i < contactCount; i++) {
+            int a = contactFirst(i);
+            int b = contactSecond(i);
+            if (!overlaps(a, b)) {
+                continue;
+            }
+            int leftA = store.worldX[a] + store.solidX[a];
+            int topA = store.worldY[a] + store.solidY[a];
+            int leftB = store.worldX[b] + store.solidX[b];
+            int topB = store.worldY[b] + store.solidY[b];
+            int overlapX = Math.min(leftA + store.solidWidth[a], leftB + store.solidWidth[b]) - Math.max(leftA, leftB);
+            int overlapY = Math.min(topA + store.solidHeight[a], topB + store.solidHeight[b]) - Math.max(topA, topB);
+
+            // The lower id goes left or up when both are centered on the same spot
+            if (overlapX <= overlapY) {
+                int side = 2 * leftA + store.solidWidth[a] <= 2 * leftB + store.solidWidth[b] ? -1 : 1;
+                push(a, b, side * overlapX, 0);
+            } else {
+                int side = 2 * topA + store.solidHeight[a] <= 2 * topB + store.solidHeight[b] ? -1 : 1;
+                push(a, b, 0, side * overlapY);
+            }
+        }
+    }
+
+    /**
+     * Moves two actors apart by a distance, splitting it between them where the tiles allow.
+     *
+     * @param a The actor moved by the distance
+     * @param b The actor moved against the distance
+     * @param dx Horizontal distance between the actors to open up, in pixels
+     * @param dy Vertical distance between the actors to open up, in pixels
+     */
+    private void push(int a, int b, int dx, int dy) {
+        int halfX = dx / 2;
+        int halfY = dy / 2;
+        boolean aSplit = canShift(a, halfX, halfY);
+        boolean bSplit = canShift(b, halfX - dx, halfY - dy);
+        if (aSplit && bSplit) {
+            shift(a, halfX, halfY);
+            shift(b, halfX - dx, halfY - dy);
+        } else if (canShift(a, dx, dy)) {
+            shift(a, dx, dy);
+        } else if (canShift(b, -dx, -dy)) {
+            shift(b, -dx, -dy);
+        }
+    }
+
+    /**
+     * @param id The actor id
+     * @param dx Horizontal offset in pixels
+     * @param dy Vertical offset in pixels
+     * @return true if the actor's bounds, moved by the offset, touch no solid tile
+     */
+    private boolean canShift(int id, int dx, int dy) {
+        int left = store.worldX[id] + store.solidX[id] + dx;
+        int top = store.worldY[id] + store.solidY[id] + dy;
+        return !grid.anySolidInPixels(left, top, left + store.solidWidth[id] - 1, top + store.solidHeight[id] - 1, tileSize);
+    }
+
+    /**
+     * @param id The actor id
+     * @param dx Horizontal offset in pixels
+     * @param dy Vertical offset in pixels
+     */
+    private void shift(int id, int dx, int dy) {
+        store.worldX[id] += dx;
+        store.worldY[id] += dy;
+    }
+
+    /**
+     * @param a The id of the first actor
+     * @param b The id of the second actor
+     * @return true if the bounds of both actors overlap
+     */
+    private boolean overlaps(int a, int b) {
+        int leftA = store.worldX[a] + store.solidX[a];
+        int topA = store.worldY[a] + store.solidY[a];
+        int leftB = store.worldX[b] + store.solidX[b];
+        int topB = store.worldY[b] + store.solidY[b];
+        return leftA < leftB + store.solidWidth[b] && leftB < leftA + store.solidWidth[a]
+                && topA < topB + store.solidHeight[b] && topB < topA + store.solidHeight[a];
+    }
+
+    /**
+     * @param lower The lower actor id
+     * @param higher The higher actor id
+     * @return Both ids packed into one sortable value
+     */
+    private static long pair(int lower, int higher) {
+        return ((long) lower << 32) | (higher & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param regionX The region column
+     * @param regionY The region row
+     * @return Both coordinates packed into one key
+     */
+    private static long key(int regionX, int regionY) {
+        return ((long) regionX << 32) | (regionY & 0xFFFFFFFFL);
+    }
+}
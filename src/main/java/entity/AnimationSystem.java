@@ -0,0 +1,51 @@
+package entity;
+
+/**
+ * Advances the walking animation of actors in an {@link EntityStore}.
+ * Uses the same timing as the player: actors whose last move changed their position cycle
+ * through frames 1 to 3, including actors sliding along a wall; actors standing still or
+ * stuck show frame 1.
+ */
+public final class AnimationSystem {
+    /** Number of ticks each animation frame is shown */
+    private static final int TICKS_PER_FRAME = 8;
+
+    private AnimationSystem() {
+    }
+
+    /**
+     * Animates every live actor with an id in the given range.
+     *
+     * @param store The actor store
+     * @param fromId First actor id to process, inclusive
+     * @param toId Last actor id to process, exclusive
+     */
+    public static void update(EntityStore store, int fromId, int toId) {
+        for (int id = fromId; id < toId; id++) {
+            animate(store, id);
+        }
+    }
+
+    /**
+     * Animates a single actor. Dead actors are skipped.
+     *
+     * @param store The actor store
+     * @param id The id of the actor
+     */
+    public static void animate(EntityStore store, int id) {
+        int state = store.flags[id];
+        if ((state & EntityStore.FLAG_ALIVE) == 0) {
+            return;
+        }
+
+        if ((state & EntityStore.FLAG_MOVED) != 0) {
+            if (++store.spriteCounter[id] > TICKS_PER_FRAME) {
+                store.spriteNum[id] = (byte) ((store.spriteNum[id] % 3) + 1);
+                store.spriteCounter[id] = 0;
+            }
+        } else {
+            store.spriteNum[id] = 1;
+            store.spriteCounter[id] = 0;
+        }
+    }
+}
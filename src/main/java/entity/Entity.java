@@ -8,10 +8,16 @@ import java.awt.image.BufferedImage;
  * Provides common properties and functionality for any object that exists in the game world.
  */
 public class Entity {
+    /** Id assigned by the entity registry, or -1 while not registered */
+    public int id = -1;
     /** X coordinate in the world space */
     public int worldX;
     /** Y coordinate in the world space */
     public int worldY;
+    /** X coordinate at the start of the last tick, used to interpolate rendering between ticks */
+    public int previousWorldX;
+    /** Y coordinate at the start of the last tick, used to interpolate rendering between ticks */
+    public int previousWorldY;
     /** Movement speed of the entity */
     public int speed;
 
@@ -0,0 +1,163 @@
+package entity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps track of every entity in the world and indexes them in a spatial hash,
+ * so collision, interaction and sensing code can find nearby entities without
+ * testing every pair.
+ * <p>
+ * Entities that move during a tick re-file themselves with {@link #moved(Entity)}, so
+ * queries later in the same tick see where they are now; {@link #update()} re-files the
+ * rest once per tick. Both only touch the hash for entities that crossed into another cell.
+ */
+public final class EntityRegistry {
+    /** Entities by id; ids of removed entities are reused */
+    private Entity[] entities = new Entity[64];
+    /** One past the highest id handed out */
+    private int idLimit;
+    /** Ids below {@link #idLimit} freed by removed entities, the most recently freed last */
+    private final IntList freeIds = new IntList();
+    /** Spatial index of entity ids by position */
+    private final SpatialHash hash;
+    /** Largest width or height of any registered entity's bounds, used to pad queries */
+    private int maxExtent;
+    /** Scratch list for hash queries */
+    private final IntList candidates = new IntList();
+
+    /**
+     * Constructs a new registry.
+     *
+     * @param cellSize Width and height of a spatial hash cell in pixels
+     */
+    public EntityRegistry(int cellSize) {
+        this.hash = new SpatialHash(cellSize);
+    }
+
+    /**
+     * Registers an entity and assigns it an id.
+     *
+     * @param entity The entity to add
+     * @throws IllegalStateException if the entity is already registered
+     */
+    public void add(Entity entity) {
+        if (entity.id >= 0) {
+            throw new IllegalStateException("Entity is already registered");
+        }
+        int id = freeIds.size() > 0 ? freeIds.removeLast() : idLimit++;
+        if (id == entities.length) {
+            entities = Arrays.copyOf(entities, entities.length * 2);
+        }
+        entities[id] = entity;
+        entity.id = id;
+
+        maxExtent = Math.max(maxExtent, Math.max(entity.solidArea.width, entity.solidArea.height));
+        hash.put(id, left(entity), top(entity));
+    }
+
+    /**
+     * Unregisters an entity.
+     *
+     * @param entity The entity to remove
+     */
+    public void remove(Entity entity) {
+        if (entity.id < 0 || entities[entity.id] != entity) {
+            return;
+        }
+        hash.remove(entity.id);
+        entities[entity.id] = null;
+        freeIds.add(entity.id);
+        entity.id = -1;
+    }
+
+    /**
+     * Re-files every entity under its current position. Called once per tick after movement.
+     */
+    public void update() {
+        for (int id = 0; id < idLimit; id++) {
+            Entity entity = entities[id];
+            if (entity != null) {
+                hash.put(id, left(entity), top(entity));
+            }
+        }
+    }
+
+    /**
+     * Re-files a single entity right after it moved, so queries later in the same tick see it.
+     * Call it from the entity's movement code whenever its position changes.
+     *
+     * @param entity The entity that moved
+     */
+    public void moved(Entity entity) {
+        if (entity.id >= 0) {
+            hash.put(entity.id, left(entity), top(entity));
+        }
+    }
+
+    /**
+     * Finds every entity whose bounds overlap a rectangle.
+     *
+     * @param left Left edge in world pixels
+     * @param top Top edge in world pixels
+     * @param width Width of the rectangle in pixels
+     * @param height Height of the rectangle in pixels
+     * @param out Receives the entities; it is not cleared first
+     */
+    public void queryRect(int left, int top, int width, int height, List<Entity> out) {
+        candidates.clear();
+        hash.query(left - maxExtent, top - maxExtent, left + width, top + height, candidates);
+
+        for (int i = 0; i < candidates.size(); i++) {
+            Entity entity = entities[candidates.get(i)];
+            int entityLeft = left(entity);
+            int entityTop = top(entity);
+            if (entityLeft < left + width && entityLeft + entity.solidArea.width > left
+                    && entityTop < top + height && entityTop + entity.solidArea.height > top) {
+                out.add(entity);
+            }
+        }
+    }
+
+    /**
+     * Finds every entity whose bounds come within a radius of a point.
+     *
+     * @param x X coordinate of the center in world pixels
+     * @param y Y coordinate of the center in world pixels
+     * @param radius The radius in pixels
+     * @param out Receives the entities; it is not cleared first
+     */
+    public void queryRadius(int x, int y, int radius, List<Entity> out) {
+        candidates.clear();
+        hash.query(x - radius - maxExtent, y - radius - maxExtent, x + radius, y + radius, candidates);
+
+        long radiusSquared = (long) radius * radius;
+        for (int i = 0; i < candidates.size(); i++) {
+            Entity entity = entities[candidates.get(i)];
+            int entityLeft = left(entity);
+            int entityTop = top(entity);
+            // Distance from the center to the closest point of the bounds
+            long distanceX = x - Math.max(entityLeft, Math.min(x, entityLeft + entity.solidArea.width));
+            long distanceY = y - Math.max(entityTop, Math.min(y, entityTop + entity.solidArea.height));
+            if (distanceX * distanceX + distanceY * distanceY <= radiusSquared) {
+                out.add(entity);
+            }
+        }
+    }
+
+    /**
+     * @param entity The entity
+     * @return The left edge of the entity's bounds in world pixels
+     */
+    private static int left(Entity entity) {
+        return entity.worldX + entity.solidArea.x;
+    }
+
+    /**
+     * @param entity The entity
+     * @return The top edge of the entity's bounds in world pixels
+     */
+    private static int top(Entity entity) {
+        return entity.worldY + entity.solidArea.y;
+    }
+}
@@ -0,0 +1,177 @@
+package entity;
+
+import java.util.Arrays;
+
+/**
+ * Data-oriented storage for large numbers of lightweight actors (NPCs, projectiles, ...).
+ * Each property lives in its own primitive array indexed by actor id, so systems that
+ * process one aspect of every actor walk a few contiguous arrays instead of chasing
+ * object references. Ids of removed actors are reused.
+ */
+public final class EntityStore {
+    /** Direction value for actors facing down */
+    public static final byte DIRECTION_DOWN = 0;
+    /** Direction value for actors facing up */
+    public static final byte DIRECTION_UP = 1;
+    /** Direction value for actors facing left */
+    public static final byte DIRECTION_LEFT = 2;
+    /** Direction value for actors facing right */
+    public static final byte DIRECTION_RIGHT = 3;
+
+    /** Flag: the slot holds a live actor */
+    public static final byte FLAG_ALIVE = 1;
+    /** Flag: the actor's last move was stopped or deflected by a solid tile */
+    public static final byte FLAG_BLOCKED = 1 << 1;
+    /** Flag: the actor's last move changed its position */
+    public static final byte FLAG_MOVED = 1 << 2;
+
+    /** X coordinate in world space */
+    public int[] worldX;
+    /** Y coordinate in world space */
+    public int[] worldY;
+    /** Horizontal velocity in pixels per tick */
+    public int[] velocityX;
+    /** Vertical velocity in pixels per tick */
+    public int[] velocityY;
+    /** Facing direction, one of the {@code DIRECTION_*} constants */
+    public byte[] direction;
+    /** Ticks since the last animation frame change */
+    public byte[] spriteCounter;
+    /** Current animation frame, 1 to 3 */
+    public byte[] spriteNum;
+    /** Collision bounds offset and size relative to the actor position */
+    public short[] solidX, solidY, solidWidth, solidHeight;
+    /** State flags, see the {@code FLAG_*} constants */
+    public byte[] flags;
+
+    /** One past the highest id in use */
+    private int idLimit;
+    /** Number of live actors */
+    private int count;
+    /** Ids of removed actors available for reuse */
+    private int[] freeIds = new int[16];
+    /** Number of entries in {@link #freeIds} */
+    private int freeCount;
+
+    /**
+     * Constructs a new empty store.
+     *
+     * @param initialCapacity Number of actors the store can hold before growing
+     */
+    public EntityStore(int initialCapacity) {
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    /**
+     * Adds an actor standing still and facing down.
+     *
+     * @param x X coordinate in world space
+     * @param y Y coordinate in world space
+     * @param solidX Horizontal offset of the collision bounds
+     * @param solidY Vertical offset of the collision bounds
+     * @param width Width of the collision bounds
+     * @param height Height of the collision bounds
+     * @return The id of the new actor
+     */
+    public int add(int x, int y, int solidX, int solidY, int width, int height) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            if (idLimit == flags.length) {
+                allocate(flags.length * 2);
+            }
+            id = idLimit++;
+        }
+        worldX[id] = x;
+        worldY[id] = y;
+        velocityX[id] = 0;
+        velocityY[id] = 0;
+        direction[id] = DIRECTION_DOWN;
+        spriteCounter[id] = 0;
+        spriteNum[id] = 1;
+        this.solidX[id] = (short) solidX;
+        this.solidY[id] = (short) solidY;
+        solidWidth[id] = (short) width;
+        solidHeight[id] = (short) height;
+        flags[id] = FLAG_ALIVE;
+        count++;
+        return id;
+    }
+
+    /**
+     * Removes an actor; its id may be handed out again by {@link #add}.
+     *
+     * @param id The id of the actor
+     */
+    public void remove(int id) {
+        if (!isAlive(id)) {
+            return;
+        }
+        flags[id] = 0;
+        count--;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    /**
+     * Sets an actor's velocity and turns it to face the direction it moves in.
+     *
+     * @param id The id of the actor
+     * @param vx Horizontal velocity in pixels per tick
+     * @param vy Vertical velocity in pixels per tick
+     */
+    public void setVelocity(int id, int vx, int vy) {
+        velocityX[id] = vx;
+        velocityY[id] = vy;
+        if (vx != 0) {
+            direction[id] = vx > 0 ? DIRECTION_RIGHT : DIRECTION_LEFT;
+        } else if (vy != 0) {
+            direction[id] = vy > 0 ? DIRECTION_DOWN : DIRECTION_UP;
+        }
+    }
+
+    /**
+     * @param id The id to check
+     * @return true if the id refers to a live actor
+     */
+    public boolean isAlive(int id) {
+        return id >= 0 && id < idLimit && (flags[id] & FLAG_ALIVE) != 0;
+    }
+
+    /**
+     * @return One past the highest id in use; systems iterate ids below this limit
+     */
+    public int idLimit() {
+        return idLimit;
+    }
+
+    /**
+     * @return The number of live actors
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Grows every array to the given capacity.
+     *
+     * @param capacity The new capacity
+     */
+    private void allocate(int capacity) {
+        worldX = worldX == null ? new int[capacity] : Arrays.copyOf(worldX, capacity);
+        worldY = worldY == null ? new int[capacity] : Arrays.copyOf(worldY, capacity);
+        velocityX = velocityX == null ? new int[capacity] : Arrays.copyOf(velocityX, capacity);
+        velocityY = velocityY == null ? new int[capacity] : Arrays.copyOf(velocityY, capacity);
+        direction = direction == null ? new byte[capacity] : Arrays.copyOf(direction, capacity);
+        spriteCounter = spriteCounter == null ? new byte[capacity] : Arrays.copyOf(spriteCounter, capacity);
+        spriteNum = spriteNum == null ? new byte[capacity] : Arrays.copyOf(spriteNum, capacity);
+        solidX = solidX == null ? new short[capacity] : Arrays.copyOf(solidX, capacity);
+        solidY = solidY == null ? new short[capacity] : Arrays.copyOf(solidY, capacity);
+        solidWidth = solidWidth == null ? new short[capacity] : Arrays.copyOf(solidWidth, capacity);
+        solidHeight = solidHeight == null ? new short[capacity] : Arrays.copyOf(solidHeight, capacity);
+        flags = flags == null ? new byte[capacity] : Arrays.copyOf(flags, capacity);
+    }
+}
@@ -0,0 +1,81 @@
+package entity;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints, reused across queries to avoid boxing and allocation.
+ */
+public final class IntList {
+    /** Backing array, the first {@link #size} entries are valid */
+    private int[] values;
+    /** Number of values in the list */
+    private int size;
+
+    /**
+     * Constructs a new empty list.
+     */
+    public IntList() {
+        values = new int[16];
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value The value to append
+     */
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Appends the first {@code count} values of an array.
+     *
+     * @param source The array to copy from
+     * @param count Number of values to copy
+     */
+    public void addAll(int[] source, int count) {
+        if (size + count > values.length) {
+            values = Arrays.copyOf(values, Math.max(size + count, values.length * 2));
+        }
+        System.arraycopy(source, 0, values, size, count);
+        size += count;
+    }
+
+    /**
+     * @param index Index of the value
+     * @return The value at the index
+     */
+    public int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * @return The number of values in the list
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes the last value.
+     *
+     * @return The removed value
+     * @throws IllegalStateException if the list is empty
+     */
+    public int removeLast() {
+        if (size == 0) {
+            throw new IllegalStateException("List is empty");
+        }
+        return values[--size];
+    }
+
+    /**
+     * Removes all values, keeping the capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,67 @@
+package entity;
+
+import Tile.CollisionGrid;
+import main.CollisionChecker;
+import main.SweepResult;
+
+/**
+ * Moves actors in an {@link EntityStore} by their velocity and stops them at solid tiles.
+ * Movement is resolved by {@link CollisionChecker#sweep(CollisionGrid, int, int, int, int, int, int, int, SweepResult)},
+ * the same swept test the player uses, so actors slide along walls, end flush against them
+ * and cannot skip over thin walls at any speed.
+ */
+public final class MovementSystem {
+
+    private MovementSystem() {
+    }
+
+    /**
+     * Moves every live actor with an id in the given range.
+     *
+     * @param store The actor store
+     * @param grid The collision grid of the world
+     * @param tileSize Size of a tile in pixels
+     * @param fromId First actor id to process, inclusive
+     * @param toId Last actor id to process, exclusive
+     */
+    public static void update(EntityStore store, CollisionGrid grid, int tileSize, int fromId, int toId) {
+        SweepResult sweep = new SweepResult();
+        for (int id = fromId; id < toId; id++) {
+            move(store, grid, tileSize, id, sweep);
+        }
+    }
+
+    /**
+     * Moves a single actor. Dead actors are skipped.
+     *
+     * @param store The actor store
+     * @param grid The collision grid of the world
+     * @param tileSize Size of a tile in pixels
+     * @param id The id of the actor
+     * @param sweep Scratch result, reused between calls on the same thread
+     */
+    public static void move(EntityStore store, CollisionGrid grid, int tileSize, int id, SweepResult sweep) {
+        byte[] flags = store.flags;
+        if ((flags[id] & EntityStore.FLAG_ALIVE) == 0) {
+            return;
+        }
+        flags[id] &= ~(EntityStore.FLAG_BLOCKED | EntityStore.FLAG_MOVED);
+        int vx = store.velocityX[id];
+        int vy = store.velocityY[id];
+        if (vx == 0 && vy == 0) {
+            return;
+        }
+
+        CollisionChecker.sweep(grid, tileSize, store.worldX[id] + store.solidX[id], store.worldY[id] + store.solidY[id],
+                store.solidWidth[id], store.solidHeight[id], vx, vy, sweep);
+        store.worldX[id] += sweep.dx;
+        store.worldY[id] += sweep.dy;
+
+        if (sweep.hit()) {
+            flags[id] |= EntityStore.FLAG_BLOCKED;
+        }
+        if (sweep.dx != 0 || sweep.dy != 0) {
+            flags[id] |= EntityStore.FLAG_MOVED;
+        }
+    }
+}
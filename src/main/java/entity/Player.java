@@ -3,13 +3,14 @@ package entity;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
-import javax.imageio.ImageIO;
-
-import main.GamePanel;
+import Tile.TextureAtlas;
+import main.GameWorld;
+import main.InputSnapshot;
 import main.KeyHandler;
+import main.SweepResult;
 
 /**
  * Represents the player character in the game.
@@ -17,8 +18,16 @@ import main.KeyHandler;
  * Extends the base Entity class with player-specific functionality.
  */
 public final class Player extends Entity {
-    /** Reference to the main game panel */
-    private final GamePanel gp;
+    /** Image paths of the sprite frames, three per direction in up, down, left, right order */
+    private static final String[] FRAME_PATHS = {
+            "/player/IMG_2395.PNG", "/player/IMG_2396.PNG", "/player/IMG_2397.PNG",
+            "/player/IMG_2386.PNG", "/player/IMG_2387.PNG", "/player/IMG_2388.PNG",
+            "/player/IMG_2389.PNG", "/player/IMG_2390.PNG", "/player/IMG_2391.PNG",
+            "/player/IMG_2392.PNG", "/player/IMG_2393.PNG", "/player/IMG_2394.PNG"
+    };
+
+    /** The game world this object belongs to */
+    private final GameWorld world;
     /** Reference to the keyboard input handler */
     private final KeyHandler keyH;
 
@@ -26,19 +35,27 @@ public final class Player extends Entity {
     public final int screenX;
     /** Fixed screen position Y coordinate */
     public final int screenY;
+    /** Reused result of the per-tick collision sweep */
+    private final SweepResult sweep = new SweepResult();
+    /** Atlas holding the pre-scaled sprite frames, or null until one is set */
+    private volatile TextureAtlas atlas;
+    /** Completed once every sprite image is decoded */
+    private CompletableFuture<Void> imagesLoaded;
+    /** Atlas ids of the frames, three per direction in up, down, left, right order */
+    private final int[] frameSprites = new int[12];
 
     /**
-     * Constructs a new Player with the specified game panel and key handler.
+     * Constructs a new Player with the specified game world and key handler.
      *
-     * @param gp The game panel this player belongs to
+     * @param world The game world this player belongs to
      * @param keyH The key handler for processing player input
      */
-    public Player(GamePanel gp, KeyHandler keyH) {
-        this.gp = gp;
+    public Player(GameWorld world, KeyHandler keyH) {
+        this.world = world;
         this.keyH = keyH;
 
-        screenX = gp.screenWidth/2 - (gp.tileSize/2);
-        screenY = gp.screenHeight/2 - (gp.tileSize/2);
+        screenX = world.screenWidth/2 - (world.tileSize/2);
+        screenY = world.screenHeight/2 - (world.tileSize/2);
 
         solidArea = new Rectangle();
         solidArea.x = 8;
@@ -54,68 +71,111 @@ public final class Player extends Entity {
      * Sets the default values for player position, speed, and direction.
      */
     private void setDefaultValues() {
-        worldX = gp.tileSize * 23;
-        worldY = gp.tileSize * 21;
+        worldX = world.tileSize * 23;
+        worldY = world.tileSize * 21;
+        previousWorldX = worldX;
+        previousWorldY = worldY;
         speed = 4;
         direction = "down";
     }
 
     /**
-     * Loads all player sprite images for different directions and animation frames.
-     * 
-     * @throws RuntimeException if there's an error loading any sprite image
+     * Requests all player sprite images for different directions and animation frames
+     * from the asset manager. The images arrive in the background, see {@link #imagesLoaded()}.
      */
     private void loadPlayerImages() {
-        try {
-            up1 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2395.png")));
-            up2 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2396.png")));
-            up3 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2397.png")));
-            down1 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2386.png")));
-            down2 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2387.png")));
-            down3 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2388.png")));
-            left1 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2389.png")));
-            left2 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2390.png")));
-            left3 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2391.png")));
-            right1 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2392.png")));
-            right2 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2393.png")));
-            right3 = ImageIO.read(Objects.requireNonNull(getClass().getResourceAsStream("/player/IMG_2394.png")));
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to load player images", e);
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[FRAME_PATHS.length];
+        for (int i = 0; i < FRAME_PATHS.length; i++) {
+            int frame = i;
+            requests[i] = world.assets.acquire(FRAME_PATHS[i]).thenAccept(image -> setSpriteFrame(frame, image));
+        }
+        imagesLoaded = CompletableFuture.allOf(requests);
+    }
+
+    /**
+     * @return A future completed once every sprite image is decoded, or completed
+     *         exceptionally if one failed to load
+     */
+    public CompletableFuture<Void> imagesLoaded() {
+        return imagesLoaded;
+    }
+
+    /**
+     * Gives the sprite images back to the asset manager, e.g. when the world is discarded.
+     */
+    public void releaseImages() {
+        for (String path : FRAME_PATHS) {
+            world.assets.release(path);
+        }
+    }
+
+    /**
+     * Stores a decoded sprite frame.
+     *
+     * @param frame The frame index, three per direction in up, down, left, right order
+     * @param image The decoded image
+     */
+    private void setSpriteFrame(int frame, BufferedImage image) {
+        switch (frame) {
+            case 0 -> up1 = image;
+            case 1 -> up2 = image;
+            case 2 -> up3 = image;
+            case 3 -> down1 = image;
+            case 4 -> down2 = image;
+            case 5 -> down3 = image;
+            case 6 -> left1 = image;
+            case 7 -> left2 = image;
+            case 8 -> left3 = image;
+            case 9 -> right1 = image;
+            case 10 -> right2 = image;
+            default -> right3 = image;
         }
     }
 
     /**
      * Updates the player's state including position and animation.
-     * Handles movement based on keyboard input and collision detection.
+     * Handles movement based on the tick's input snapshot and collision detection.
+     * Movement may be diagonal; the player slides along walls it runs into.
      */
     public void update() {
-        boolean moving = false;
-        int horizontalMovement = keyH.getHorizontalMovement();
-        int verticalMovement = keyH.getVerticalMovement();
+        previousWorldX = worldX;
+        previousWorldY = worldY;
+
+        InputSnapshot input = keyH.snapshot();
+        int horizontalMovement = input.getHorizontalMovement();
+        int verticalMovement = input.getVerticalMovement();
 
-        // Set direction based on movement priority
+        // Set facing direction based on movement priority
         // Horizontal movement takes precedence over vertical
         if (horizontalMovement != 0) {
-            moving = true;
             direction = horizontalMovement > 0 ? "right" : "left";
         } else if (verticalMovement != 0) {
-            moving = true;
             direction = verticalMovement > 0 ? "down" : "up";
         }
 
+        // Diagonal steps are shortened so the player is not faster diagonally
+        int axisX = input.getHorizontalAxis();
+        int axisY = input.getVerticalAxis();
+        int step = axisX != 0 && axisY != 0 ? diagonalSpeed() : speed;
+
         // CHECK TILE COLLISION
-        collisionOn = false;
-        gp.cChecker.checkTile(this);
-
-        // IF COLLISION IS FALSE, PLAYER CAN MOVE
-        if (moving && !collisionOn) {
-            // Apply movement (no diagonal movement)
-            if (horizontalMovement != 0) {
-                worldX += horizontalMovement * speed;
-            } else if (verticalMovement != 0) {
-                worldY += verticalMovement * speed;
-            }
-            
+        world.cChecker.sweep(this, axisX * step, axisY * step, sweep);
+        collisionOn = sweep.hit();
+
+        // CHECK ENTITY COLLISION
+        if ((sweep.dx != 0 || sweep.dy != 0) && world.cChecker.checkEntity(this, sweep.dx, sweep.dy) != null) {
+            collisionOn = true;
+            sweep.dx = 0;
+            sweep.dy = 0;
+        }
+
+        // Move as far as the tiles and other entities allow
+        worldX += sweep.dx;
+        worldY += sweep.dy;
+
+        if (sweep.dx != 0 || sweep.dy != 0) {
+            world.entities.moved(this);
+
             // Animate only when moving
             spriteCounter++;
             if (spriteCounter > 8) {
@@ -129,46 +189,95 @@ public final class Player extends Entity {
         }
     }
 
+    /**
+     * @return The per-axis speed used for diagonal movement
+     */
+    private int diagonalSpeed() {
+        return Math.max(1, (int) Math.round(speed / Math.sqrt(2)));
+    }
+
+    /**
+     * Adds every sprite frame to an atlas under construction.
+     * Pass the built atlas to {@link #setAtlas(TextureAtlas)}.
+     *
+     * @param builder The atlas builder
+     */
+    public void addSprites(TextureAtlas.Builder builder) {
+        BufferedImage[] frames = {up1, up2, up3, down1, down2, down3, left1, left2, left3, right1, right2, right3};
+        for (int i = 0; i < frames.length; i++) {
+            frameSprites[i] = builder.add(Objects.requireNonNull(frames[i], "Player sprite image cannot be null"));
+        }
+    }
+
+    /**
+     * Switches drawing to an atlas built with {@link #addSprites(TextureAtlas.Builder)}.
+     *
+     * @param atlas The atlas holding the sprite frames
+     */
+    public void setAtlas(TextureAtlas atlas) {
+        this.atlas = atlas;
+    }
+
     /**
      * Renders the player on the screen.
+     * Frames are copied unscaled from the atlas once one is set.
      *
      * @param g2 The Graphics2D object used for rendering
      */
     public void draw(Graphics2D g2) {
-        BufferedImage image = getDirectionalImage();
+        int frame = getFrameIndex();
+        if (atlas != null) {
+            atlas.draw(g2, frameSprites[frame], screenX, screenY);
+            return;
+        }
+        BufferedImage image = getSpriteFrame(frame);
         Objects.requireNonNull(image, "Player sprite image cannot be null");
-        g2.drawImage(image, screenX, screenY, gp.tileSize, gp.tileSize, null);
+        g2.drawImage(image, screenX, screenY, world.tileSize, world.tileSize, null);
     }
 
     /**
-     * Gets the appropriate sprite image based on the player's direction and movement state.
+     * Gets the appropriate frame based on the player's direction and movement state.
      *
-     * @return The BufferedImage to use for the current frame
+     * @return The frame index, three per direction in up, down, left, right order
      */
-    private BufferedImage getDirectionalImage() {
+    public int getFrameIndex() {
+        InputSnapshot input = keyH.snapshot();
         return switch (direction) {
-            case "up" -> keyH.upPressed ? getSpriteFrame(up1, up2, up3) : up1;
-            case "down" -> keyH.downPressed ? getSpriteFrame(down1, down2, down3) : down1;
-            case "left" -> keyH.leftPressed ? getSpriteFrame(left1, left2, left3) : left1;
-            case "right" -> keyH.rightPressed ? getSpriteFrame(right1, right2, right3) : right1;
-            default -> down1;
+            case "up" -> input.upPressed ? getAnimationFrame() : 0;
+            case "down" -> input.downPressed ? 3 + getAnimationFrame() : 3;
+            case "left" -> input.leftPressed ? 6 + getAnimationFrame() : 6;
+            case "right" -> input.rightPressed ? 9 + getAnimationFrame() : 9;
+            default -> 3;
         };
     }
 
     /**
-     * Selects the appropriate sprite frame from the animation sequence.
+     * @return The offset of the current animation frame within a direction, 0 to 2
+     */
+    private int getAnimationFrame() {
+        return spriteNum >= 1 && spriteNum <= 3 ? spriteNum - 1 : 0;
+    }
+
+    /**
+     * Selects a frame's image for drawing without an atlas.
      *
-     * @param frame1 First frame of the animation
-     * @param frame2 Second frame of the animation
-     * @param frame3 Third frame of the animation
-     * @return The selected frame based on current animation state
+     * @param frame The frame index, three per direction in up, down, left, right order
+     * @return The image of the frame
      */
-    private BufferedImage getSpriteFrame(BufferedImage frame1, BufferedImage frame2, BufferedImage frame3) {
-        return switch (spriteNum) {
-            case 1 -> frame1;
-            case 2 -> frame2;
-            case 3 -> frame3;
-            default -> frame1;
+    private BufferedImage getSpriteFrame(int frame) {
+        return switch (frame) {
+            case 0 -> up1;
+            case 1 -> up2;
+            case 2 -> up3;
+            case 3 -> down1;
+            case 4 -> down2;
+            case 5 -> down3;
+            case 6 -> left1;
+            case 7 -> left2;
+            case 8 -> left3;
+            case 9 -> right1;
+            case 10 -> right2;
+            default -> right3;
         };
     }
 }
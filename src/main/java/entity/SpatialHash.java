@@ -0,0 +1,242 @@
+package entity;
+
+import java.util.Arrays;
+
+/**
+ * Uniform-grid spatial hash of integer ids.
+ * Each id is filed under the cell containing its anchor point (the top-left of its bounds);
+ * moving an id only touches the hash when it crosses into another cell. Queries return
+ * every id whose anchor lies in the cells overlapping the query area, so callers expand the
+ * area by the largest object size and test exact bounds themselves.
+ * <p>
+ * Cells are kept in an open-addressing table keyed by primitive cell keys, and emptied cells
+ * are reused, so filing, moving and querying ids allocates nothing once the table has grown.
+ */
+public final class SpatialHash {
+    /**
+     * Ids filed under one cell.
+     */
+    private static final class Cell {
+        /** Ids in the cell, the first {@link #size} entries are valid */
+        int[] ids = new int[8];
+        /** Number of ids in the cell */
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(int id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    ids[i] = ids[--size];
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Width and height of a cell in pixels */
+    private final int cellSize;
+    /** Cell key of each table slot, valid where {@link #tableCells} holds a cell */
+    private long[] tableKeys = new long[64];
+    /** Non-empty cells, indexed by table slot; null marks a free slot */
+    private Cell[] tableCells = new Cell[64];
+    /** Number of cells in the table */
+    private int cellCount;
+    /** Emptied cells kept for reuse */
+    private Cell[] spareCells = new Cell[16];
+    /** Number of entries in {@link #spareCells} */
+    private int spareCount;
+    /** Cell key each id is filed under, indexed by id */
+    private long[] cellOf = new long[64];
+    /** Whether each id is in the hash, indexed by id */
+    private boolean[] present = new boolean[64];
+
+    /**
+     * Constructs a new spatial hash.
+     *
+     * @param cellSize Width and height of a cell in pixels
+     */
+    public SpatialHash(int cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * @return The width and height of a cell in pixels
+     */
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Files an id under the cell containing the given point, moving it if it is already present.
+     *
+     * @param id The id, a small non-negative integer
+     * @param x Anchor X coordinate in pixels
+     * @param y Anchor Y coordinate in pixels
+     */
+    public void put(int id, int x, int y) {
+        if (id >= present.length) {
+            int capacity = Math.max(id + 1, present.length * 2);
+            present = Arrays.copyOf(present, capacity);
+            cellOf = Arrays.copyOf(cellOf, capacity);
+        }
+        long key = key(Math.floorDiv(x, cellSize), Math.floorDiv(y, cellSize));
+        if (present[id]) {
+            if (cellOf[id] == key) {
+                return;
+            }
+            removeFromCell(id, cellOf[id]);
+        }
+        int slot = slot(key);
+        Cell cell = tableCells[slot];
+        if (cell == null) {
+            cell = spareCount > 0 ? spareCells[--spareCount] : new Cell();
+            tableKeys[slot] = key;
+            tableCells[slot] = cell;
+            if (++cellCount * 2 > tableCells.length) {
+                growTable();
+            }
+        }
+        cell.add(id);
+        cellOf[id] = key;
+        present[id] = true;
+    }
+
+    /**
+     * Removes an id from the hash.
+     *
+     * @param id The id to remove
+     */
+    public void remove(int id) {
+        if (id < present.length && present[id]) {
+            removeFromCell(id, cellOf[id]);
+            present[id] = false;
+        }
+    }
+
+    /**
+     * Collects the ids anchored in every cell overlapping a rectangle.
+     *
+     * @param left Left edge in pixels
+     * @param top Top edge in pixels
+     * @param right Right edge in pixels, inclusive
+     * @param bottom Bottom edge in pixels, inclusive
+     * @param out Receives the candidate ids; it is not cleared first
+     */
+    public void query(int left, int top, int right, int bottom, IntList out) {
+        int firstX = Math.floorDiv(left, cellSize);
+        int firstY = Math.floorDiv(top, cellSize);
+        int lastX = Math.floorDiv(right, cellSize);
+        int lastY = Math.floorDiv(bottom, cellSize);
+
+        for (int cellY = firstY; cellY <= lastY; cellY++) {
+            for (int cellX = firstX; cellX <= lastX; cellX++) {
+                Cell cell = tableCells[slot(key(cellX, cellY))];
+                if (cell != null) {
+                    out.addAll(cell.ids, cell.size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes an id from a cell, dropping the cell once it is empty.
+     *
+     * @param id The id to remove
+     * @param key The key of the cell
+     */
+    private void removeFromCell(int id, long key) {
+        int slot = slot(key);
+        Cell cell = tableCells[slot];
+        if (cell == null) {
+            return;
+        }
+        cell.remove(id);
+        if (cell.size == 0) {
+            deleteSlot(slot);
+            if (spareCount == spareCells.length) {
+                spareCells = Arrays.copyOf(spareCells, spareCount * 2);
+            }
+            spareCells[spareCount++] = cell;
+        }
+    }
+
+    /**
+     * Finds the table slot of a cell key: the slot holding it, or the free slot it would go in.
+     *
+     * @param key The cell key
+     * @return The slot index
+     */
+    private int slot(long key) {
+        int mask = tableCells.length - 1;
+        int slot = home(key, mask);
+        while (tableCells[slot] != null && tableKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @param key A cell key
+     * @param mask The table length minus one
+     * @return The slot the key is probed from
+     */
+    private static int home(long key, int mask) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    /**
+     * Frees a table slot and shifts the entries probed past it back, so every remaining key
+     * is still found from its home slot without tombstones.
+     *
+     * @param slot The slot to free
+     */
+    private void deleteSlot(int slot) {
+        int mask = tableCells.length - 1;
+        int hole = slot;
+        tableCells[hole] = null;
+        for (int i = (hole + 1) & mask; tableCells[i] != null; i = (i + 1) & mask) {
+            // The entry may fill the hole if the hole lies between its home slot and its slot
+            if (((i - home(tableKeys[i], mask)) & mask) >= ((i - hole) & mask)) {
+                tableKeys[hole] = tableKeys[i];
+                tableCells[hole] = tableCells[i];
+                tableCells[i] = null;
+                hole = i;
+            }
+        }
+        cellCount--;
+    }
+
+    /**
+     * Doubles the table and re-inserts every cell.
+     */
+    private void growTable() {
+        long[] oldKeys = tableKeys;
+        Cell[] oldCells = tableCells;
+        tableKeys = new long[oldKeys.length * 2];
+        tableCells = new Cell[oldCells.length * 2];
+        for (int i = 0; i < oldCells.length; i++) {
+            if (oldCells[i] != null) {
+                int slot = slot(oldKeys[i]);
+                tableKeys[slot] = oldKeys[i];
+                tableCells[slot] = oldCells[i];
+            }
+        }
+    }
+
+    /**
+     * Combines cell coordinates into a single key.
+     *
+     * @param cellX The cell column
+     * @param cellY The cell row
+     * @return The cell key
+     */
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,150 @@
+package main;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads images from the classpath in the background and shares them.
+ * Images are decoded concurrently on a small fixed pool of daemon threads, so startup
+ * does not wait for one PNG after another. Every path is decoded once no matter how
+ * many places ask for it; the cache counts references and forgets an image when the
+ * last holder releases it.
+ */
+public final class AssetManager {
+    /** Manager shared by every world that does not bring its own */
+    private static AssetManager defaultManager;
+
+    /**
+     * A cached image and the number of holders.
+     */
+    private static final class Entry {
+        /** The image, completed once decoded */
+        final CompletableFuture<BufferedImage> image;
+        /** Number of unreleased {@link #acquire(String)} calls */
+        int references;
+
+        Entry(CompletableFuture<BufferedImage> image) {
+            this.image = image;
+        }
+    }
+
+    /** Threads decoding images */
+    private final ExecutorService pool;
+    /** Cached images by resource path */
+    private final Map<String, Entry> cache = new HashMap<>();
+    /** Number of images requested but not decoded yet */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Constructs a new manager.
+     *
+     * @param threads Number of threads decoding images
+     */
+    public AssetManager(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "asset-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return The manager shared by every world that does not bring its own, using up to four threads
+     */
+    public static synchronized AssetManager getDefault() {
+        if (defaultManager == null) {
+            defaultManager = new AssetManager(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+        }
+        return defaultManager;
+    }
+
+    /**
+     * Requests an image and registers the caller as one of its holders.
+     * Every call must be paired with a {@link #release(String)} once the image is no longer needed.
+     *
+     * @param path Path of the image on the classpath
+     * @return The image, completed once decoded; completes exceptionally with a
+     *         {@link RuntimeException} if the image cannot be loaded
+     */
+    public synchronized CompletableFuture<BufferedImage> acquire(String path) {
+        Entry entry = cache.get(path);
+        if (entry == null) {
+            pending.incrementAndGet();
+            CompletableFuture<BufferedImage> image = CompletableFuture.supplyAsync(() -> decode(path), pool);
+            image.whenComplete((result, error) -> pending.decrementAndGet());
+            entry = new Entry(image);
+            cache.put(path, entry);
+        }
+        entry.references++;
+        return entry.image;
+    }
+
+    /**
+     * Gives up one hold on an image; the cache forgets it once nobody holds it.
+     *
+     * @param path Path of the image on the classpath
+     */
+    public synchronized void release(String path) {
+        Entry entry = cache.get(path);
+        if (entry != null && --entry.references <= 0) {
+            cache.remove(path);
+        }
+    }
+
+    /**
+     * @return The number of images requested but not decoded yet
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * @return The number of images currently cached
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Decodes an image on a pool thread.
+     * Paths that name no classpath resource are read from disk, so art referenced by a
+     * tileset file can be changed without rebuilding the game.
+     *
+     * @param path Path of the image on the classpath or on disk
+     * @return The decoded image
+     * @throws RuntimeException if the image is missing or cannot be decoded
+     */
+    private static BufferedImage decode(String path) {
+        try (InputStream in = open(path)) {
+            return Objects.requireNonNull(ImageIO.read(in), path);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load image " + path, e);
+        }
+    }
+
+    /**
+     * @param path Path of the image on the classpath or on disk
+     * @return A stream of the image file
+     * @throws IOException if the image exists in neither place or cannot be opened
+     */
+    private static InputStream open(String path) throws IOException {
+        InputStream resource = AssetManager.class.getResourceAsStream(path);
+        if (resource != null) {
+            return resource;
+        }
+        return Files.newInputStream(Path.of(path));
+    }
+}
@@ -0,0 +1,111 @@
+package main;
+
+import entity.Player;
+
+/**
+ * Tracks which part of the world is currently on screen.
+ * The camera follows the player and exposes both its pixel position and the range of
+ * visible tile columns and rows, so renderers and overlays only iterate the on-screen
+ * window instead of the whole map.
+ */
+public final class Camera {
+    /** Size of a tile on screen, in pixels */
+    private final int tileSize;
+    /** Width of the view in pixels */
+    public final int viewWidth;
+    /** Height of the view in pixels */
+    public final int viewHeight;
+    /** Number of tile columns in the world */
+    private final int maxWorldCol;
+    /** Number of tile rows in the world */
+    private final int maxWorldRow;
+
+    /** World X coordinate of the top-left corner of the view */
+    public int x;
+    /** World Y coordinate of the top-left corner of the view */
+    public int y;
+    /** First visible tile column, clamped to the world */
+    public int minCol;
+    /** Last visible tile column (inclusive), clamped to the world */
+    public int maxCol;
+    /** First visible tile row, clamped to the world */
+    public int minRow;
+    /** Last visible tile row (inclusive), clamped to the world */
+    public int maxRow;
+
+    /**
+     * Constructs a new Camera for a view of the given size.
+     *
+     * @param tileSize Size of a tile on screen, in pixels
+     * @param viewWidth Width of the view in pixels
+     * @param viewHeight Height of the view in pixels
+     * @param maxWorldCol Number of tile columns in the world
+     * @param maxWorldRow Number of tile rows in the world
+     */
+    public Camera(int tileSize, int viewWidth, int viewHeight, int maxWorldCol, int maxWorldRow) {
+        this.tileSize = tileSize;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.maxWorldCol = maxWorldCol;
+        this.maxWorldRow = maxWorldRow;
+    }
+
+    /**
+     * Centers the camera on the player, keeping the player at its fixed screen position.
+     *
+     * @param player The player to follow
+     */
+    public void follow(Player player) {
+        moveTo(player.worldX - player.screenX, player.worldY - player.screenY);
+    }
+
+    /**
+     * Centers the camera on the player's position interpolated between the last two ticks,
+     * so movement stays smooth when frames are drawn more often than the simulation ticks.
+     *
+     * @param player The player to follow
+     * @param alpha How far the frame lies between the previous tick (0) and the last tick (1)
+     */
+    public void follow(Player player, double alpha) {
+        int worldX = (int) Math.round(player.previousWorldX + (player.worldX - player.previousWorldX) * alpha);
+        int worldY = (int) Math.round(player.previousWorldY + (player.worldY - player.previousWorldY) * alpha);
+        moveTo(worldX - player.screenX, worldY - player.screenY);
+    }
+
+    /**
+     * Moves the top-left corner of the view to the given world position and
+     * recomputes the visible tile range.
+     *
+     * @param worldX World X coordinate of the top-left corner
+     * @param worldY World Y coordinate of the top-left corner
+     */
+    public void moveTo(int worldX, int worldY) {
+        x = worldX;
+        y = worldY;
+
+        minCol = Math.max(0, Math.floorDiv(worldX, tileSize));
+        minRow = Math.max(0, Math.floorDiv(worldY, tileSize));
+        maxCol = Math.min(maxWorldCol - 1, Math.floorDiv(worldX + viewWidth - 1, tileSize));
+        maxRow = Math.min(maxWorldRow - 1, Math.floorDiv(worldY + viewHeight - 1, tileSize));
+    }
+
+    /**
+     * Converts a world X coordinate to a screen X coordinate.
+     *
+     * @param worldX The world X coordinate
+     * @return The matching screen X coordinate
+     */
+    public int toScreenX(int worldX) {
+        return worldX - x;
+    }
+
+    /**
+     * Converts a world Y coordinate to a screen Y coordinate.
+     *
+     * @param worldY The world Y coordinate
+     * @return The matching screen Y coordinate
+     */
+    public int toScreenY(int worldY) {
+        return worldY - y;
+    }
+}
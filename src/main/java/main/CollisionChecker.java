@@ -1,5 +1,9 @@
 package main;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import Tile.CollisionGrid;
 import entity.Entity;
 
 /**
@@ -7,70 +11,227 @@ import entity.Entity;
  * Checks if an entity's movement would result in a collision with solid tiles.
  */
 public class CollisionChecker {
-    /** Reference to the main game panel */
-    private final GamePanel gp;
+    /** The game world this object belongs to */
+    private final GameWorld world;
+    /** Scratch list for entity queries */
+    private final List<Entity> nearby = new ArrayList<>();
 
     /**
-     * Constructs a new CollisionChecker with the specified game panel.
+     * Constructs a new CollisionChecker with the specified game world.
      *
-     * @param gp The game panel this checker will work with
+     * @param world The game world this checker will work with
      */
-    public CollisionChecker(GamePanel gp) {
-        this.gp = gp;
+    public CollisionChecker(GameWorld world) {
+        this.world = world;
     }
 
     /**
      * Checks if an entity would collide with any solid tiles in its movement direction.
      * Updates the entity's collisionOn flag if a collision would occur.
+     * The entity's bounds are shifted one step ahead and tested against the collision grid
+     * in a single rectangle query, without allocating.
      *
      * @param entity The entity to check for collisions
      */
     public void checkTile(Entity entity) {
-        int entityLeftWorldX = entity.worldX + entity.solidArea.x;
-        int entityRightWorldX = entity.worldX + entity.solidArea.x + entity.solidArea.width;
-        int entityTopWorldY = entity.worldY + entity.solidArea.y;
-        int entityBottomWorldY = entity.worldY + entity.solidArea.y + entity.solidArea.height;
-
-        int entityLeftCol = entityLeftWorldX / gp.tileSize;
-        int entityRightCol = entityRightWorldX / gp.tileSize;
-        int entityTopRow = entityTopWorldY / gp.tileSize;
-        int entityBottomRow = entityBottomWorldY / gp.tileSize;
-
-        int tileNum1, tileNum2;
-
-        switch(entity.direction) {
-            case "up":
-                entityTopRow = (entityTopWorldY - entity.speed) / gp.tileSize;
-                tileNum1 = gp.tileM.mapTileNum[entityLeftCol][entityTopRow];
-                tileNum2 = gp.tileM.mapTileNum[entityRightCol][entityTopRow];
-                if (gp.tileM.tile[tileNum1].collision || gp.tileM.tile[tileNum2].collision) {
-                    entity.collisionOn = true;
+        int left = entity.worldX + entity.solidArea.x;
+        int right = left + entity.solidArea.width;
+        int top = entity.worldY + entity.solidArea.y;
+        int bottom = top + entity.solidArea.height;
+
+        int dx = 0;
+        int dy = 0;
+        switch (entity.direction) {
+            case "up" -> dy = -entity.speed;
+            case "down" -> dy = entity.speed;
+            case "left" -> dx = -entity.speed;
+            case "right" -> dx = entity.speed;
+            default -> {
+                return;
+            }
+        }
+
+        // Only the leading edge moves into new tiles, so probe the strip it sweeps across
+        int probeLeft = dx > 0 ? right : left + dx;
+        int probeRight = dx < 0 ? left : right + dx;
+        int probeTop = dy > 0 ? bottom : top + dy;
+        int probeBottom = dy < 0 ? top : bottom + dy;
+
+        if (world.tileM.collisionGrid.anySolidInPixels(probeLeft, probeTop, probeRight, probeBottom, world.tileSize)) {
+            entity.collisionOn = true;
+        }
+    }
+
+    /**
+     * Finds another entity that an entity would overlap after moving.
+     * Only entities near the destination are tested, using the entity registry's spatial hash.
+     *
+     * @param entity The entity to check
+     * @param dx Horizontal displacement in pixels
+     * @param dy Vertical displacement in pixels
+     * @return The first overlapping entity, or null if the destination is free
+     */
+    public Entity checkEntity(Entity entity, int dx, int dy) {
+        nearby.clear();
+        world.entities.queryRect(entity.worldX + entity.solidArea.x + dx, entity.worldY + entity.solidArea.y + dy,
+                entity.solidArea.width, entity.solidArea.height, nearby);
+
+        for (Entity other : nearby) {
+            if (other != entity) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sweeps an entity's bounds along a velocity vector through the tile grid and finds how far
+     * it can move. When the entity hits a solid tile, the remaining motion along the wall is swept
+     * once more so the entity slides instead of stopping dead. Because the whole path is tested,
+     * fast entities cannot tunnel through thin walls.
+     * The entity itself is not moved.
+     *
+     * @param entity The entity to move
+     * @param dx Requested horizontal displacement in pixels
+     * @param dy Requested vertical displacement in pixels
+     * @param result Receives the legal displacement and the contact normal
+     */
+    public void sweep(Entity entity, int dx, int dy, SweepResult result) {
+        sweep(world.tileM.collisionGrid, world.tileSize, entity.worldX + entity.solidArea.x, entity.worldY + entity.solidArea.y,
+                entity.solidArea.width, entity.solidArea.height, dx, dy, result);
+    }
+
+    /**
+     * Sweeps a box along a velocity vector through a collision grid, sliding along the first
+     * wall it hits, like {@link #sweep(Entity, int, int, SweepResult)}. Keeps no state, so
+     * actors updated on several threads resolve their movement the same way as the player.
+     *
+     * @param grid The collision grid
+     * @param tileSize Size of a tile in pixels
+     * @param left Left edge of the box in world pixels
+     * @param top Top edge of the box in world pixels
+     * @param width Width of the box in pixels
+     * @param height Height of the box in pixels
+     * @param dx Requested horizontal displacement in pixels
+     * @param dy Requested vertical displacement in pixels
+     * @param result Receives the legal displacement and the contact normal
+     */
+    public static void sweep(CollisionGrid grid, int tileSize, int left, int top, int width, int height,
+            int dx, int dy, SweepResult result) {
+        sweepOnce(grid, tileSize, left, top, width, height, dx, dy, result);
+        if (!result.hit()) {
+            return;
+        }
+
+        // Slide along the wall with whatever motion is left on the free axis
+        int movedX = result.dx;
+        int movedY = result.dy;
+        int normalX = result.normalX;
+        int normalY = result.normalY;
+        int remainingX = normalX != 0 ? 0 : dx - movedX;
+        int remainingY = normalY != 0 ? 0 : dy - movedY;
+
+        sweepOnce(grid, tileSize, left + movedX, top + movedY, width, height, remainingX, remainingY, result);
+        result.dx += movedX;
+        result.dy += movedY;
+        result.normalX = normalX != 0 ? normalX : result.normalX;
+        result.normalY = normalY != 0 ? normalY : result.normalY;
+    }
+
+    /**
+     * Sweeps a box along a straight line and stops it at the first solid tile.
+     * Boxes are treated as half-open pixel ranges, so a box resting flush against a wall
+     * can still move along it.
+     *
+     * @param grid The collision grid
+     * @param tileSize Size of a tile in pixels
+     * @param left Left edge of the box in world pixels
+     * @param top Top edge of the box in world pixels
+     * @param width Width of the box in pixels
+     * @param height Height of the box in pixels
+     * @param dx Requested horizontal displacement in pixels
+     * @param dy Requested vertical displacement in pixels
+     * @param result Receives the legal displacement and the contact normal
+     */
+    private static void sweepOnce(CollisionGrid grid, int tileSize, int left, int top, int width, int height,
+            int dx, int dy, SweepResult result) {
+        result.reset();
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+        int right = left + width;
+        int bottom = top + height;
+
+        // Every tile the box could touch on its way
+        int firstCol = Math.floorDiv(Math.min(left, left + dx), tileSize);
+        int lastCol = Math.floorDiv(Math.max(right, right + dx) - 1, tileSize);
+        int firstRow = Math.floorDiv(Math.min(top, top + dy), tileSize);
+        int lastRow = Math.floorDiv(Math.max(bottom, bottom + dy) - 1, tileSize);
+
+        double firstHit = 1.0;
+        result.dx = dx;
+        result.dy = dy;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                if (!grid.isSolid(col, row)) {
+                    continue;
                 }
-                break;
-            case "down":
-                entityBottomRow = (entityBottomWorldY + entity.speed) / gp.tileSize;
-                tileNum1 = gp.tileM.mapTileNum[entityLeftCol][entityBottomRow];
-                tileNum2 = gp.tileM.mapTileNum[entityRightCol][entityBottomRow];
-                if (gp.tileM.tile[tileNum1].collision || gp.tileM.tile[tileNum2].collision) {
-                    entity.collisionOn = true;
+                int tileLeft = col * tileSize;
+                int tileTop = row * tileSize;
+                int tileRight = tileLeft + tileSize;
+                int tileBottom = tileTop + tileSize;
+
+                double entryX;
+                double exitX;
+                if (dx > 0) {
+                    entryX = (double) (tileLeft - right) / dx;
+                    exitX = (double) (tileRight - left) / dx;
+                } else if (dx < 0) {
+                    entryX = (double) (tileRight - left) / dx;
+                    exitX = (double) (tileLeft - right) / dx;
+                } else if (left < tileRight && right > tileLeft) {
+                    entryX = Double.NEGATIVE_INFINITY;
+                    exitX = Double.POSITIVE_INFINITY;
+                } else {
+                    continue;
                 }
-                break;
-            case "left":
-                entityLeftCol = (entityLeftWorldX - entity.speed) / gp.tileSize;
-                tileNum1 = gp.tileM.mapTileNum[entityLeftCol][entityTopRow];
-                tileNum2 = gp.tileM.mapTileNum[entityLeftCol][entityBottomRow];
-                if (gp.tileM.tile[tileNum1].collision || gp.tileM.tile[tileNum2].collision) {
-                    entity.collisionOn = true;
+
+                double entryY;
+                double exitY;
+                if (dy > 0) {
+                    entryY = (double) (tileTop - bottom) / dy;
+                    exitY = (double) (tileBottom - top) / dy;
+                } else if (dy < 0) {
+                    entryY = (double) (tileBottom - top) / dy;
+                    exitY = (double) (tileTop - bottom) / dy;
+                } else if (top < tileBottom && bottom > tileTop) {
+                    entryY = Double.NEGATIVE_INFINITY;
+                    exitY = Double.POSITIVE_INFINITY;
+                } else {
+                    continue;
                 }
-                break;
-            case "right":
-                entityRightCol = (entityRightWorldX + entity.speed) / gp.tileSize;
-                tileNum1 = gp.tileM.mapTileNum[entityRightCol][entityTopRow];
-                tileNum2 = gp.tileM.mapTileNum[entityRightCol][entityBottomRow];
-                if (gp.tileM.tile[tileNum1].collision || gp.tileM.tile[tileNum2].collision) {
-                    entity.collisionOn = true;
+
+                double entry = Math.max(entryX, entryY);
+                // Skip tiles the path misses, tiles reached later than the current hit, and
+                // tiles the box already overlaps so it can always move out of them
+                if (entry >= Math.min(exitX, exitY) || entry < 0 || entry >= firstHit) {
+                    continue;
+                }
+
+                firstHit = entry;
+                if (entryX > entryY) {
+                    result.dx = dx > 0 ? tileLeft - right : tileRight - left;
+                    result.dy = (int) (dy * entry);
+                    result.normalX = dx > 0 ? -1 : 1;
+                    result.normalY = 0;
+                } else {
+                    result.dx = (int) (dx * entry);
+                    result.dy = dy > 0 ? tileTop - bottom : tileBottom - top;
+                    result.normalX = 0;
+                    result.normalY = dy > 0 ? -1 : 1;
                 }
-                break;
+            }
         }
     }
 }
@@ -0,0 +1,174 @@
+package main;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Area;
+
+/**
+ * Collects the screen regions that changed since the last frame, so only those are redrawn.
+ * Regions are clipped to the screen, and a region directly below another of the same width is
+ * merged into it, so rows of changed tiles collapse into one rectangle. Once there are too many
+ * regions, or they cover most of the screen, the tracker switches to a full redraw, which is
+ * then cheaper than many small ones.
+ */
+public final class DamageTracker {
+    /** Most separate regions tracked before falling back to a full redraw */
+    private static final int MAX_REGIONS = 32;
+
+    /** Width of the screen in pixels */
+    private final int screenWidth;
+    /** Height of the screen in pixels */
+    private final int screenHeight;
+    /** Left edge of each region */
+    private final int[] x = new int[MAX_REGIONS];
+    /** Top edge of each region */
+    private final int[] y = new int[MAX_REGIONS];
+    /** Width of each region */
+    private final int[] width = new int[MAX_REGIONS];
+    /** Height of each region */
+    private final int[] height = new int[MAX_REGIONS];
+    /** Number of regions */
+    private int count;
+    /** Sum of the region areas, overlaps counted twice */
+    private long area;
+    /** Whether the whole screen must be redrawn */
+    private boolean full;
+
+    /**
+     * Constructs a new tracker with nothing damaged.
+     *
+     * @param screenWidth Width of the screen in pixels
+     * @param screenHeight Height of the screen in pixels
+     */
+    public DamageTracker(int screenWidth, int screenHeight) {
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+    }
+
+    /**
+     * Marks a region of the screen as changed.
+     *
+     * @param regionX Left edge in pixels
+     * @param regionY Top edge in pixels
+     * @param regionWidth Width in pixels
+     * @param regionHeight Height in pixels
+     */
+    public void add(int regionX, int regionY, int regionWidth, int regionHeight) {
+        if (full) {
+            return;
+        }
+        int left = Math.max(0, regionX);
+        int top = Math.max(0, regionY);
+        int right = Math.min(screenWidth, regionX + regionWidth);
+        int bottom = Math.min(screenHeight, regionY + regionHeight);
+        if (left >= right || top >= bottom) {
+            return;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (x[i] == left && width[i] == right - left && y[i] + height[i] == top) {
+                // Directly below a region of the same width, grow it downwards
+                height[i] += bottom - top;
+                addArea((long) (right - left) * (bottom - top));
+                return;
+            }
+            if (left >= x[i] && top >= y[i] && right <= x[i] + width[i] && bottom <= y[i] + height[i]) {
+                return;
+            }
+        }
+        if (count == MAX_REGIONS) {
+            addFull();
+            return;
+        }
+        x[count] = left;
+        y[count] = top;
+        width[count] = right - left;
+        height[count] = bottom - top;
+        count++;
+        addArea((long) (right - left) * (bottom - top));
+    }
+
+    /**
+     * Marks a region of the screen as changed.
+     *
+     * @param region The region in screen pixels
+     */
+    public void add(Rectangle region) {
+        add(region.x, region.y, region.width, region.height);
+    }
+
+    /**
+     * Marks the whole screen as changed.
+     */
+    public void addFull() {
+        full = true;
+        count = 0;
+        area = 0;
+    }
+
+    /**
+     * @return true if nothing changed since the last {@link #clear()}
+     */
+    public boolean isEmpty() {
+        return !full && count == 0;
+    }
+
+    /**
+     * @return true if the whole screen must be redrawn
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * @return The smallest rectangle containing every changed region, empty if nothing changed
+     */
+    public Rectangle getBounds() {
+        if (full) {
+            return new Rectangle(0, 0, screenWidth, screenHeight);
+        }
+        if (count == 0) {
+            return new Rectangle();
+        }
+        Rectangle bounds = new Rectangle(x[0], y[0], width[0], height[0]);
+        for (int i = 1; i < count; i++) {
+            bounds.add(new Rectangle(x[i], y[i], width[i], height[i]));
+        }
+        return bounds;
+    }
+
+    /**
+     * @return The changed regions as one shape, for use as a clip
+     */
+    public Shape getClip() {
+        if (full || count == 1) {
+            return getBounds();
+        }
+        Area clip = new Area();
+        for (int i = 0; i < count; i++) {
+            clip.add(new Area(new Rectangle(x[i], y[i], width[i], height[i])));
+        }
+        return clip;
+    }
+
+    /**
+     * Forgets every changed region, e.g. once a frame covering them was drawn.
+     */
+    public void clear() {
+        full = false;
+        count = 0;
+        area = 0;
+    }
+
+    /**
+     * Adds to the damaged area and switches to a full redraw once it covers half the screen.
+     *
+     * @param regionArea Area of a newly damaged region, in pixels
+     */
+    private void addArea(long regionArea) {
+        area += regionArea;
+        if (area * 2 >= (long) screenWidth * screenHeight) {
+            addFull();
+        }
+    }
+}
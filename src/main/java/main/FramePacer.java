@@ -0,0 +1,35 @@
+package main;
+
+/**
+ * Waits until precise points in time.
+ * {@link Thread#sleep(long)} only has millisecond resolution and routinely oversleeps by
+ * a millisecond or more, so the pacer sleeps for the bulk of the wait and then yields
+ * in a short spin until the deadline.
+ */
+public final class FramePacer {
+    /** Remaining time below which the pacer stops sleeping and spins */
+    private static final long SPIN_THRESHOLD = 2_000_000L;
+
+    private FramePacer() {
+    }
+
+    /**
+     * Blocks until {@link System#nanoTime()} reaches the deadline.
+     *
+     * @param deadline The time to wait for, on the {@link System#nanoTime()} clock
+     * @return How many nanoseconds after the deadline the wait ended
+     * @throws InterruptedException if the thread is interrupted while sleeping
+     */
+    public static long waitUntil(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        while (remaining > SPIN_THRESHOLD) {
+            Thread.sleep((remaining - SPIN_THRESHOLD) / 1_000_000L);
+            remaining = deadline - System.nanoTime();
+        }
+        long now;
+        while ((now = System.nanoTime()) - deadline < 0) {
+            Thread.yield();
+        }
+        return now - deadline;
+    }
+}
@@ -1,60 +1,105 @@
 package main;
 
+import java.awt.BorderLayout;
+import java.awt.Canvas;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Toolkit;
+import java.awt.Transparency;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
 
 import javax.swing.JPanel;
 
-import Tile.TileManager;
-import entity.Player;
+import Tile.TextureAtlas;
 
 /**
- * Main game panel that handles the game loop, rendering, and core game components.
+ * Main game panel that handles the game loop and rendering of a {@link GameWorld}.
  * This class extends JPanel and implements Runnable to manage the game thread.
+ * <p>
+ * Frames are drawn in one of two modes chosen at startup with {@code -Dgame.render}:
+ * {@code active} (the default) draws from the game thread into a {@link Canvas} with a
+ * {@link BufferStrategy} and presents each frame immediately; {@code passive} draws the
+ * frame from the game thread too, then requests a repaint and lets Swing copy it to the
+ * screen on the event dispatch thread, which never touches the world or the camera.
+ * <p>
+ * Either way only the parts of the screen that changed since the last frame are redrawn:
+ * animated tiles, the player sprite and the performance overlay. Anything that moves the
+ * whole view, such as the camera scrolling, redraws the full screen, and a frame in which
+ * nothing changed is not drawn at all.
  */
 public class GamePanel extends JPanel implements Runnable {
-    // SCREEN SETTINGS
-    /** Original size of a tile in pixels */
-    private final int originalTileSize = 16; // 16x16 tile
-    /** Scale factor for rendering */
-    private final int scale = 3;
-
-    /** Actual tile size after scaling */
-    public final int tileSize = (originalTileSize * scale); //48x48 tile
-    /** Maximum number of columns on screen */
-    public final int maxScreenCol = 16; // 4:3 Ratio
-    /** Maximum number of rows on screen */
-    public final int maxScreenRow = 12;
+    /** The simulation this panel shows and drives */
+    public final GameWorld world = new GameWorld();
     /** Screen width in pixels */
-    public final int screenWidth = (tileSize * maxScreenCol); //768 pixels
+    public final int screenWidth = world.screenWidth;
     /** Screen height in pixels */
-    public final int screenHeight = tileSize * maxScreenRow; //576 pixels
-
-    // WORLD SETTINGS
-    /** Maximum number of columns in the world */
-    public final int maxWorldCol = 50;
-    /** Maximum number of rows in the world */
-    public final int maxWorldRow = 50;
-    /** Total world width in pixels */
-    public final int worldWidth = tileSize * maxWorldCol;
-    /** Total world height in pixels */
-    public final int worldHeight = tileSize * maxWorldRow;
-
-    /** Target frames per second */
-    private final int fps = 60;
-
-    /** Manages the game's tile system */
-    public final TileManager tileM = new TileManager(this);
-    /** Handles keyboard input */
-    private final KeyHandler keyH = new KeyHandler();
+    public final int screenHeight = world.screenHeight;
+
+    // LOOP SETTINGS
+    /** Simulation ticks per second */
+    private final int tickRate = Integer.getInteger("game.tickRate", 60);
+    /** Upper limit of frames drawn per second */
+    private final int maxFrameRate = Integer.getInteger("game.fps", 120);
+    /** Most ticks run back to back before the loop gives up catching up and slows down instead */
+    private final int maxCatchUpSteps = Integer.getInteger("game.maxCatchUp", 5);
+    /** How far the next frame lies between the previous tick (0) and the last tick (1) */
+    private volatile double renderAlpha = 1;
+
+    // RENDER SETTINGS
+    /** Whether frames are drawn actively from the game thread instead of through repaint() */
+    private final boolean activeRendering = !"passive".equals(System.getProperty("game.render", "active"));
+    /** Number of buffers of the active rendering strategy, 2 or 3 */
+    private final int bufferCount = Math.max(2, Math.min(3, Integer.getInteger("game.buffers", 3)));
+    /** Surface drawn on in active mode, null in passive mode */
+    private final Canvas canvas;
+    /** Buffers of {@link #canvas}, created once the canvas is on screen */
+    private BufferStrategy bufferStrategy;
+    /** Whether only changed screen regions are redrawn instead of every frame in full */
+    private final boolean dirtyRectangles = Boolean.parseBoolean(System.getProperty("game.dirtyRects", "true"));
+    /** Screen regions that changed since the last drawn frame */
+    private final DamageTracker damage = new DamageTracker(screenWidth, screenHeight);
+    /** Frame composed by the game thread; kept between frames so only its damaged regions are redrawn */
+    private BufferedImage frame;
+    /** Guards {@link #frame} in passive mode, where the event dispatch thread copies it to the screen */
+    private final Object frameLock = new Object();
+    /** Set when the window system asks for the canvas to be repainted, e.g. after it was uncovered */
+    private volatile boolean exposed;
+
+    // STATE OF THE LAST DRAWN FRAME
+    /** Camera X position of the last drawn frame */
+    private int lastCameraX;
+    /** Camera Y position of the last drawn frame */
+    private int lastCameraY;
+    /** Simulation tick of the last drawn frame */
+    private long lastTick;
+    /** Player sprite frame of the last drawn frame */
+    private int lastPlayerFrame;
+    /** Whether the last drawn frame showed the collision overlay */
+    private boolean lastCollisionOverlay;
+    /** Whether the last drawn frame showed the performance overlay */
+    private boolean lastPerformanceOverlay;
+    /** Whether the last drawn frame showed the world rather than the loading screen */
+    private boolean lastLoaded;
+
+    // METRICS SETTINGS
+    /** Records frame, tick and render timings; exported when {@code -Dgame.metrics} names a file */
+    private final PerformanceMonitor monitor = new PerformanceMonitor(
+            System.getProperty("game.metrics") == null ? null : Path.of(System.getProperty("game.metrics")),
+            Long.getLong("game.metricsInterval", 10));
+
+    // RECORDING SETTINGS
+    /** Ticks between checkpoints of the input recording made when {@code -Dgame.record} names a file */
+    private final int recordCheckpoints = Integer.getInteger("game.recordCheckpoints", 60);
+
     /** Main game thread */
     private Thread gameThread;
-    /** Handles collision detection */
-    public final CollisionChecker cChecker = new CollisionChecker(this);
-    /** The player character */
-    public final Player player = new Player(this, keyH);
+    /** Tracks the visible part of the world */
+    public final Camera camera = new Camera(world.tileSize, screenWidth, screenHeight, world.tileM.map.getMaxCol(), world.tileM.map.getMaxRow());
     
     
     /**
@@ -65,41 +110,132 @@ public class GamePanel extends JPanel implements Runnable {
         this.setPreferredSize(new Dimension(screenWidth, screenHeight));
         this.setBackground(Color.BLACK);
         this.setDoubleBuffered(true);
-        this.addKeyListener(keyH);
+        this.addKeyListener(world.keyH);
         this.setFocusable(true);
+
+        if (activeRendering) {
+            canvas = new Canvas() {
+                @Override
+                public void update(Graphics g) {
+                    paint(g);
+                }
+
+                @Override
+                public void paint(Graphics g) {
+                    // The game thread draws; just make it present the whole frame again
+                    exposed = true;
+                }
+            };
+            canvas.setPreferredSize(new Dimension(screenWidth, screenHeight));
+            canvas.setBackground(Color.BLACK);
+            canvas.addKeyListener(world.keyH);
+            canvas.setFocusable(true);
+            this.setLayout(new BorderLayout());
+            this.add(canvas, BorderLayout.CENTER);
+            this.setIgnoreRepaint(true);
+        } else {
+            canvas = null;
+        }
+
+        // A streamed world keeps edits in memory until it is closed
+        Runtime.getRuntime().addShutdownHook(new Thread(world.tileM::close, "world-close"));
+
+        String recording = System.getProperty("game.record");
+        if (recording != null) {
+            startRecording(Path.of(recording));
+        }
+    }
+
+    /**
+     * Records the input of every tick into a file, finished when the JVM exits.
+     *
+     * @param file The recording file
+     * @throws RuntimeException if the file cannot be created
+     */
+    private void startRecording(Path file) {
+        InputRecorder recorder;
+        try {
+            recorder = InputRecorder.open(file, world, tickRate, recordCheckpoints);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start input recording " + file, e);
+        }
+        world.setRecorder(recorder);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                System.err.println("Failed to finish input recording " + file + ": " + e.getMessage());
+            }
+        }, "input-recording-close"));
     }
 
     /**
      * Starts the game thread and begins the game loop.
      */
     public void startGameThread() {
+        if (canvas != null) {
+            canvas.requestFocus();
+        }
         gameThread = new Thread(this);
         gameThread.start();
     }
 
     /**
      * Main game loop that handles timing and updates.
-     * Implements a fixed time step game loop to maintain consistent game speed.
+     * Runs the simulation at a fixed tick rate, independent of how often frames are drawn.
+     * Elapsed time is collected in an accumulator and spent in whole ticks; each frame is
+     * then drawn with the fraction of a tick left over, so rendering can interpolate. When
+     * the machine cannot keep up, at most {@link #maxCatchUpSteps} ticks run per frame and
+     * the remaining backlog is dropped, so the game slows down instead of freezing.
      */
     @Override
     public void run() {
-        double drawInterval = (double) 1000000000 / fps;
-        double nextDrawTime = System.nanoTime() + drawInterval;
+        long tickInterval = 1_000_000_000L / tickRate;
+        long frameInterval = 1_000_000_000L / Math.max(tickRate, maxFrameRate);
+        long previousTime = System.nanoTime();
+        long nextFrameTime = previousTime;
+        long accumulator = 0;
+        monitor.setTargetFrameTime(frameInterval);
 
         while(gameThread != null) {
-            update();
-            repaint();
+            long now = System.nanoTime();
+            monitor.frameStarted(now);
+            if (!world.isLoaded()) {
+                // Start ticking once loaded, without catching up on the loading time
+                previousTime = now;
+            }
+            accumulator += now - previousTime;
+            previousTime = now;
 
-            try {
-                double remainingTime = nextDrawTime - System.nanoTime();
-                remainingTime = remainingTime / 1000000;
+            int steps = 0;
+            while (accumulator >= tickInterval && steps < maxCatchUpSteps) {
+                long tickStart = System.nanoTime();
+                world.update();
+                monitor.recordTick(System.nanoTime() - tickStart);
+                accumulator -= tickInterval;
+                steps++;
+            }
+            if (accumulator >= tickInterval) {
+                // Too far behind, drop the backlog
+                accumulator %= tickInterval;
+            }
 
-                if (remainingTime < 0) {
-                    remainingTime = 0;
-                }
+            renderAlpha = (double) accumulator / tickInterval;
+            collectDamage();
+            if (activeRendering) {
+                renderActive();
+            } else {
+                renderPassive();
+            }
+            damage.clear();
 
-                Thread.sleep((long) remainingTime);
-                nextDrawTime += drawInterval;
+            nextFrameTime += frameInterval;
+            if (nextFrameTime < now) {
+                // A long frame; pace from now on instead of rushing to catch up
+                nextFrameTime = now + frameInterval;
+            }
+            try {
+                monitor.recordOvershoot(FramePacer.waitUntil(nextFrameTime));
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
@@ -107,27 +243,177 @@ public class GamePanel extends JPanel implements Runnable {
     }
 
     /**
-     * Updates the game state.
-     * Currently only updates the player, but can be expanded for other game elements.
+     * Positions the camera for the next frame and records which parts of the screen will
+     * differ from the last drawn frame. Anything that changes the whole view (camera movement,
+     * toggled overlays, changed tiles, the loading screen) damages the full screen.
      */
-    public void update() {
-        player.update();
+    private void collectDamage() {
+        boolean loaded = world.isLoaded();
+        if (!loaded) {
+            damage.addFull();
+            lastLoaded = false;
+            return;
+        }
+        camera.follow(world.player, renderAlpha);
+        long tick = world.getTick();
+        int playerFrame = world.player.getFrameIndex();
+        boolean collisionOverlay = world.keyH.showCollisionOverlay;
+        boolean performanceOverlay = world.keyH.showPerformanceOverlay;
+
+        if (!dirtyRectangles || !lastLoaded || camera.x != lastCameraX || camera.y != lastCameraY
+                || collisionOverlay != lastCollisionOverlay || performanceOverlay != lastPerformanceOverlay) {
+            damage.addFull();
+        } else {
+            world.tileM.addDamage(camera, lastTick, tick, damage);
+            if (playerFrame != lastPlayerFrame) {
+                damage.add(world.player.screenX, world.player.screenY, world.tileSize, world.tileSize);
+            }
+            if (performanceOverlay) {
+                damage.add(monitor.getOverlayBounds());
+            }
+        }
+
+        lastLoaded = true;
+        lastCameraX = camera.x;
+        lastCameraY = camera.y;
+        lastTick = tick;
+        lastPlayerFrame = playerFrame;
+        lastCollisionOverlay = collisionOverlay;
+        lastPerformanceOverlay = performanceOverlay;
     }
 
     /**
-     * Renders the game state.
-     * Draws the tiles first, then the player on top.
+     * Redraws the damaged regions of the frame and presents it through the canvas buffers.
+     * Does nothing until the canvas is displayable, and presents nothing when no region
+     * changed and the window system did not ask for a repaint. Lost or restored buffers are redrawn.
+     */
+    private void renderActive() {
+        if (bufferStrategy == null) {
+            if (!canvas.isDisplayable()) {
+                return;
+            }
+            canvas.createBufferStrategy(bufferCount);
+            bufferStrategy = canvas.getBufferStrategy();
+            frame = TextureAtlas.createCompatibleImage(screenWidth, screenHeight, Transparency.OPAQUE);
+            damage.addFull();
+        }
+        if (damage.isEmpty() && !exposed) {
+            return;
+        }
+        exposed = false;
+
+        if (!damage.isEmpty()) {
+            // The buffers are not kept between frames, but this image is: redraw only what changed
+            drawDamage();
+        }
+
+        do {
+            do {
+                Graphics2D g2 = (Graphics2D) bufferStrategy.getDrawGraphics();
+                try {
+                    g2.drawImage(frame, 0, 0, null);
+                } finally {
+                    g2.dispose();
+                }
+            } while (bufferStrategy.contentsRestored());
+            bufferStrategy.show();
+        } while (bufferStrategy.contentsLost());
+
+        // Flush the window system's queue so the frame reaches the screen now
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    /**
+     * Redraws the damaged regions of the frame and asks Swing to copy them to the screen.
+     * Does nothing when no region changed.
+     */
+    private void renderPassive() {
+        if (damage.isEmpty()) {
+            return;
+        }
+        synchronized (frameLock) {
+            if (frame == null) {
+                frame = TextureAtlas.createCompatibleImage(screenWidth, screenHeight, Transparency.OPAQUE);
+                damage.addFull();
+            }
+            drawDamage();
+        }
+        repaint(damage.getBounds());
+    }
+
+    /**
+     * Redraws the damaged regions of {@link #frame}, leaving the rest of it as it was.
+     */
+    private void drawDamage() {
+        Graphics2D g2 = frame.createGraphics();
+        try {
+            g2.setClip(damage.getClip());
+            g2.setColor(Color.BLACK);
+            g2.fillRect(0, 0, screenWidth, screenHeight);
+            render(g2);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Paints the panel in passive mode by copying the frame last drawn by the game thread.
      *
-     * @param g The Graphics object to paint on
+     * @param g The Graphics object to paint on, owned by Swing
      */
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D) g;
+        if (!activeRendering) {
+            synchronized (frameLock) {
+                if (frame != null) {
+                    g.drawImage(frame, 0, 0, null);
+                }
+            }
+        }
+    }
 
-        tileM.draw(g2);
-        player.draw(g2);
+    /**
+     * Renders the game state as seen by the camera.
+     * Draws the ground and decoration tiles first, then the player, then the overhead tiles
+     * over it, then any enabled debug overlays.
+     * The performance overlay is drawn last and left out of the measured render time.
+     * Until every image is loaded only a loading screen is drawn.
+     * Only the graphics context's clip is touched; the caller positions the camera and
+     * disposes the context.
+     *
+     * @param g2 The Graphics2D object to draw on
+     */
+    public void render(Graphics2D g2) {
+        if (!world.isLoaded()) {
+            drawLoadingScreen(g2);
+            return;
+        }
+        long renderStart = System.nanoTime();
+        world.tileM.drawGround(g2, camera);
+        world.player.draw(g2);
+        world.tileM.drawOverhead(g2, camera);
+
+        if (world.keyH.showCollisionOverlay) {
+            world.tileM.drawCollisionOverlay(g2, camera);
+        }
+        monitor.recordRender(System.nanoTime() - renderStart);
 
-        g2.dispose();
+        if (world.keyH.showPerformanceOverlay) {
+            monitor.drawOverlay(g2);
+        }
+    }
+
+    /**
+     * Draws the loading screen shown while images are decoded in the background.
+     *
+     * @param g2 The Graphics2D object to draw on
+     */
+    private void drawLoadingScreen(Graphics2D g2) {
+        String text = "Loading... " + world.assets.pending() + " images left";
+        g2.setColor(Color.BLACK);
+        g2.fillRect(0, 0, screenWidth, screenHeight);
+        g2.setColor(Color.WHITE);
+        g2.drawString(text, (screenWidth - g2.getFontMetrics().stringWidth(text)) / 2, screenHeight / 2);
     }
-}
\ No newline at end of file
+}
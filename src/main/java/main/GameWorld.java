@@ -0,0 +1,226 @@
+package main;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+import Tile.TextureAtlas;
+import Tile.TileChunkCache;
+import Tile.TileManager;
+import ai.PathService;
+import entity.ActorUpdatePipeline;
+import entity.EntityRegistry;
+import entity.EntityStore;
+import entity.Player;
+
+/**
+ * The simulation core of the game: the world, its tiles and collision, every entity and
+ * the per-tick update. It knows nothing about windows or painting, so it runs the same
+ * inside {@link GamePanel} and in a headless {@link HeadlessRunner}.
+ */
+public final class GameWorld {
+    // SCREEN SETTINGS
+    /** Original size of a tile in pixels */
+    private final int originalTileSize = 16; // 16x16 tile
+    /** Scale factor for rendering */
+    private final int scale = 3;
+
+    /** Actual tile size after scaling */
+    public final int tileSize = (originalTileSize * scale); //48x48 tile
+    /** Maximum number of columns on screen */
+    public final int maxScreenCol = 16; // 4:3 Ratio
+    /** Maximum number of rows on screen */
+    public final int maxScreenRow = 12;
+    /** Screen width in pixels */
+    public final int screenWidth = (tileSize * maxScreenCol); //768 pixels
+    /** Screen height in pixels */
+    public final int screenHeight = tileSize * maxScreenRow; //576 pixels
+
+    // WORLD SETTINGS
+    /** Maximum number of columns in the built-in world; streamed worlds define their own size */
+    public final int maxWorldCol = 50;
+    /** Maximum number of rows in the built-in world; streamed worlds define their own size */
+    public final int maxWorldRow = 50;
+    /** Total world width in pixels */
+    public final int worldWidth = tileSize * maxWorldCol;
+    /** Total world height in pixels */
+    public final int worldHeight = tileSize * maxWorldRow;
+
+    /** Loads and shares the images of the world */
+    public final AssetManager assets = AssetManager.getDefault();
+    /** Manages the game's tile system */
+    public final TileManager tileM = new TileManager(this);
+    /** Input state read by the simulation, fed by the keyboard or by a script */
+    public final KeyHandler keyH = new KeyHandler();
+    /** Handles collision detection */
+    public final CollisionChecker cChecker = new CollisionChecker(this);
+    /** The player character */
+    public final Player player = new Player(this, keyH);
+    /** All entities in the world, indexed by position */
+    public final EntityRegistry entities = new EntityRegistry(tileSize * TileChunkCache.CHUNK_SIZE);
+    /** Lightweight actors (NPCs, projectiles, ...) stored as primitive arrays */
+    public final EntityStore actors = new EntityStore(256);
+    /** Updates the actors in parallel, one task per group of world regions */
+    private final ActorUpdatePipeline actorPipeline =
+            new ActorUpdatePipeline(ForkJoinPool.commonPool(), tileSize * TileChunkCache.CHUNK_SIZE);
+    /** Finds paths for agents on a background thread, between ticks */
+    public final PathService paths = new PathService();
+
+    /** Tiles and sprite frames packed into one image, pre-scaled to the tile size; null while loading */
+    private volatile TextureAtlas atlas;
+    /** Completed once every image is decoded and the atlas is built */
+    private final CompletableFuture<Void> loaded;
+
+    /** Number of ticks simulated so far; also the clock animated tiles follow when drawn */
+    private volatile long tick;
+    /** Records the input of every tick, or null when not recording */
+    private InputRecorder recorder;
+
+    /**
+     * Constructs a new world with the player at its starting position.
+     * Returns without waiting for images; they are decoded in the background and then
+     * packed into the shared atlas, see {@link #isLoaded()}.
+     */
+    public GameWorld() {
+        entities.add(player);
+
+        loaded = CompletableFuture.allOf(tileM.imagesLoaded(), player.imagesLoaded()).thenRun(this::buildAtlas);
+    }
+
+    /**
+     * Packs every tile and sprite frame into the shared atlas once their images are decoded.
+     */
+    private void buildAtlas() {
+        TextureAtlas.Builder sprites = new TextureAtlas.Builder(tileSize);
+        tileM.addSprites(sprites);
+        player.addSprites(sprites);
+        TextureAtlas built = sprites.build();
+        tileM.setAtlas(built);
+        player.setAtlas(built);
+        atlas = built;
+    }
+
+    /**
+     * @return true once every image is loaded and the world can be drawn
+     * @throws RuntimeException if an image failed to load
+     */
+    public boolean isLoaded() {
+        if (loaded.isCompletedExceptionally()) {
+            awaitLoaded();
+        }
+        return loaded.isDone();
+    }
+
+    /**
+     * Blocks until every image is loaded and the world can be drawn.
+     *
+     * @throws RuntimeException if an image failed to load
+     */
+    public void awaitLoaded() {
+        try {
+            loaded.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Failed to load assets", e.getCause());
+        }
+    }
+
+    /**
+     * @return The atlas of tiles and sprite frames, or null while images are loading
+     */
+    public TextureAtlas getAtlas() {
+        return atlas;
+    }
+
+    /**
+     * Gives every image back to the asset manager and saves a streamed world.
+     * The world must not be drawn or updated afterwards.
+     *
+     * @throws RuntimeException if the streamed world cannot be saved
+     */
+    public void close() {
+        paths.close();
+        tileM.close();
+        tileM.releaseImages();
+        player.releaseImages();
+    }
+
+    /**
+     * Starts recording the input of every following tick; call before the first tick.
+     * A streamed world then installs its regions on a fixed tick, so the recording replays
+     * the same however fast the disk was.
+     *
+     * @param recorder The recorder, or null to stop recording
+     */
+    public void setRecorder(InputRecorder recorder) {
+        this.recorder = recorder;
+        if (recorder != null) {
+            tileM.setDeterministicStreaming(true);
+        }
+    }
+
+    /**
+     * Advances the simulation by one tick.
+     * Takes the tick's input snapshot, and records it if a recorder is set, then simulates.
+     */
+    public void update() {
+        InputSnapshot input = keyH.drain();
+        if (recorder != null) {
+            recorder.record(this, input);
+        }
+        simulate();
+    }
+
+    /**
+     * Advances the simulation by one tick with recorded input instead of the keyboard's.
+     *
+     * @param input The input of the tick
+     */
+    public void update(InputSnapshot input) {
+        keyH.replay(input);
+        simulate();
+    }
+
+    /**
+     * Runs one tick: delivers the paths requested last tick, streams in the map around the
+     * player, updates the player and all actors, re-indexes entities that moved, then hands
+     * this tick's path requests to the pathfinding worker.
+     */
+    private void simulate() {
+        paths.collect();
+        tileM.update();
+        player.update();
+        actorPipeline.update(actors, tileM.collisionGrid, tileSize);
+        entities.update();
+        paths.dispatch(tileM.collisionGrid);
+        tick++;
+    }
+
+    /**
+     * @return The number of ticks simulated so far
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Hashes the state that the simulation evolves, so two runs can be compared cheaply.
+     *
+     * @return A hash of the player, every live actor and the tiles changed so far
+     */
+    public long checksum() {
+        long hash = tick;
+        hash = hash * 31 + tileM.getEditHash();
+        hash = hash * 31 + player.worldX;
+        hash = hash * 31 + player.worldY;
+        hash = hash * 31 + player.direction.hashCode();
+        hash = hash * 31 + player.spriteNum;
+        for (int id = 0, limit = actors.idLimit(); id < limit; id++) {
+            if (actors.isAlive(id)) {
+                hash = hash * 31 + id;
+                hash = hash * 31 + actors.worldX[id];
+                hash = hash * 31 + actors.worldY[id];
+            }
+        }
+        return hash;
+    }
+}
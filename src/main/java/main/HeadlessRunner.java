@@ -0,0 +1,83 @@
+package main;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs the simulation without a window, ticking as fast as possible.
+ * Meant for balancing and regression runs on machines without a display; each session
+ * prints its final state and checksum so runs can be compared.
+ * <pre>
+ * java -Djava.awt.headless=true -cp target/classes main.HeadlessRunner &lt;ticks&gt; [script.txt] [sessions]
+ * </pre>
+ */
+public final class HeadlessRunner {
+    /** Ticks simulated when no tick count is given, one minute at 60 ticks per second */
+    private static final long DEFAULT_TICKS = 3600;
+
+    private HeadlessRunner() {
+    }
+
+    /**
+     * Simulates one session. Does not wait for images, which headless runs never draw.
+     * A streamed world installs its regions on a fixed tick, so runs compare equal.
+     *
+     * @param ticks Number of ticks to simulate
+     * @param script Input to feed, or null to run without input
+     * @return The world after the last tick; {@link GameWorld#close()} it when done
+     */
+    public static GameWorld run(long ticks, InputScript script) {
+        GameWorld world = new GameWorld();
+        world.tileM.setDeterministicStreaming(true);
+        if (script != null) {
+            script.rewind();
+        }
+        for (long i = 0; i < ticks; i++) {
+            if (script != null) {
+                script.apply(world.getTick(), world.keyH);
+            }
+            world.update();
+        }
+        return world;
+    }
+
+    /**
+     * Entry point for headless runs.
+     *
+     * @param args Number of ticks, optional input script path, optional number of sessions
+     */
+    public static void main(String[] args) {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+
+        long ticks = args.length > 0 ? Long.parseLong(args[0]) : DEFAULT_TICKS;
+        InputScript script = null;
+        if (args.length > 1) {
+            try (Reader reader = Files.newBufferedReader(Path.of(args[1]), StandardCharsets.UTF_8)) {
+                script = InputScript.parse(reader);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read input script " + args[1], e);
+            }
+        }
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        GameWorld previous = null;
+        for (int session = 1; session <= sessions; session++) {
+            long start = System.nanoTime();
+            GameWorld world = run(ticks, script);
+            // Closing the previous world only now keeps the shared images cached between sessions
+            if (previous != null) {
+                previous.close();
+            }
+            previous = world;
+            double millis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("session=%d ticks=%d player=%d,%d checksum=%016x time=%.1fms ticksPerSecond=%.0f%n",
+                    session, world.getTick(), world.player.worldX, world.player.worldY, world.checksum(),
+                    millis, world.getTick() / (millis / 1000));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package main;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of timestamped key events.
+ * One thread at a time offers events (the event dispatch thread, or the game thread when
+ * input is scripted) and one thread drains them (the game thread, once per tick). Neither
+ * side ever blocks: the producer publishes a slot with an ordered write of the tail, and the
+ * consumer frees slots with an ordered write of the head. Events are stored in primitive
+ * arrays, so offering and draining allocate nothing.
+ */
+public final class InputQueue {
+    /**
+     * Receives the events drained from the queue.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * Handles one event.
+         *
+         * @param time When the event happened, on the {@link System#nanoTime()} clock
+         * @param code The {@link java.awt.event.KeyEvent} key code
+         * @param press Whether the key was pressed (true) or released (false)
+         */
+        void accept(long time, int code, boolean press);
+    }
+
+    /** Capacity minus one, for wrapping positions into slots */
+    private final int mask;
+    /** Time of the event in each slot */
+    private final long[] times;
+    /** Key code of the event in each slot, shifted left by one, with the lowest bit set for presses */
+    private final int[] events;
+    /** Position of the next event to drain; written by the consumer only */
+    private final AtomicLong head = new AtomicLong();
+    /** Position of the next free slot; written by the producer only */
+    private final AtomicLong tail = new AtomicLong();
+    /** The producer's last look at {@link #head}, refreshed only when the queue seems full */
+    private long cachedHead;
+    /** Number of events dropped because the queue was full */
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    /**
+     * Constructs a new empty queue.
+     *
+     * @param capacity Most events held at once, rounded up to a power of two
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        times = new long[size];
+        events = new int[size];
+    }
+
+    /**
+     * Appends an event. Only one thread may offer at a time.
+     *
+     * @param time When the event happened, on the {@link System#nanoTime()} clock
+     * @param code The key code
+     * @param press Whether the key was pressed (true) or released (false)
+     * @return false if the queue was full and the event was dropped
+     */
+    public boolean offer(long time, int code, boolean press) {
+        long position = tail.get();
+        if (position - cachedHead > mask) {
+            cachedHead = head.get();
+            if (position - cachedHead > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        int slot = (int) position & mask;
+        times[slot] = time;
+        events[slot] = code << 1 | (press ? 1 : 0);
+        // Publishes the slot written above to the consumer
+        tail.lazySet(position + 1);
+        return true;
+    }
+
+    /**
+     * Hands every queued event to a handler, oldest first. Only one thread may drain at a time.
+     *
+     * @param handler Receives the events
+     * @return The number of events drained
+     */
+    public int drain(Handler handler) {
+        long position = head.get();
+        long end = tail.get();
+        for (long i = position; i < end; i++) {
+            int slot = (int) i & mask;
+            int event = events[slot];
+            handler.accept(times[slot], event >> 1, (event & 1) != 0);
+        }
+        // Hands the drained slots back to the producer
+        head.lazySet(end);
+        return (int) (end - position);
+    }
+
+    /**
+     * @return The number of events dropped so far because the queue was full
+     */
+    public int dropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,175 @@
+package main;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the input of every tick to a compact binary recording, so a play session can be
+ * replayed exactly by {@link InputReplay}.
+ * <p>
+ * The file starts with a header followed by a stream of entries:
+ * <pre>
+ *   int    magic               ('GREC')
+ *   short  version             (2)
+ *   int    tickRate            ticks per second the session ran at
+ *   int    checkpointInterval  ticks between checkpoints
+ *   UTF    mapSource           {@link Tile.TileManager#getMapSource()} of the recorded world
+ *   long   tileSet             {@link Tile.TileSet#fingerprint()} of the recorded world
+ *   entries, each starting with a tag byte:
+ *     0  run         varint ticks, byte packed input   the same input for that many ticks
+ *     1  checkpoint  varint tick, long checksum        {@link GameWorld#checksum()} before the tick ran
+ *     2  end         varint ticks                      total ticks recorded
+ * </pre>
+ * Input is stored as {@link InputSnapshot#pack()} and run-length encoded, so an hour of play
+ * typically takes a few kilobytes plus about ten bytes per checkpoint.
+ */
+public final class InputRecorder implements Closeable {
+    /** Marks the start of every recording */
+    public static final int MAGIC = ('G' << 24) | ('R' << 16) | ('E' << 8) | 'C';
+    /** Current version of the format */
+    public static final short VERSION = 2;
+    /** Tag of a run of ticks with the same input */
+    static final int RUN = 0;
+    /** Tag of a checkpoint */
+    static final int CHECKPOINT = 1;
+    /** Tag of the end of the recording */
+    static final int END = 2;
+
+    /** The recording being written */
+    private final DataOutputStream out;
+    /** Ticks between checkpoints */
+    private final int checkpointInterval;
+    /** Packed input of the run being collected, or -1 before the first tick */
+    private int runInput = -1;
+    /** Number of ticks in the run being collected */
+    private long runLength;
+    /** Number of ticks recorded */
+    private long ticks;
+    /** Whether the end was written */
+    private boolean closed;
+
+    /**
+     * Starts a recording.
+     *
+     * @param out Receives the recording; closed by {@link #close()}
+     * @param world The world about to be recorded, whose map and tileset are noted in the header
+     * @param tickRate Ticks per second of the recorded session
+     * @param checkpointInterval Ticks between checkpoints; 1 pins desyncs to the exact tick
+     * @throws IOException if the header cannot be written
+     */
+    public InputRecorder(OutputStream out, GameWorld world, int tickRate, int checkpointInterval) throws IOException {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpointInterval);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.checkpointInterval = checkpointInterval;
+
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+        this.out.writeInt(tickRate);
+        this.out.writeInt(checkpointInterval);
+        this.out.writeUTF(world.tileM.getMapSource());
+        this.out.writeLong(world.tileM.tileSet.fingerprint());
+    }
+
+    /**
+     * Starts a recording into a file, replacing it if it exists.
+     *
+     * @param file The recording file
+     * @param world The world about to be recorded
+     * @param tickRate Ticks per second of the recorded session
+     * @param checkpointInterval Ticks between checkpoints
+     * @return The recorder
+     * @throws IOException if the file cannot be created
+     */
+    public static InputRecorder open(Path file, GameWorld world, int tickRate, int checkpointInterval) throws IOException {
+        return new InputRecorder(Files.newOutputStream(file), world, tickRate, checkpointInterval);
+    }
+
+    /**
+     * Records the input of the tick the world is about to run, and a checkpoint of the world's
+     * state when one is due. Call from the game thread before every tick, starting at tick 0.
+     *
+     * @param world The world about to tick
+     * @param input The input of the tick
+     * @throws RuntimeException if the recording cannot be written
+     */
+    public synchronized void record(GameWorld world, InputSnapshot input) {
+        if (closed) {
+            return;
+        }
+        try {
+            long tick = world.getTick();
+            if (tick % checkpointInterval == 0) {
+                writeRun();
+                out.writeByte(CHECKPOINT);
+                writeVarLong(tick);
+                out.writeLong(world.checksum());
+            }
+            int packed = input.pack();
+            if (packed != runInput) {
+                writeRun();
+                runInput = packed;
+            }
+            runLength++;
+            ticks++;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write input recording", e);
+        }
+    }
+
+    /**
+     * Writes the pending run and the end of the recording, then closes it.
+     * Safe to call from a shutdown hook and more than once.
+     *
+     * @throws IOException if the recording cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeRun();
+            out.writeByte(END);
+            writeVarLong(ticks);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the run being collected, if it holds any ticks.
+     *
+     * @throws IOException if the recording cannot be written
+     */
+    private void writeRun() throws IOException {
+        if (runLength == 0) {
+            return;
+        }
+        out.writeByte(RUN);
+        writeVarLong(runLength);
+        out.writeByte(runInput);
+        runLength = 0;
+    }
+
+    /**
+     * Writes a non-negative number in as few bytes as it needs, seven bits per byte.
+     *
+     * @param value The number
+     * @throws IOException if the recording cannot be written
+     */
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
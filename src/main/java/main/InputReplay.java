@@ -0,0 +1,215 @@
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Replays a recording made by {@link InputRecorder} through a headless world, as fast as
+ * the simulation runs. Every checkpoint in the recording is compared with the replayed
+ * world's checksum, so a desync is pinned to the checkpoint interval it happened in, and
+ * the slowest ticks are reported so performance spikes can be traced to the exact tick.
+ * <pre>
+ * java -Djava.awt.headless=true -cp target/classes main.InputReplay session.rec
+ * </pre>
+ * Recordings cut short, e.g. by a crash, are replayed up to where they end. The world must
+ * use the map and tileset the recording was made with; a streamed world installs its
+ * regions on a fixed tick, as it did while recording.
+ */
+public final class InputReplay {
+    /** Number of slowest ticks reported */
+    private static final int SLOWEST_TICKS = 5;
+
+    /**
+     * Outcome of a replay.
+     */
+    public static final class Result {
+        /** Ticks per second the recorded session ran at */
+        public int tickRate;
+        /** Number of ticks replayed */
+        public long ticks;
+        /** Number of checkpoints that matched */
+        public int checkpoints;
+        /** Tick of the last checkpoint that matched, or -1 */
+        public long lastGoodTick = -1;
+        /** Tick of the first checkpoint that did not match, or -1 if none */
+        public long desyncTick = -1;
+        /** Checksum the recording expected at {@link #desyncTick} */
+        public long expectedChecksum;
+        /** Checksum the replay produced at {@link #desyncTick} */
+        public long actualChecksum;
+        /** Whether the recording ended without an end marker */
+        public boolean truncated;
+        /** The slowest ticks, slowest first; unused entries are -1 */
+        public final long[] slowestTicks = {-1, -1, -1, -1, -1};
+        /** Duration of each of {@link #slowestTicks}, in nanoseconds */
+        public final long[] slowestNanos = new long[SLOWEST_TICKS];
+
+        /**
+         * Keeps a tick if it is among the slowest seen so far.
+         *
+         * @param tick The tick
+         * @param nanos How long it took
+         */
+        void recordTickTime(long tick, long nanos) {
+            if (nanos <= slowestNanos[SLOWEST_TICKS - 1]) {
+                return;
+            }
+            int i = SLOWEST_TICKS - 1;
+            while (i > 0 && slowestNanos[i - 1] < nanos) {
+                slowestNanos[i] = slowestNanos[i - 1];
+                slowestTicks[i] = slowestTicks[i - 1];
+                i--;
+            }
+            slowestNanos[i] = nanos;
+            slowestTicks[i] = tick;
+        }
+    }
+
+    private InputReplay() {
+    }
+
+    /**
+     * Replays a recording into a world, stopping at the first checkpoint that does not match.
+     *
+     * @param in The recording; not closed
+     * @param world A new world at tick 0, which the recording is replayed into
+     * @return The outcome
+     * @throws IOException if the recording cannot be read
+     * @throws IllegalArgumentException if the stream is not a valid recording, or was made
+     *         with a different map or tileset than the world has
+     */
+    public static Result replay(InputStream in, GameWorld world) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != InputRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not an input recording");
+        }
+        short version = data.readShort();
+        if (version != InputRecorder.VERSION) {
+            throw new IllegalArgumentException("Unsupported input recording version: " + version);
+        }
+        Result result = new Result();
+        result.tickRate = data.readInt();
+        data.readInt(); // Checkpoint interval, only needed while recording
+        String mapSource = data.readUTF();
+        long tileSet = data.readLong();
+        if (!mapSource.equals(world.tileM.getMapSource()) || tileSet != world.tileM.tileSet.fingerprint()) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Recording was made with map '%s' and tileset %016x, not map '%s' and tileset %016x",
+                    mapSource, tileSet, world.tileM.getMapSource(), world.tileM.tileSet.fingerprint()));
+        }
+        world.tileM.setDeterministicStreaming(true);
+
+        while (true) {
+            int tag = data.read();
+            if (tag < 0) {
+                result.truncated = true;
+                return result;
+            }
+            try {
+                switch (tag) {
+                    case InputRecorder.RUN -> {
+                        long length = readVarLong(data);
+                        InputSnapshot input = InputSnapshot.unpack(data.readUnsignedByte());
+                        for (long i = 0; i < length; i++) {
+                            long start = System.nanoTime();
+                            world.update(input);
+                            result.recordTickTime(world.getTick() - 1, System.nanoTime() - start);
+                        }
+                        result.ticks += length;
+                    }
+                    case InputRecorder.CHECKPOINT -> {
+                        long tick = readVarLong(data);
+                        long expected = data.readLong();
+                        if (tick != world.getTick()) {
+                            throw new IllegalArgumentException("Checkpoint for tick " + tick + " found at tick " + world.getTick());
+                        }
+                        long actual = world.checksum();
+                        if (actual != expected) {
+                            result.desyncTick = tick;
+                            result.expectedChecksum = expected;
+                            result.actualChecksum = actual;
+                            return result;
+                        }
+                        result.checkpoints++;
+                        result.lastGoodTick = tick;
+                    }
+                    case InputRecorder.END -> {
+                        long ticks = readVarLong(data);
+                        if (ticks != result.ticks) {
+                            throw new IllegalArgumentException("Recording ends after " + result.ticks + " ticks, expected " + ticks);
+                        }
+                        return result;
+                    }
+                    default -> throw new IllegalArgumentException("Corrupt input recording, unknown entry " + tag);
+                }
+            } catch (EOFException e) {
+                result.truncated = true;
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Entry point for replays; exits with status 1 on a desync.
+     *
+     * @param args Path of the recording
+     */
+    public static void main(String[] args) {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        if (args.length < 1) {
+            System.err.println("Usage: InputReplay <recording>");
+            System.exit(2);
+        }
+
+        GameWorld world = new GameWorld();
+        Result result;
+        long start = System.nanoTime();
+        try (InputStream in = Files.newInputStream(Path.of(args[0]))) {
+            result = replay(in, world);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read input recording " + args[0], e);
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        long playSeconds = result.ticks / Math.max(1, result.tickRate);
+        System.out.printf(Locale.ROOT, "ticks=%d play=%d:%02d:%02d time=%.1fms ticksPerSecond=%.0f checkpoints=%d%s%n",
+                result.ticks, playSeconds / 3600, playSeconds / 60 % 60, playSeconds % 60,
+                millis, result.ticks / (millis / 1000), result.checkpoints, result.truncated ? " (recording cut short)" : "");
+        for (int i = 0; i < SLOWEST_TICKS && result.slowestTicks[i] >= 0; i++) {
+            System.out.printf(Locale.ROOT, "slow tick=%d time=%.3fms%n", result.slowestTicks[i], result.slowestNanos[i] / 1e6);
+        }
+        if (result.desyncTick >= 0) {
+            System.out.printf("DESYNC between tick %d and %d: expected checksum %016x, got %016x%n",
+                    Math.max(0, result.lastGoodTick), result.desyncTick, result.expectedChecksum, result.actualChecksum);
+            System.exit(1);
+        }
+        System.out.println("replay matches the recording");
+    }
+
+    /**
+     * Reads a number written seven bits per byte by the recorder.
+     *
+     * @param data The recording
+     * @return The number
+     * @throws IOException if the recording cannot be read
+     */
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Corrupt input recording, number too long");
+    }
+}
@@ -0,0 +1,133 @@
+package main;
+
+import java.awt.event.KeyEvent;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Scripted keyboard input for headless runs.
+ * A script is a text file with one event per line: the tick it happens on, {@code press}
+ * or {@code release}, and a key name as in the {@link KeyEvent} {@code VK_} constants.
+ * Blank lines and lines starting with {@code #} are ignored.
+ * <pre>
+ * # walk right for a second, then down
+ * 0 press D
+ * 60 release D
+ * 60 press S
+ * </pre>
+ */
+public final class InputScript {
+    /** Tick of each event, ascending */
+    private long[] ticks = new long[16];
+    /** Key code of each event */
+    private int[] codes = new int[16];
+    /** Whether each event presses (true) or releases (false) its key */
+    private boolean[] presses = new boolean[16];
+    /** Number of events */
+    private int count;
+    /** Index of the next event to apply */
+    private int cursor;
+
+    /**
+     * Parses a script.
+     *
+     * @param reader The script text; not closed
+     * @return The parsed script
+     * @throws IOException if the script cannot be read
+     * @throws IllegalArgumentException if a line is malformed or the ticks are not ascending
+     */
+    public static InputScript parse(Reader reader) throws IOException {
+        InputScript script = new InputScript();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length != 3 || !(parts[1].equals("press") || parts[1].equals("release"))) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected '<tick> press|release <key>'");
+            }
+            long tick;
+            try {
+                tick = Long.parseLong(parts[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": bad tick " + parts[0], e);
+            }
+            if (script.count > 0 && tick < script.ticks[script.count - 1]) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": ticks must be ascending");
+            }
+            script.add(tick, keyCode(parts[2], lineNumber), parts[1].equals("press"));
+        }
+        return script;
+    }
+
+    /**
+     * Feeds every event scheduled up to a tick into the key handler.
+     * Call once per tick, before updating the world, with ascending ticks.
+     *
+     * @param tick The tick about to be simulated
+     * @param keyH The key handler to feed
+     */
+    public void apply(long tick, KeyHandler keyH) {
+        while (cursor < count && ticks[cursor] <= tick) {
+            if (presses[cursor]) {
+                keyH.press(codes[cursor]);
+            } else {
+                keyH.release(codes[cursor]);
+            }
+            cursor++;
+        }
+    }
+
+    /**
+     * Rewinds the script so it can drive another session.
+     */
+    public void rewind() {
+        cursor = 0;
+    }
+
+    /**
+     * @return The tick of the last event, or -1 if the script is empty
+     */
+    public long lastTick() {
+        return count == 0 ? -1 : ticks[count - 1];
+    }
+
+    /**
+     * Appends an event.
+     *
+     * @param tick The tick the event happens on
+     * @param code The key code
+     * @param press Whether the key is pressed or released
+     */
+    private void add(long tick, int code, boolean press) {
+        if (count == ticks.length) {
+            ticks = Arrays.copyOf(ticks, count * 2);
+            codes = Arrays.copyOf(codes, count * 2);
+            presses = Arrays.copyOf(presses, count * 2);
+        }
+        ticks[count] = tick;
+        codes[count] = code;
+        presses[count] = press;
+        count++;
+    }
+
+    /**
+     * @param name Key name without the {@code VK_} prefix, e.g. {@code D} or {@code LEFT}
+     * @param lineNumber Line the name appears on, for error messages
+     * @return The matching key code
+     */
+    private static int keyCode(String name, int lineNumber) {
+        try {
+            return KeyEvent.class.getField("VK_" + name.toUpperCase()).getInt(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": unknown key " + name, e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package main;
+
+import java.awt.event.KeyEvent;
+
+/**
+ * The input state for one tick, taken by {@link KeyHandler#drain()}.
+ * Snapshots never change, so the simulation and the renderer can both read the current
+ * one without locks and always see a consistent set of keys. A key pressed and released
+ * again within one tick counts as held for that tick, so quick taps are never lost.
+ */
+public final class InputSnapshot {
+    /** Snapshot with no key held */
+    public static final InputSnapshot NONE = new InputSnapshot(false, false, false, false, 0, -1);
+
+    /** Whether the up movement key is held */
+    public final boolean upPressed;
+    /** Whether the down movement key is held */
+    public final boolean downPressed;
+    /** Whether the left movement key is held */
+    public final boolean leftPressed;
+    /** Whether the right movement key is held */
+    public final boolean rightPressed;
+    /** The movement key pressed last, deciding which way the player faces, or 0 */
+    private final int lastKeyPressed;
+    /** When the oldest event applied to this snapshot happened, on the {@link System#nanoTime()} clock, or -1 */
+    public final long firstEventTime;
+
+    /**
+     * Constructs a new snapshot.
+     *
+     * @param upPressed Whether the up movement key is held
+     * @param downPressed Whether the down movement key is held
+     * @param leftPressed Whether the left movement key is held
+     * @param rightPressed Whether the right movement key is held
+     * @param lastKeyPressed The movement key pressed last, or 0
+     * @param firstEventTime When the oldest event applied to this snapshot happened, or -1
+     */
+    public InputSnapshot(boolean upPressed, boolean downPressed, boolean leftPressed, boolean rightPressed,
+                         int lastKeyPressed, long firstEventTime) {
+        this.upPressed = upPressed;
+        this.downPressed = downPressed;
+        this.leftPressed = leftPressed;
+        this.rightPressed = rightPressed;
+        this.lastKeyPressed = lastKeyPressed;
+        this.firstEventTime = firstEventTime;
+    }
+
+    /**
+     * Packs the parts of the snapshot the simulation reads into seven bits, for recordings.
+     * The four held keys take the low bits; the direction of the last pressed movement key
+     * (0 none, 1 up, 2 down, 3 left, 4 right) the three above them.
+     *
+     * @return The packed snapshot, see {@link #unpack(int)}
+     */
+    public int pack() {
+        int direction = switch (lastKeyPressed) {
+            case KeyEvent.VK_UP, KeyEvent.VK_W -> 1;
+            case KeyEvent.VK_DOWN, KeyEvent.VK_S -> 2;
+            case KeyEvent.VK_LEFT, KeyEvent.VK_A -> 3;
+            case KeyEvent.VK_RIGHT, KeyEvent.VK_D -> 4;
+            default -> 0;
+        };
+        return (upPressed ? 1 : 0) | (downPressed ? 2 : 0) | (leftPressed ? 4 : 0) | (rightPressed ? 8 : 0) | direction << 4;
+    }
+
+    /**
+     * Rebuilds a snapshot packed with {@link #pack()}. It behaves the same in the simulation
+     * as the original, though arrow keys and WASD are no longer told apart.
+     *
+     * @param bits The packed snapshot
+     * @return The snapshot
+     * @throws IllegalArgumentException if the bits are not a packed snapshot
+     */
+    public static InputSnapshot unpack(int bits) {
+        int lastKey = switch (bits >> 4) {
+            case 0 -> 0;
+            case 1 -> KeyEvent.VK_UP;
+            case 2 -> KeyEvent.VK_DOWN;
+            case 3 -> KeyEvent.VK_LEFT;
+            case 4 -> KeyEvent.VK_RIGHT;
+            default -> throw new IllegalArgumentException("Not a packed input snapshot: " + bits);
+        };
+        return new InputSnapshot((bits & 1) != 0, (bits & 2) != 0, (bits & 4) != 0, (bits & 8) != 0, lastKey, -1);
+    }
+
+    /**
+     * Gets the effective vertical movement based on the last pressed key.
+     *
+     * @return 1 for downward movement, -1 for upward movement, 0 for no vertical movement
+     */
+    public int getVerticalMovement() {
+        if (!upPressed && !downPressed) return 0;
+        if (lastKeyPressed == KeyEvent.VK_UP || lastKeyPressed == KeyEvent.VK_W) return -1;
+        if (lastKeyPressed == KeyEvent.VK_DOWN || lastKeyPressed == KeyEvent.VK_S) return 1;
+        return 0;
+    }
+
+    /**
+     * Gets the effective horizontal movement based on the last pressed key.
+     *
+     * @return 1 for rightward movement, -1 for leftward movement, 0 for no horizontal movement
+     */
+    public int getHorizontalMovement() {
+        if (!leftPressed && !rightPressed) return 0;
+        if (lastKeyPressed == KeyEvent.VK_LEFT || lastKeyPressed == KeyEvent.VK_A) return -1;
+        if (lastKeyPressed == KeyEvent.VK_RIGHT || lastKeyPressed == KeyEvent.VK_D) return 1;
+        return 0;
+    }
+
+    /**
+     * Gets the horizontal input axis from every held key, for free (including diagonal) movement.
+     *
+     * @return 1 if only right is held, -1 if only left is held, 0 otherwise
+     */
+    public int getHorizontalAxis() {
+        return (rightPressed ? 1 : 0) - (leftPressed ? 1 : 0);
+    }
+
+    /**
+     * Gets the vertical input axis from every held key, for free (including diagonal) movement.
+     *
+     * @return 1 if only down is held, -1 if only up is held, 0 otherwise
+     */
+    public int getVerticalAxis() {
+        return (downPressed ? 1 : 0) - (upPressed ? 1 : 0);
+    }
+}
@@ -5,20 +5,52 @@ import java.awt.event.KeyListener;
 
 /**
  * Handles keyboard input for the game.
- * Implements KeyListener to process key events and maintain the state of movement keys.
+ * Implements KeyListener to collect key events on the event dispatch thread. Events are
+ * not applied right away: they are queued in a lock-free {@link InputQueue} and the game
+ * loop drains them once per tick into an {@link InputSnapshot} that the simulation reads,
+ * so every tick sees one consistent set of keys and no press is missed or seen late.
  */
 public class KeyHandler implements KeyListener {
+    /** Most events queued between two ticks */
+    private static final int QUEUE_CAPACITY = 256;
+    /** Bit of the up movement key in {@link #pressedThisTick} */
+    private static final int UP = 1;
+    /** Bit of the down movement key in {@link #pressedThisTick} */
+    private static final int DOWN = 1 << 1;
+    /** Bit of the left movement key in {@link #pressedThisTick} */
+    private static final int LEFT = 1 << 2;
+    /** Bit of the right movement key in {@link #pressedThisTick} */
+    private static final int RIGHT = 1 << 3;
+
+    /** Flag indicating if solid tiles should be highlighted, toggled with F2 */
+    public volatile boolean showCollisionOverlay;
+    /** Flag indicating if frame and tick timings should be shown, toggled with F3 */
+    public volatile boolean showPerformanceOverlay;
+
+    /** Events waiting for the next tick */
+    private final InputQueue queue = new InputQueue(QUEUE_CAPACITY);
+    /** Applies drained events; kept in a field so draining allocates nothing */
+    private final InputQueue.Handler applier = this::apply;
+    /** The input state of the last drained tick */
+    private volatile InputSnapshot snapshot = InputSnapshot.NONE;
+
+    // Live key state, only touched by the thread calling drain()
     /** Flag indicating if the up movement key is currently pressed */
-    public boolean upPressed;
+    private boolean upPressed;
     /** Flag indicating if the down movement key is currently pressed */
-    public boolean downPressed;
+    private boolean downPressed;
     /** Flag indicating if the left movement key is currently pressed */
-    public boolean leftPressed;
+    private boolean leftPressed;
     /** Flag indicating if the right movement key is currently pressed */
-    public boolean rightPressed;
-
+    private boolean rightPressed;
     /** Stores the last movement key pressed */
     private int lastKeyPressed;
+    /** Movement keys pressed during the tick being drained, as bits */
+    private int pressedThisTick;
+    /** The movement key pressed last during the tick being drained, or 0 */
+    private int lastPressedThisTick;
+    /** Time of the first event drained this tick, or -1 */
+    private long firstEventTime;
 
     @Override
     public void keyTyped(KeyEvent e) {
@@ -26,45 +58,162 @@ public class KeyHandler implements KeyListener {
     }
 
     /**
-     * Handles key press events.
-     * Updates the corresponding movement flags when WASD or arrow keys are pressed.
-     * Also tracks the last pressed key for movement priority.
+     * Handles key press events by queueing them for the next tick.
      *
      * @param e The key event containing information about the pressed key
      */
     @Override
     public void keyPressed(KeyEvent e) {
-        int code = e.getKeyCode();
+        press(e.getKeyCode());
+    }
+
+    /**
+     * Presses a key without a key event, e.g. from scripted input in headless runs.
+     * Takes effect at the next {@link #drain()}.
+     *
+     * @param code The {@link KeyEvent} key code of the pressed key
+     */
+    public void press(int code) {
+        queue.offer(System.nanoTime(), code, true);
+    }
+
+    /**
+     * Handles key release events by queueing them for the next tick.
+     *
+     * @param e The key event containing information about the released key
+     */
+    @Override
+    public void keyReleased(KeyEvent e) {
+        release(e.getKeyCode());
+    }
 
+    /**
+     * Releases a key without a key event, e.g. from scripted input in headless runs.
+     * Takes effect at the next {@link #drain()}.
+     *
+     * @param code The {@link KeyEvent} key code of the released key
+     */
+    public void release(int code) {
+        queue.offer(System.nanoTime(), code, false);
+    }
+
+    /**
+     * Applies every event queued since the last call and takes the snapshot for the next tick.
+     * Call once per tick from the game thread, before anything reads input.
+     * Movement keys tapped within the tick count as held for it.
+     *
+     * @return The new snapshot, also returned by {@link #snapshot()} from now on
+     */
+    public InputSnapshot drain() {
+        boolean hadTaps = pressedThisTick != 0;
+        pressedThisTick = 0;
+        lastPressedThisTick = 0;
+        firstEventTime = -1;
+        if (queue.drain(applier) == 0 && !hadTaps) {
+            // Nothing changed, the last snapshot still holds
+            return snapshot;
+        }
+
+        InputSnapshot next = new InputSnapshot(
+                upPressed || (pressedThisTick & UP) != 0,
+                downPressed || (pressedThisTick & DOWN) != 0,
+                leftPressed || (pressedThisTick & LEFT) != 0,
+                rightPressed || (pressedThisTick & RIGHT) != 0,
+                lastPressedThisTick != 0 ? lastPressedThisTick : lastKeyPressed,
+                firstEventTime);
+        snapshot = next;
+        return next;
+    }
+
+    /**
+     * Makes a recorded snapshot the input of the next tick, in place of draining the queue.
+     * Events already queued stay queued and the live key state is left alone.
+     *
+     * @param input The snapshot to use
+     */
+    public void replay(InputSnapshot input) {
+        snapshot = input;
+    }
+
+    /**
+     * @return The input state of the last drained tick; safe to call from any thread
+     */
+    public InputSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return The number of events dropped so far because too many arrived within one tick
+     */
+    public int droppedEvents() {
+        return queue.dropped();
+    }
+
+    /**
+     * Applies one drained event to the live key state.
+     * Updates the movement flags for WASD and arrow keys, tracks the last pressed key for
+     * movement priority and toggles debug overlays.
+     *
+     * @param time When the event happened
+     * @param code The key code
+     * @param press Whether the key was pressed or released
+     */
+    private void apply(long time, int code, boolean press) {
+        if (firstEventTime < 0) {
+            firstEventTime = time;
+        }
+        if (press) {
+            applyPress(code);
+        } else {
+            applyRelease(code);
+        }
+    }
+
+    /**
+     * Applies a key press to the live key state.
+     *
+     * @param code The key code of the pressed key
+     */
+    private void applyPress(int code) {
         if (code == KeyEvent.VK_W || code == KeyEvent.VK_UP) {
             upPressed = true;
+            pressedThisTick |= UP;
             lastKeyPressed = code;
+            lastPressedThisTick = code;
         }
         if (code == KeyEvent.VK_S || code == KeyEvent.VK_DOWN) {
             downPressed = true;
+            pressedThisTick |= DOWN;
             lastKeyPressed = code;
+            lastPressedThisTick = code;
         }
         if (code == KeyEvent.VK_A || code == KeyEvent.VK_LEFT) {
             leftPressed = true;
+            pressedThisTick |= LEFT;
             lastKeyPressed = code;
+            lastPressedThisTick = code;
         }
         if (code == KeyEvent.VK_D || code == KeyEvent.VK_RIGHT) {
             rightPressed = true;
+            pressedThisTick |= RIGHT;
             lastKeyPressed = code;
+            lastPressedThisTick = code;
+        }
+        if (code == KeyEvent.VK_F2) {
+            showCollisionOverlay = !showCollisionOverlay;
+        }
+        if (code == KeyEvent.VK_F3) {
+            showPerformanceOverlay = !showPerformanceOverlay;
         }
     }
 
     /**
-     * Handles key release events.
-     * Updates the corresponding movement flags when WASD or arrow keys are released.
+     * Applies a key release to the live key state.
      * Updates the last pressed key when necessary.
      *
-     * @param e The key event containing information about the released key
+     * @param code The key code of the released key
      */
-    @Override
-    public void keyReleased(KeyEvent e) {
-        int code = e.getKeyCode();
-
+    private void applyRelease(int code) {
         if (code == KeyEvent.VK_W || code == KeyEvent.VK_UP) {
             upPressed = false;
             if (lastKeyPressed == code) {
@@ -102,28 +251,4 @@ public class KeyHandler implements KeyListener {
         else if (upPressed) lastKeyPressed = KeyEvent.VK_UP;
         else lastKeyPressed = 0;
     }
-
-    /**
-     * Gets the effective vertical movement based on the last pressed key.
-     * 
-     * @return 1 for downward movement, -1 for upward movement, 0 for no vertical movement
-     */
-    public int getVerticalMovement() {
-        if (!upPressed && !downPressed) return 0;
-        if (lastKeyPressed == KeyEvent.VK_UP || lastKeyPressed == KeyEvent.VK_W) return -1;
-        if (lastKeyPressed == KeyEvent.VK_DOWN || lastKeyPressed == KeyEvent.VK_S) return 1;
-        return 0;
-    }
-
-    /**
-     * Gets the effective horizontal movement based on the last pressed key.
-     * 
-     * @return 1 for rightward movement, -1 for leftward movement, 0 for no horizontal movement
-     */
-    public int getHorizontalMovement() {
-        if (!leftPressed && !rightPressed) return 0;
-        if (lastKeyPressed == KeyEvent.VK_LEFT || lastKeyPressed == KeyEvent.VK_A) return -1;
-        if (lastKeyPressed == KeyEvent.VK_RIGHT || lastKeyPressed == KeyEvent.VK_D) return 1;
-        return 0;
-    }
-}
\ No newline at end of file
+}
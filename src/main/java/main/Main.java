@@ -1,13 +1,21 @@
 package main;
 
+import java.awt.GraphicsEnvironment;
+
 import javax.swing.JFrame;
 
 /**
  * Main entry point for the game.
  * Sets up the game window and initializes the game panel.
+ * Without a display the simulation runs headless through {@link HeadlessRunner} instead.
  */
 public class Main {
     public static void main(String[] args) {
+        if (GraphicsEnvironment.isHeadless()) {
+            HeadlessRunner.main(args);
+            return;
+        }
+
         JFrame window = new JFrame();
         window.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         window.setResizable(false);
@@ -0,0 +1,334 @@
+package main;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures how long the game loop spends ticking, rendering and waiting.
+ * Frame, tick and render times, how late the loop wakes up from its waits and GC pauses
+ * are each recorded into a {@link LatencyHistogram} covering the whole session, and recent
+ * frame times into a {@link SampleRing} for the on-screen graph.
+ * <p>
+ * When an export file is set, a snapshot of the histograms is appended to it periodically
+ * and once more on exit: one CSV row per snapshot, or one JSON object per line if the file
+ * name ends in {@code .json}. Files are written on a background thread so the game loop
+ * never waits for the disk.
+ */
+public final class PerformanceMonitor {
+    /** Font of the overlay text */
+    private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+    /** Background of the overlay */
+    private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 170);
+    /** Color of the frame time graph */
+    private static final Color GRAPH_COLOR = new Color(80, 220, 80);
+    /** Color of the target frame time line in the graph */
+    private static final Color TARGET_COLOR = new Color(220, 200, 60);
+    /** Number of recent frames shown in the graph */
+    private static final int GRAPH_FRAMES = 240;
+    /** Height of the graph in pixels */
+    private static final int GRAPH_HEIGHT = 60;
+    /** Frame time shown at the top of the graph, in nanoseconds */
+    private static final long GRAPH_MAX = 50_000_000L;
+    /** Names of the exported histograms, in export order */
+    private static final String[] NAMES = {"frame", "tick", "render", "overshoot", "gc"};
+    /** Height of a line of text in the overlay, in pixels */
+    private static final int OVERLAY_LINE_HEIGHT = 14;
+
+    /** Time between the starts of consecutive frames */
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    /** Duration of each simulation tick */
+    private final LatencyHistogram tickTimes = new LatencyHistogram();
+    /** Duration of each frame's rendering */
+    private final LatencyHistogram renderTimes = new LatencyHistogram();
+    /** How late the loop woke up after each wait */
+    private final LatencyHistogram overshootTimes = new LatencyHistogram();
+    /** Duration of each garbage collection pause */
+    private final LatencyHistogram gcPauses = new LatencyHistogram();
+    /** Recent frame times, for the graph */
+    private final SampleRing recentFrames = new SampleRing(GRAPH_FRAMES);
+
+    /** Collectors that stop the application; concurrent cycles are not pauses */
+    private final List<GarbageCollectorMXBean> collectors = new ArrayList<>();
+    /** Collection count of each collector at the last poll */
+    private final long[] collectorCounts;
+    /** Accumulated collection time of each collector at the last poll, in milliseconds */
+    private final long[] collectorTimes;
+
+    /** File snapshots are appended to, or null to not export */
+    private final Path exportFile;
+    /** Time between exports in nanoseconds */
+    private final long exportInterval;
+    /** Writes the export file, created only when exporting */
+    private final ExecutorService exportExecutor;
+    /** Time of the last export */
+    private long lastExport;
+    /** Start time of the previous frame, or 0 before the first frame */
+    private long lastFrameStart;
+    /** Frame time the graph marks as the target, in nanoseconds */
+    private long targetFrameTime;
+
+    /**
+     * Constructs a new monitor.
+     *
+     * @param exportFile File snapshots are appended to, or null to not export
+     * @param exportIntervalSeconds Seconds between exports
+     */
+    public PerformanceMonitor(Path exportFile, long exportIntervalSeconds) {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String name = collector.getName();
+            if (!name.contains("Concurrent") && !name.contains("Cycles")) {
+                collectors.add(collector);
+            }
+        }
+        this.collectorCounts = new long[collectors.size()];
+        this.collectorTimes = new long[collectors.size()];
+        for (int i = 0; i < collectors.size(); i++) {
+            collectorCounts[i] = collectors.get(i).getCollectionCount();
+            collectorTimes[i] = collectors.get(i).getCollectionTime();
+        }
+
+        this.exportFile = exportFile;
+        this.exportInterval = exportIntervalSeconds * 1_000_000_000L;
+        this.lastExport = System.nanoTime();
+        if (exportFile == null) {
+            this.exportExecutor = null;
+        } else {
+            this.exportExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-export");
+                thread.setDaemon(true);
+                return thread;
+            });
+            Runtime.getRuntime().addShutdownHook(new Thread(this::exportFinal, "metrics-final-export"));
+        }
+    }
+
+    /**
+     * Sets the frame time the overlay graph marks as the target.
+     *
+     * @param nanos The target frame time in nanoseconds
+     */
+    public void setTargetFrameTime(long nanos) {
+        this.targetFrameTime = nanos;
+    }
+
+    /**
+     * Marks the start of a frame on the game thread: records the time since the previous
+     * frame started, picks up GC pauses and exports a snapshot when one is due.
+     *
+     * @param now The current {@link System#nanoTime()}
+     */
+    public void frameStarted(long now) {
+        if (lastFrameStart != 0) {
+            long frameTime = now - lastFrameStart;
+            frameTimes.record(frameTime);
+            recentFrames.add(frameTime);
+        }
+        lastFrameStart = now;
+
+        pollCollectors();
+
+        if (exportExecutor != null && now - lastExport >= exportInterval) {
+            lastExport = now;
+            String snapshot = format(snapshot());
+            exportExecutor.execute(() -> append(snapshot));
+        }
+    }
+
+    /**
+     * @param nanos Duration of a simulation tick
+     */
+    public void recordTick(long nanos) {
+        tickTimes.record(nanos);
+    }
+
+    /**
+     * @param nanos Duration of a frame's rendering
+     */
+    public void recordRender(long nanos) {
+        renderTimes.record(nanos);
+    }
+
+    /**
+     * @param nanos How late the loop woke up after a wait
+     */
+    public void recordOvershoot(long nanos) {
+        overshootTimes.record(nanos);
+    }
+
+    /**
+     * @return The screen area {@link #drawOverlay(Graphics2D)} draws into
+     */
+    public Rectangle getOverlayBounds() {
+        return new Rectangle(4, 4, GRAPH_FRAMES + 16, 22 + (NAMES.length + 1) * OVERLAY_LINE_HEIGHT + GRAPH_HEIGHT);
+    }
+
+    /**
+     * Draws the statistics and a graph of recent frame times in the top-left corner.
+     *
+     * @param g2 The Graphics2D object used for rendering
+     */
+    public void drawOverlay(Graphics2D g2) {
+        LatencyHistogram[] histograms = {frameTimes, tickTimes, renderTimes, overshootTimes, gcPauses};
+        Rectangle bounds = getOverlayBounds();
+
+        g2.setColor(OVERLAY_BACKGROUND);
+        g2.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+        g2.setFont(OVERLAY_FONT);
+        g2.setColor(Color.WHITE);
+
+        long recentTotal = 0;
+        for (int age = 0; age < recentFrames.size(); age++) {
+            recentTotal += recentFrames.get(age);
+        }
+        double fps = recentTotal == 0 ? 0 : recentFrames.size() * 1e9 / recentTotal;
+        int y = 4 + OVERLAY_LINE_HEIGHT;
+        g2.drawString(String.format(Locale.ROOT, "%-9s %7s %7s %7s  fps %.0f", "ms", "p50", "p99", "max", fps), 12, y);
+        for (int i = 0; i < histograms.length; i++) {
+            y += OVERLAY_LINE_HEIGHT;
+            LatencyHistogram histogram = histograms[i];
+            g2.drawString(String.format(Locale.ROOT, "%-9s %7.2f %7.2f %7.2f", NAMES[i],
+                    millis(histogram.percentile(50)), millis(histogram.percentile(99)), millis(histogram.max())), 12, y);
+        }
+
+        // Frame time graph, newest on the right
+        int graphBottom = y + 8 + GRAPH_HEIGHT;
+        int graphRight = 12 + GRAPH_FRAMES;
+        g2.setColor(GRAPH_COLOR);
+        for (int age = 0; age < recentFrames.size(); age++) {
+            int barHeight = (int) Math.min(GRAPH_HEIGHT, recentFrames.get(age) * GRAPH_HEIGHT / GRAPH_MAX);
+            g2.drawLine(graphRight - age, graphBottom, graphRight - age, graphBottom - barHeight);
+        }
+        if (targetFrameTime > 0) {
+            int targetY = graphBottom - (int) (targetFrameTime * GRAPH_HEIGHT / GRAPH_MAX);
+            g2.setColor(TARGET_COLOR);
+            g2.drawLine(12, targetY, graphRight, targetY);
+        }
+    }
+
+    /**
+     * Records the pauses of collections that happened since the last poll.
+     * Collectors only report accumulated milliseconds, so a poll that sees several
+     * collections records their average.
+     */
+    private void pollCollectors() {
+        for (int i = 0; i < collectors.size(); i++) {
+            GarbageCollectorMXBean collector = collectors.get(i);
+            long count = collector.getCollectionCount();
+            long time = collector.getCollectionTime();
+            long collections = count - collectorCounts[i];
+            if (collections > 0) {
+                long pause = (time - collectorTimes[i]) * 1_000_000L / collections;
+                for (long c = 0; c < collections; c++) {
+                    gcPauses.record(pause);
+                }
+            }
+            collectorCounts[i] = count;
+            collectorTimes[i] = time;
+        }
+    }
+
+    /**
+     * @return Copies of every histogram, in {@link #NAMES} order
+     */
+    private LatencyHistogram[] snapshot() {
+        return new LatencyHistogram[] {
+                frameTimes.copy(), tickTimes.copy(), renderTimes.copy(), overshootTimes.copy(), gcPauses.copy()
+        };
+    }
+
+    /**
+     * Formats a snapshot as one line of the export file.
+     *
+     * @param histograms The snapshot
+     * @return The line, without a CSV header
+     */
+    private String format(LatencyHistogram[] histograms) {
+        long timestamp = System.currentTimeMillis();
+        StringBuilder line = new StringBuilder();
+        if (isJson()) {
+            line.append("{\"timestamp\":").append(timestamp);
+            for (int i = 0; i < histograms.length; i++) {
+                LatencyHistogram histogram = histograms[i];
+                line.append(",\"").append(NAMES[i]).append("\":{\"count\":").append(histogram.count())
+                        .append(String.format(Locale.ROOT, ",\"p50\":%.3f,\"p99\":%.3f,\"max\":%.3f}",
+                                millis(histogram.percentile(50)), millis(histogram.percentile(99)), millis(histogram.max())));
+            }
+            line.append('}');
+        } else {
+            line.append(timestamp);
+            for (LatencyHistogram histogram : histograms) {
+                line.append(',').append(histogram.count())
+                        .append(String.format(Locale.ROOT, ",%.3f,%.3f,%.3f",
+                                millis(histogram.percentile(50)), millis(histogram.percentile(99)), millis(histogram.max())));
+            }
+        }
+        return line.append(System.lineSeparator()).toString();
+    }
+
+    /**
+     * @return The CSV header line naming every column
+     */
+    private static String csvHeader() {
+        StringBuilder header = new StringBuilder("timestamp_ms");
+        for (String name : NAMES) {
+            header.append(',').append(name).append("_count,").append(name).append("_p50_ms,")
+                    .append(name).append("_p99_ms,").append(name).append("_max_ms");
+        }
+        return header.append(System.lineSeparator()).toString();
+    }
+
+    /**
+     * Appends a line to the export file, writing the CSV header first if the file is new.
+     * Runs on the export thread; failures are reported but never stop the game.
+     *
+     * @param line The line to append
+     */
+    private synchronized void append(String line) {
+        try {
+            if (!isJson() && (!Files.exists(exportFile) || Files.size(exportFile) == 0)) {
+                line = csvHeader() + line;
+            }
+            Files.writeString(exportFile, line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Failed to export metrics to " + exportFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a last snapshot when the game exits, so the file covers the whole session.
+     */
+    private void exportFinal() {
+        exportExecutor.shutdown();
+        append(format(snapshot()));
+    }
+
+    /**
+     * @return true if snapshots are exported as JSON lines rather than CSV
+     */
+    private boolean isJson() {
+        return exportFile.getFileName().toString().endsWith(".json");
+    }
+
+    /**
+     * @param nanos A duration in nanoseconds
+     * @return The duration in milliseconds
+     */
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
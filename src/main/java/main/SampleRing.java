@@ -0,0 +1,46 @@
+package main;
+
+/**
+ * Fixed-capacity ring of the most recent samples, e.g. the last few seconds of frame times
+ * for an on-screen graph. Adding overwrites the oldest sample and never allocates.
+ * Written by one thread; readers on other threads may see a sample being replaced.
+ */
+public final class SampleRing {
+    /** The samples; the capacity is a power of two so indices wrap with a mask */
+    private final long[] samples;
+    /** Total number of samples added */
+    private long added;
+
+    /**
+     * Constructs a new empty ring.
+     *
+     * @param capacity Minimum number of samples kept; rounded up to a power of two
+     */
+    public SampleRing(int capacity) {
+        this.samples = new long[Integer.highestOneBit(Math.max(1, capacity - 1)) << 1];
+    }
+
+    /**
+     * Adds a sample, replacing the oldest one if the ring is full.
+     *
+     * @param sample The sample
+     */
+    public void add(long sample) {
+        samples[(int) (added++ & (samples.length - 1))] = sample;
+    }
+
+    /**
+     * @return The number of samples currently held
+     */
+    public int size() {
+        return (int) Math.min(added, samples.length);
+    }
+
+    /**
+     * @param age 0 for the newest sample, up to {@link #size()} - 1 for the oldest
+     * @return The sample
+     */
+    public long get(int age) {
+        return samples[(int) ((added - 1 - age) & (samples.length - 1))];
+    }
+}
@@ -0,0 +1,33 @@
+package main;
+
+/**
+ * Result of sweeping an entity's bounds through the tile grid.
+ * Instances are mutable so callers can reuse one per entity instead of allocating per move.
+ */
+public final class SweepResult {
+    /** Legal horizontal displacement in pixels */
+    public int dx;
+    /** Legal vertical displacement in pixels */
+    public int dy;
+    /** Horizontal component of the contact normal: -1, 0 or 1 */
+    public int normalX;
+    /** Vertical component of the contact normal: -1, 0 or 1 */
+    public int normalY;
+
+    /**
+     * @return true if the movement was stopped or deflected by a solid tile
+     */
+    public boolean hit() {
+        return normalX != 0 || normalY != 0;
+    }
+
+    /**
+     * Clears the result before a new sweep.
+     */
+    void reset() {
+        dx = 0;
+        dy = 0;
+        normalX = 0;
+        normalY = 0;
+    }
+}
@@ -0,0 +1,166 @@
+package ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import Tile.CollisionGrid;
+
+/**
+ * Checks that a cluster graph kept up to date through tile changes finds the same paths as one
+ * built from scratch, and paths close to the shortest ones plain A* finds.
+ */
+class ClusterGraphTest {
+    /** Width and height of the test world in tiles */
+    private static final int SIZE = 128;
+    /** Width and height of a cluster in tiles */
+    private static final int CLUSTER_SIZE = 16;
+    /** Share of tiles made solid at the start */
+    private static final double SOLID_SHARE = 0.25;
+    /** Rounds of tile changes */
+    private static final int ROUNDS = 8;
+    /** Tiles flipped per round */
+    private static final int FLIPS_PER_ROUND = 60;
+    /** Queries compared after each round */
+    private static final int QUERIES = 40;
+    /** How much longer than the shortest path a hierarchical path may be */
+    private static final double MAX_DETOUR = 1.25;
+
+    @Test
+    void incrementalUpdatesMatchFreshGraphAndAStar() {
+        Random random = new Random(42);
+        CollisionGrid grid = new CollisionGrid(SIZE, SIZE);
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                grid.set(col, row, random.nextDouble() < SOLID_SHARE);
+            }
+        }
+        ClusterGraph incremental = new ClusterGraph(grid, CLUSTER_SIZE);
+        incremental.update(new BitSet());
+        // A margin as wide as the world makes A* search all of it, so its paths are the shortest
+        PathFinder finder = new PathFinder(SIZE);
+
+        long hierarchicalSteps = 0;
+        long shortestSteps = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            BitSet changed = new BitSet();
+            for (int i = 0; i < FLIPS_PER_ROUND; i++) {
+                int col = random.nextInt(SIZE);
+                int row = random.nextInt(SIZE);
+                grid.set(col, row, !grid.isSolid(col, row));
+                incremental.addClusters(col, row, 1, 1, changed);
+            }
+            incremental.update(changed);
+
+            ClusterGraph fresh = new ClusterGraph(grid, CLUSTER_SIZE);
+            fresh.update(new BitSet());
+            assertEquals(fresh.getNodeCount(), incremental.getNodeCount(), "Node count after round " + round);
+
+            for (int query = 0; query < QUERIES; query++) {
+                int[] start = randomWalkable(grid, random);
+                int[] goal = randomWalkable(grid, random);
+                String name = "Round " + round + ", " + start[0] + "," + start[1] + " to " + goal[0] + "," + goal[1];
+
+                Path updated = incremental.find(start[0], start[1], goal[0], goal[1]);
+                Path rebuilt = fresh.find(start[0], start[1], goal[0], goal[1]);
+                Path shortest = finder.find(grid, start[0], start[1], goal[0], goal[1]);
+                if (shortest == null) {
+                    assertNull(updated, name);
+                    assertNull(rebuilt, name);
+                    continue;
+                }
+                assertNotNull(updated, name);
+                assertNotNull(rebuilt, name);
+                assertEquals(rebuilt.length(), updated.length(), name);
+                assertValid(grid, updated, start, goal, name);
+                assertTrue(updated.length() >= shortest.length(), name);
+                assertTrue(updated.length() - 1 <= (shortest.length() - 1) * MAX_DETOUR, name);
+                hierarchicalSteps += updated.length() - 1;
+                shortestSteps += shortest.length() - 1;
+            }
+        }
+        assertTrue(shortestSteps > 0, "No query had a path");
+        assertTrue(hierarchicalSteps <= shortestSteps * 1.05, "Paths are on average too long: "
+                + hierarchicalSteps + " steps instead of " + shortestSteps);
+    }
+
+    @Test
+    void wallBuiltAcrossClustersIsRespected() {
+        CollisionGrid grid = new CollisionGrid(SIZE, SIZE);
+        for (int row = 0; row < SIZE; row++) {
+            for (int col = 0; col < SIZE; col++) {
+                grid.set(col, row, false);
+            }
+        }
+        ClusterGraph graph = new ClusterGraph(grid, CLUSTER_SIZE);
+        graph.update(new BitSet());
+        assertNotNull(graph.find(2, 64, 125, 64));
+
+        BitSet changed = new BitSet();
+        for (int row = 0; row < SIZE; row++) {
+            grid.set(70, row, true);
+        }
+        graph.addClusters(70, 0, 1, SIZE, changed);
+        graph.update(changed);
+        assertNull(graph.find(2, 64, 125, 64));
+
+        changed.clear();
+        grid.set(70, 10, false);
+        graph.addClusters(70, 10, 1, 1, changed);
+        graph.update(changed);
+        Path path = graph.find(2, 64, 125, 64);
+        assertNotNull(path);
+        assertValid(grid, path, new int[] {2, 64}, new int[] {125, 64}, "Through the gap");
+        int shortest = new PathFinder(SIZE).find(grid, 2, 64, 125, 64).length();
+        assertTrue(path.length() >= shortest);
+        assertTrue(path.length() - 1 <= (shortest - 1) * MAX_DETOUR);
+    }
+
+    /**
+     * Picks a random walkable tile.
+     *
+     * @param grid The grid
+     * @param random Source of the tile positions
+     * @return The column and row of the tile
+     */
+    private static int[] randomWalkable(CollisionGrid grid, Random random) {
+        while (true) {
+            int col = random.nextInt(SIZE);
+            int row = random.nextInt(SIZE);
+            if (!grid.isSolid(col, row)) {
+                return new int[] {col, row};
+            }
+        }
+    }
+
+    /**
+     * Checks that a path runs from the start to the goal over walkable orthogonal neighbours.
+     *
+     * @param grid The grid
+     * @param path The path
+     * @param start Column and row of the start
+     * @param goal Column and row of the goal
+     * @param name Describes the query in failure messages
+     */
+    private static void assertValid(CollisionGrid grid, Path path, int[] start, int[] goal, String name) {
+        int last = path.length() - 1;
+        assertEquals(start[0], path.col(0), name);
+        assertEquals(start[1], path.row(0), name);
+        assertEquals(goal[0], path.col(last), name);
+        assertEquals(goal[1], path.row(last), name);
+        for (int step = 0; step <= last; step++) {
+            assertFalse(grid.isSolid(path.col(step), path.row(step)), name + ", step " + step);
+            if (step > 0) {
+                int distance = Math.abs(path.col(step) - path.col(step - 1)) + Math.abs(path.row(step) - path.row(step - 1));
+                assertEquals(1, distance, name + ", step " + step);
+            }
+        }
+    }
+}
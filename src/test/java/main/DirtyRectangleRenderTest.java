@@ -0,0 +1,185 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+import Tile.TileManager;
+
+/**
+ * Checks that a frame kept between ticks and redrawn only inside its damaged regions looks
+ * exactly like a frame drawn from scratch by a world whose chunk caches were never drawn before.
+ */
+class DirtyRectangleRenderTest {
+    /** Animated water tile of the built-in tileset */
+    private static final int WATER = 7;
+    /** Plain grass tile of the built-in tileset */
+    private static final int GRASS = 0;
+    /** Number of ticks simulated, enough for every water frame to show more than once */
+    private static final int TICKS = 150;
+    /** Tick at which a tile on screen is changed */
+    private static final int EDIT_TICK = 70;
+
+    @Test
+    void dirtyRectanglesMatchFullRebuild() {
+        GameWorld world = createWorld();
+        Camera camera = createCamera(world);
+        DamageTracker damage = new DamageTracker(world.screenWidth, world.screenHeight);
+        BufferedImage frame = newFrame(world);
+        draw(world, camera, frame, null);
+
+        long lastTick = world.getTick();
+        int lastPlayerFrame = world.player.getFrameIndex();
+        boolean sawPartialFrame = false;
+        try {
+            for (int i = 1; i <= TICKS; i++) {
+                if (i == EDIT_TICK) {
+                    editTile(world);
+                }
+                world.update();
+                camera.follow(world.player);
+
+                world.tileM.addDamage(camera, lastTick, world.getTick(), damage);
+                if (world.player.getFrameIndex() != lastPlayerFrame) {
+                    damage.add(world.player.screenX, world.player.screenY, world.tileSize, world.tileSize);
+                }
+                sawPartialFrame |= !damage.isEmpty() && !damage.isFull();
+                if (!damage.isEmpty()) {
+                    draw(world, camera, frame, damage.getClip());
+                }
+                damage.clear();
+                lastTick = world.getTick();
+                lastPlayerFrame = world.player.getFrameIndex();
+
+                assertArrayEquals(pixels(rebuild(i)), pixels(frame), "Frame differs after tick " + i);
+            }
+        } finally {
+            world.close();
+        }
+        assertTrue(sawPartialFrame, "Animated water never produced a partial redraw");
+    }
+
+    @Test
+    void changedTileDamagesFullScreen() {
+        GameWorld world = createWorld();
+        try {
+            Camera camera = createCamera(world);
+            draw(world, camera, newFrame(world), null);
+            DamageTracker damage = new DamageTracker(world.screenWidth, world.screenHeight);
+
+            world.tileM.addDamage(camera, world.getTick(), world.getTick(), damage);
+            assertTrue(damage.isEmpty());
+            editTile(world);
+            world.tileM.addDamage(camera, world.getTick(), world.getTick(), damage);
+            assertTrue(damage.isFull());
+        } finally {
+            world.close();
+        }
+    }
+
+    /**
+     * Builds a new world at the same tick as the one under test, with the same edits, and draws it once.
+     *
+     * @param ticks Number of ticks to simulate
+     * @return The frame drawn from freshly built chunk caches
+     */
+    private static BufferedImage rebuild(int ticks) {
+        GameWorld world = createWorld();
+        try {
+            for (int i = 1; i <= ticks; i++) {
+                if (i == EDIT_TICK) {
+                    editTile(world);
+                }
+                world.update();
+            }
+            BufferedImage frame = newFrame(world);
+            draw(world, createCamera(world), frame, null);
+            return frame;
+        } finally {
+            world.close();
+        }
+    }
+
+    /**
+     * @return A loaded world with animated water around the player on the ground and overhead layers
+     */
+    private static GameWorld createWorld() {
+        GameWorld world = new GameWorld();
+        world.awaitLoaded();
+        int col = world.player.worldX / world.tileSize;
+        int row = world.player.worldY / world.tileSize;
+        for (int offset = 2; offset <= 5; offset++) {
+            world.tileM.setTile(TileManager.GROUND_LAYER, col + offset, row, WATER);
+            world.tileM.setTile(TileManager.GROUND_LAYER, col - offset, row + 1, WATER);
+            world.tileM.setTile(TileManager.GROUND_LAYER, col, row - offset, WATER);
+        }
+        world.tileM.setTile(TileManager.OVERHEAD_LAYER, col - 3, row - 3, WATER);
+        return world;
+    }
+
+    /**
+     * Turns a water tile on screen back into grass.
+     *
+     * @param world The world
+     */
+    private static void editTile(GameWorld world) {
+        int col = world.player.worldX / world.tileSize;
+        int row = world.player.worldY / world.tileSize;
+        world.tileM.setTile(TileManager.GROUND_LAYER, col + 3, row, GRASS);
+    }
+
+    /**
+     * @param world The world
+     * @return A camera centered on the player
+     */
+    private static Camera createCamera(GameWorld world) {
+        Camera camera = new Camera(world.tileSize, world.screenWidth, world.screenHeight,
+                world.tileM.map.getMaxCol(), world.tileM.map.getMaxRow());
+        camera.follow(world.player);
+        return camera;
+    }
+
+    /**
+     * @param world The world
+     * @return An empty frame of the screen's size
+     */
+    private static BufferedImage newFrame(GameWorld world) {
+        return new BufferedImage(world.screenWidth, world.screenHeight, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Draws the world the way the game panel does, optionally only inside a clip.
+     *
+     * @param world The world
+     * @param camera The camera
+     * @param frame The frame to draw on
+     * @param clip The regions to redraw, or null for the whole frame
+     */
+    private static void draw(GameWorld world, Camera camera, BufferedImage frame, Shape clip) {
+        Graphics2D g2 = frame.createGraphics();
+        try {
+            g2.setClip(clip);
+            g2.setColor(Color.BLACK);
+            g2.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+            world.tileM.drawGround(g2, camera);
+            world.player.draw(g2);
+            world.tileM.drawOverhead(g2, camera);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * @param frame A frame
+     * @return Its pixels, row by row
+     */
+    private static int[] pixels(BufferedImage frame) {
+        return frame.getRGB(0, 0, frame.getWidth(), frame.getHeight(), null, 0, frame.getWidth());
+    }
+}